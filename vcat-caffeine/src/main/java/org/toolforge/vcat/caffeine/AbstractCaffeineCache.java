@@ -0,0 +1,98 @@
+package org.toolforge.vcat.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import java.time.Duration;
+
+/**
+ * Base class for caches using Caffeine, limited either by the number of entries or by the estimated memory they use.
+ *
+ * @param <K> Class used for key.
+ * @param <V> Class used for value.
+ */
+public abstract class AbstractCaffeineCache<K, V> {
+
+    protected final Cache<K, V> cache;
+
+    /**
+     * @param size      Maximum number of entries, if not limited by memory.
+     * @param maxWeight Maximum memory used by all entries, as estimated by the weigher (bytes), or 0 to limit the number
+     *                  of entries instead.
+     * @param timeout   Time to live (seconds).
+     * @param weigher   Estimates the memory used by an entry (bytes).
+     */
+    protected AbstractCaffeineCache(int size, long maxWeight, int timeout, Weigher<? super K, ? super V> weigher) {
+        final Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(timeout))
+                .recordStats();
+        if (maxWeight > 0) {
+            cache = builder.maximumWeight(maxWeight).weigher(weigher).build();
+        } else {
+            cache = builder.maximumSize(size).build();
+        }
+    }
+
+    /**
+     * @return Whether the cache is limited by the estimated memory used by its entries instead of their number.
+     */
+    public boolean isWeighted() {
+        return cache.policy().eviction().map(Policy.Eviction::isWeighted).orElse(false);
+    }
+
+    /**
+     * @return Maximum memory used by all entries (bytes) if weighted, otherwise maximum number of entries.
+     */
+    public long getMaximum() {
+        return cache.policy().eviction().map(Policy.Eviction::getMaximum).orElse(Long.MAX_VALUE);
+    }
+
+    /**
+     * @return Estimated memory used by all entries (bytes) if weighted, otherwise number of entries.
+     */
+    public long getWeight() {
+        final var eviction = cache.policy().eviction();
+        if (eviction.isPresent() && eviction.get().weightedSize().isPresent()) {
+            return eviction.get().weightedSize().getAsLong();
+        }
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return Approximate number of entries.
+     */
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return Number of entries evicted because the cache was full or they had expired.
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * @return Sum of the weights of all evicted entries.
+     */
+    public long getEvictionWeight() {
+        return cache.stats().evictionWeight();
+    }
+
+    /**
+     * @return Number of lookups which found an entry.
+     */
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return Number of lookups which did not find an entry.
+     */
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+}
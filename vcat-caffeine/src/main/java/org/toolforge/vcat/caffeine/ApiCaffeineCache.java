@@ -1,22 +1,23 @@
 package org.toolforge.vcat.caffeine;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
 import jakarta.json.JsonObject;
 import org.jspecify.annotations.Nullable;
 import org.toolforge.vcat.cache.interfaces.ApiCache;
 
-import java.time.Duration;
-
-public class ApiCaffeineCache implements ApiCache {
-
-    private final Cache<String, JsonObject> cache;
+public class ApiCaffeineCache extends AbstractCaffeineCache<String, JsonObject> implements ApiCache {
 
     public ApiCaffeineCache(int size, int timeout) {
-        cache = Caffeine.newBuilder()
-                .maximumSize(size)
-                .expireAfterWrite(Duration.ofSeconds(timeout))
-                .build();
+        this(size, 0, timeout);
+    }
+
+    /**
+     * @param size      Maximum number of entries, if not limited by memory.
+     * @param maxWeight Maximum estimated memory used by all entries (bytes), or 0 to limit the number of entries
+     *                  instead.
+     * @param timeout   Time to live (seconds).
+     */
+    public ApiCaffeineCache(int size, long maxWeight, int timeout) {
+        super(size, maxWeight, timeout, (key, value) -> Weighers.weigh(key) + Weighers.weigh(value));
     }
 
     @Override
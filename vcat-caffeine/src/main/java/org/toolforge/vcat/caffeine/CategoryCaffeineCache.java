@@ -0,0 +1,39 @@
+package org.toolforge.vcat.caffeine;
+
+import org.jspecify.annotations.Nullable;
+import org.toolforge.vcat.cache.CategoryCacheKey;
+import org.toolforge.vcat.cache.interfaces.CategoryCache;
+
+public class CategoryCaffeineCache extends AbstractCaffeineCache<CategoryCacheKey, String[]> implements CategoryCache {
+
+    public CategoryCaffeineCache(int size, int timeout) {
+        this(size, 0, timeout);
+    }
+
+    /**
+     * @param size      Maximum number of entries, if not limited by memory.
+     * @param maxWeight Maximum estimated memory used by all entries (bytes), or 0 to limit the number of entries
+     *                  instead.
+     * @param timeout   Time to live (seconds).
+     */
+    public CategoryCaffeineCache(int size, long maxWeight, int timeout) {
+        super(size, maxWeight, timeout,
+                (key, value) -> Weighers.weigh(key.apiUrl()) + Weighers.weigh(key.fullTitle()) + Weighers.weigh(value));
+    }
+
+    @Override
+    public String @Nullable [] getFullTitles(CategoryCacheKey key) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public void purge() {
+        cache.cleanUp();
+    }
+
+    @Override
+    public void put(CategoryCacheKey key, String[] fullTitles) {
+        cache.put(key, fullTitles);
+    }
+
+}
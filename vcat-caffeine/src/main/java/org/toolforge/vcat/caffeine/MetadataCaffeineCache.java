@@ -1,25 +1,25 @@
 package org.toolforge.vcat.caffeine;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
 import org.jspecify.annotations.Nullable;
 import org.toolforge.vcat.cache.interfaces.MetadataCache;
 import org.toolforge.vcat.mediawiki.Metadata;
 import org.toolforge.vcat.mediawiki.interfaces.Wiki;
 
-import java.time.Duration;
-
-public class MetadataCaffeineCache implements MetadataCache {
-
-    private final Cache<Wiki, Metadata> cache;
+public class MetadataCaffeineCache extends AbstractCaffeineCache<Wiki, Metadata> implements MetadataCache {
 
     public MetadataCaffeineCache(int size, int timeout) {
-        cache = Caffeine.newBuilder()
-                .maximumSize(size)
-                .expireAfterWrite(Duration.ofSeconds(timeout))
-                .build();
+        this(size, 0, timeout);
     }
 
+    /**
+     * @param size      Maximum number of entries, if not limited by memory.
+     * @param maxWeight Maximum estimated memory used by all entries (bytes), or 0 to limit the number of entries
+     *                  instead.
+     * @param timeout   Time to live (seconds).
+     */
+    public MetadataCaffeineCache(int size, long maxWeight, int timeout) {
+        super(size, maxWeight, timeout, (key, value) -> Weighers.weighSerialized(value));
+    }
 
     @Override
     @Nullable
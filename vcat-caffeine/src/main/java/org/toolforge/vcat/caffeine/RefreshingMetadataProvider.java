@@ -0,0 +1,120 @@
+package org.toolforge.vcat.caffeine;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.toolforge.vcat.mediawiki.ApiException;
+import org.toolforge.vcat.mediawiki.Metadata;
+import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metadata provider caching the metadata of each wiki, and reloading it in the background once it is older than the
+ * refresh interval. Until the reloaded metadata is available, the cached metadata is still returned, so requests only
+ * wait for metadata which is not cached at all, or which has expired because it could not be reloaded.
+ */
+@Slf4j
+public class RefreshingMetadataProvider implements MetadataProvider {
+
+    @Serial
+    private static final long serialVersionUID = -2650946530869040262L;
+
+    private final MetadataProvider metadataProvider;
+
+    private final int size;
+
+    private final int refresh;
+
+    private final int timeout;
+
+    /**
+     * Metadata by the API URL of each wiki. Not serialized, so it starts empty after deserialization.
+     */
+    private transient LoadingCache<String, Metadata> cache;
+
+    /**
+     * Wikis by their API URL, to load metadata for the keys of the cache.
+     */
+    private transient ConcurrentMap<String, Wiki> wikis;
+
+    /**
+     * @param metadataProvider Provider to load metadata from.
+     * @param size             Maximum number of wikis.
+     * @param refresh          Reload metadata in the background after (seconds).
+     * @param timeout          Time to live (seconds), after which metadata which could not be reloaded is no longer
+     *                         returned.
+     */
+    public RefreshingMetadataProvider(MetadataProvider metadataProvider, int size, int refresh, int timeout) {
+        this.metadataProvider = metadataProvider;
+        this.size = size;
+        this.refresh = refresh;
+        this.timeout = timeout;
+        initTransientFields();
+    }
+
+    private void initTransientFields() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(size)
+                .refreshAfterWrite(Duration.ofSeconds(refresh))
+                .expireAfterWrite(Duration.ofSeconds(timeout))
+                .build(this::load);
+        wikis = new ConcurrentHashMap<>();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initTransientFields();
+    }
+
+    private Metadata load(String apiUrl) throws ApiException {
+        final Wiki wiki = wikis.get(apiUrl);
+        if (wiki == null) {
+            throw new ApiException("Unknown wiki with API URL " + apiUrl);
+        }
+        return metadataProvider.requestMetadata(wiki);
+    }
+
+    @Override
+    public Metadata requestMetadata(Wiki wiki) throws ApiException {
+        wikis.putIfAbsent(wiki.getApiUrl(), wiki);
+        try {
+            return cache.get(wiki.getApiUrl());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ApiException apiException) {
+                throw apiException;
+            }
+            throw new ApiException("Error loading metadata", e.getCause());
+        }
+    }
+
+    /**
+     * Load the metadata of wikis in the background, so it is cached before it is requested for the first time.
+     *
+     * @param preloadWikis Wikis.
+     * @return Future completing when the metadata of all wikis is loaded, or has failed to load.
+     */
+    public CompletableFuture<Void> preload(Collection<? extends Wiki> preloadWikis) {
+        final var futures = preloadWikis.stream()
+                .map(wiki -> {
+                    wikis.putIfAbsent(wiki.getApiUrl(), wiki);
+                    return CompletableFuture.runAsync(() -> cache.get(wiki.getApiUrl())).exceptionally(e -> {
+                        LOG.warn("Error preloading metadata of wiki {}", wiki.getApiUrl(), e);
+                        return null;
+                    });
+                })
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures);
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.toolforge.vcat.caffeine;
+
+import jakarta.json.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.toolforge.vcat.cache.CacheException;
+import org.toolforge.vcat.cache.interfaces.ApiCache;
+
+import java.util.concurrent.*;
+
+/**
+ * API cache with two tiers: a size-bounded Caffeine cache in memory (L1) in front of a persistent cache (L2), such as
+ * an {@link org.toolforge.vcat.cache.file.ApiFileCache}. Entries found in L2 are promoted to L1. New entries are put
+ * into L1 at once, and written to L2 in the background.
+ * <p>
+ * Each tier has its own time to live: L1 the one supplied here, L2 the one it was created with. L2 is purged in the
+ * background at the interval of the L1 time to live.
+ */
+@Slf4j
+public class TieredApiCache extends AbstractCaffeineCache<String, JsonObject> implements ApiCache, AutoCloseable {
+
+    private final ApiCache secondLevelCache;
+
+    /**
+     * Entries not yet written to L2, so they are still found if they are evicted from L1 before.
+     */
+    private final ConcurrentMap<String, JsonObject> pendingWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Single thread for all access to L2 in the background, so writes do not compete with each other.
+     */
+    private final ScheduledExecutorService executor;
+
+    public TieredApiCache(int size, int timeout, ApiCache secondLevelCache) {
+        this(size, 0, timeout, secondLevelCache);
+    }
+
+    /**
+     * @param size             Maximum number of entries in L1, if not limited by memory.
+     * @param maxWeight        Maximum estimated memory used by all entries in L1 (bytes), or 0 to limit the number of
+     *                         entries instead.
+     * @param timeout          Time to live in L1 (seconds), also the interval for purging L2.
+     * @param secondLevelCache Persistent cache used as L2.
+     */
+    public TieredApiCache(int size, long maxWeight, int timeout, ApiCache secondLevelCache) {
+        super(size, maxWeight, timeout, (key, value) -> Weighers.weigh(key) + Weighers.weigh(value));
+        this.secondLevelCache = secondLevelCache;
+        executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("vcat-api-cache-l2").daemon().factory());
+        if (timeout > 0) {
+            executor.scheduleWithFixedDelay(this::purgeSecondLevel, timeout, timeout, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return cache.getIfPresent(key) != null || pendingWrites.containsKey(key) || secondLevelCache.containsKey(key);
+    }
+
+    @Override
+    @Nullable
+    public JsonObject getJSONObject(String key) throws CacheException {
+        JsonObject jsonObject = cache.getIfPresent(key);
+        if (jsonObject != null) {
+            return jsonObject;
+        }
+        jsonObject = pendingWrites.get(key);
+        if (jsonObject == null) {
+            jsonObject = secondLevelCache.getJSONObject(key);
+        }
+        if (jsonObject != null) {
+            cache.put(key, jsonObject);
+        }
+        return jsonObject;
+    }
+
+    @Override
+    public void purge() {
+        cache.cleanUp();
+        try {
+            executor.execute(this::purgeSecondLevel);
+        } catch (RejectedExecutionException e) {
+            // Already closed
+        }
+    }
+
+    private void purgeSecondLevel() {
+        try {
+            secondLevelCache.purge();
+        } catch (CacheException e) {
+            LOG.warn("Error purging second level API cache", e);
+        }
+    }
+
+    @Override
+    public void put(String key, JsonObject jsonObject) {
+        cache.put(key, jsonObject);
+        pendingWrites.put(key, jsonObject);
+        try {
+            executor.execute(() -> {
+                try {
+                    secondLevelCache.put(key, jsonObject);
+                } catch (CacheException e) {
+                    LOG.warn("Error writing to second level API cache", e);
+                } finally {
+                    pendingWrites.remove(key, jsonObject);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Already closed, so only keep the entry in L1
+            pendingWrites.remove(key, jsonObject);
+        }
+    }
+
+    /**
+     * Stop purging L2, and wait until all pending entries are written to it. L2 is closed as well, if it can be.
+     */
+    @Override
+    public void close() throws Exception {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        if (secondLevelCache instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.toolforge.vcat.caffeine;
+
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import lombok.experimental.UtilityClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Rough estimates of the memory retained by cached values, for use in Caffeine weighers. They assume a 64-bit JVM
+ * with compressed references, and two bytes per character, so they tend to be on the high side.
+ */
+@UtilityClass
+class Weighers {
+
+    /**
+     * Object header plus a reference, as a base for every object.
+     */
+    private static final int OBJECT = 16;
+
+    /**
+     * String object, its array header and the reference to it.
+     */
+    private static final int STRING = 48;
+
+    /**
+     * Map entry (node in a hash table) including its slot in the table.
+     */
+    private static final int MAP_ENTRY = 40;
+
+    /**
+     * Numbers in JSON are backed by a BigDecimal or similar.
+     */
+    private static final int NUMBER = 64;
+
+    static int weigh(String string) {
+        return STRING + 2 * string.length();
+    }
+
+    static int weigh(String[] strings) {
+        long weight = OBJECT + 4L * strings.length;
+        for (String string : strings) {
+            weight += weigh(string);
+        }
+        return saturate(weight);
+    }
+
+    static int weigh(JsonValue value) {
+        return saturate(weighJson(value));
+    }
+
+    private static long weighJson(JsonValue value) {
+        return switch (value) {
+            case JsonObject object -> {
+                long weight = OBJECT + MAP_ENTRY;
+                for (var entry : object.entrySet()) {
+                    weight += MAP_ENTRY + weigh(entry.getKey()) + weighJson(entry.getValue());
+                }
+                yield weight;
+            }
+            case JsonArray array -> {
+                long weight = OBJECT + OBJECT + 4L * array.size();
+                for (JsonValue element : array) {
+                    weight += weighJson(element);
+                }
+                yield weight;
+            }
+            case JsonString string -> OBJECT + weigh(string.getString());
+            // true, false and null are shared constants
+            default -> value.getValueType() == JsonValue.ValueType.NUMBER ? NUMBER : 0;
+        };
+    }
+
+    /**
+     * Estimate the memory used by an object without knowing its structure, based on the size of its serialized form.
+     */
+    static int weighSerialized(Serializable object) {
+        final var outputStream = new ByteArrayOutputStream();
+        try (var objectOutputStream = new ObjectOutputStream(outputStream)) {
+            objectOutputStream.writeObject(object);
+        } catch (IOException e) {
+            // Cannot happen when writing to memory, unless something is not serializable
+            throw new IllegalArgumentException(e);
+        }
+        // Strings are the bulk of it, with one byte per character in the serialized form
+        return saturate(2L * outputStream.size());
+    }
+
+    private static int saturate(long weight) {
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+}
@@ -0,0 +1,143 @@
+package org.toolforge.vcat.caffeine;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.mediawiki.ApiException;
+import org.toolforge.vcat.mediawiki.Metadata;
+import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.Serial;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefreshingMetadataProviderTest {
+
+    /**
+     * Provider returning new metadata on each request, with the number of the request as the server, or failing once
+     * told to.
+     */
+    private static class CountingMetadataProvider implements MetadataProvider {
+
+        @Serial
+        private static final long serialVersionUID = 5870389034213374522L;
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private volatile boolean failing;
+
+        @Override
+        public Metadata requestMetadata(Wiki wiki) throws ApiException {
+            final int request = requests.incrementAndGet();
+            if (failing) {
+                throw new ApiException("test");
+            }
+            return new Metadata("/wiki/$1", "server" + request, Map.of(), Map.of());
+        }
+
+    }
+
+    private static class TestWiki implements Wiki {
+
+        @Serial
+        private static final long serialVersionUID = -3046204719562713052L;
+
+        @Override
+        public String getApiUrl() {
+            return "http://api.url";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Test";
+        }
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+    }
+
+    private final Wiki wiki = new TestWiki();
+
+    /**
+     * Wait until the metadata provider has been asked for metadata the expected number of times.
+     */
+    private static void awaitRequests(CountingMetadataProvider metadataProvider, int expected)
+            throws InterruptedException {
+        for (int i = 0; i < 100 && metadataProvider.requests.get() < expected; i++) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertEquals(expected, metadataProvider.requests.get());
+    }
+
+    @Test
+    void testRefresh() throws ApiException, InterruptedException {
+
+        final var metadataProvider = new CountingMetadataProvider();
+        final var underTest = new RefreshingMetadataProvider(metadataProvider, 10, 1, 60);
+
+        assertEquals("server1", underTest.requestMetadata(wiki).getServer());
+        assertEquals("server1", underTest.requestMetadata(wiki).getServer());
+        assertEquals(1, metadataProvider.requests.get());
+
+        TimeUnit.MILLISECONDS.sleep(1500);
+
+        // Cached metadata is returned while it is reloaded in the background
+        assertEquals("server1", underTest.requestMetadata(wiki).getServer());
+        awaitRequests(metadataProvider, 2);
+        for (int i = 0; i < 100 && "server1".equals(underTest.requestMetadata(wiki).getServer()); i++) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertEquals("server2", underTest.requestMetadata(wiki).getServer());
+        assertEquals(2, metadataProvider.requests.get());
+
+    }
+
+    @Test
+    void testRefreshFailed() throws ApiException, InterruptedException {
+
+        final var metadataProvider = new CountingMetadataProvider();
+        final var underTest = new RefreshingMetadataProvider(metadataProvider, 10, 1, 60);
+
+        assertEquals("server1", underTest.requestMetadata(wiki).getServer());
+
+        metadataProvider.failing = true;
+        TimeUnit.MILLISECONDS.sleep(1500);
+
+        // The old metadata is still returned after reloading it failed
+        assertEquals("server1", underTest.requestMetadata(wiki).getServer());
+        awaitRequests(metadataProvider, 2);
+        assertEquals("server1", underTest.requestMetadata(wiki).getServer());
+
+    }
+
+    @Test
+    void testSerialization() throws ApiException {
+
+        final var underTest = new RefreshingMetadataProvider(new CountingMetadataProvider(), 10, 1, 60);
+        assertEquals("server1", underTest.requestMetadata(wiki).getServer());
+
+        // The cache is not serialized, so metadata is loaded again
+        final var deserialized = SerializationUtils.roundtrip(underTest);
+        assertEquals("server2", deserialized.requestMetadata(wiki).getServer());
+        assertEquals("server2", deserialized.requestMetadata(wiki).getServer());
+
+    }
+
+    @Test
+    void testLoadFailed() {
+
+        final var metadataProvider = new CountingMetadataProvider();
+        metadataProvider.failing = true;
+        final var underTest = new RefreshingMetadataProvider(metadataProvider, 10, 1, 60);
+
+        assertThrows(ApiException.class, () -> underTest.requestMetadata(wiki));
+
+    }
+
+}
@@ -0,0 +1,159 @@
+package org.toolforge.vcat.caffeine;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.cache.interfaces.ApiCache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TieredApiCacheTest {
+
+    /**
+     * Second level cache keeping all entries in a map. Writes wait until they are released.
+     */
+    private static class SecondLevelCache implements ApiCache, AutoCloseable {
+
+        private final Map<String, JsonObject> map = new ConcurrentHashMap<>();
+
+        private final AtomicInteger gets = new AtomicInteger();
+
+        private final CountDownLatch writesReleased;
+
+        private volatile boolean closed;
+
+        private SecondLevelCache(boolean writesReleased) {
+            this.writesReleased = new CountDownLatch(writesReleased ? 0 : 1);
+        }
+
+        @Override
+        public boolean containsKey(String key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        @Nullable
+        public JsonObject getJSONObject(String key) {
+            gets.incrementAndGet();
+            return map.get(key);
+        }
+
+        @Override
+        public void purge() {
+            // Entries do not expire
+        }
+
+        @Override
+        public void put(String key, JsonObject jsonObject) {
+            try {
+                writesReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            map.put(key, jsonObject);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+    }
+
+    private static JsonObject jsonObject(String value) {
+        return Json.createObjectBuilder().add("test", value).build();
+    }
+
+    @Test
+    void testPromotion() throws Exception {
+
+        final var secondLevelCache = new SecondLevelCache(true);
+        secondLevelCache.map.put("test", jsonObject("test"));
+
+        try (var underTest = new TieredApiCache(10, 60, secondLevelCache)) {
+
+            assertEquals(jsonObject("test"), underTest.getJSONObject("test"));
+            assertEquals(1, secondLevelCache.gets.get());
+
+            // Found in L1 from now on
+            assertEquals(jsonObject("test"), underTest.getJSONObject("test"));
+            assertEquals(1, secondLevelCache.gets.get());
+            assertEquals(1, underTest.getSize());
+
+            assertNull(underTest.getJSONObject("missing"));
+            assertFalse(underTest.containsKey("missing"));
+
+        }
+
+    }
+
+    @Test
+    void testPendingWrites() throws Exception {
+
+        final var secondLevelCache = new SecondLevelCache(false);
+
+        try (var underTest = new TieredApiCache(0, 60, secondLevelCache)) {
+
+            underTest.put("test", jsonObject("test"));
+            // L1 holds no entries, and L2 does not have it yet
+            underTest.purge();
+            assertEquals(0, underTest.getSize());
+            assertFalse(secondLevelCache.containsKey("test"));
+
+            assertTrue(underTest.containsKey("test"));
+            assertEquals(jsonObject("test"), underTest.getJSONObject("test"));
+            assertEquals(0, secondLevelCache.gets.get());
+
+            secondLevelCache.writesReleased.countDown();
+
+        }
+
+        assertEquals(jsonObject("test"), secondLevelCache.map.get("test"));
+
+    }
+
+    @Test
+    void testCloseWritesPending() throws Exception {
+
+        final var secondLevelCache = new SecondLevelCache(false);
+        final var underTest = new TieredApiCache(10, 60, secondLevelCache);
+
+        for (int i = 0; i < 3; i++) {
+            underTest.put("test" + i, jsonObject("test" + i));
+        }
+        assertTrue(secondLevelCache.map.isEmpty());
+
+        final var closer = Thread.ofPlatform().start(() -> {
+            try {
+                underTest.close();
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        // Closing waits for the pending writes
+        closer.join(200);
+        assertTrue(closer.isAlive());
+        secondLevelCache.writesReleased.countDown();
+        closer.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertFalse(closer.isAlive());
+        assertTrue(secondLevelCache.closed);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(jsonObject("test" + i), secondLevelCache.map.get("test" + i));
+        }
+
+        // Entries put after closing are only kept in L1
+        underTest.put("late", jsonObject("late"));
+        assertEquals(jsonObject("late"), underTest.getJSONObject("late"));
+        assertFalse(secondLevelCache.containsKey("late"));
+
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.toolforge.vcat.caffeine;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeighersTest {
+
+    private static JsonObject jsonObject(int length) {
+        return Json.createObjectBuilder()
+                .add("query", Json.createObjectBuilder()
+                        .add("pages", Json.createArrayBuilder()
+                                .add(Json.createObjectBuilder()
+                                        .add("title", "x".repeat(length))
+                                        .add("ns", 14)
+                                        .add("missing", true))))
+                .build();
+    }
+
+    @Test
+    void testWeighString() {
+        assertEquals(Weighers.weigh(""), Weighers.weigh("test") - 8);
+        // Two bytes per character
+        assertTrue(Weighers.weigh("x".repeat(1000)) >= 2000);
+    }
+
+    @Test
+    void testWeighStrings() {
+        final String[] strings = {"Category:A", "Category:B"};
+        assertTrue(Weighers.weigh(strings) > Weighers.weigh(strings[0]) + Weighers.weigh(strings[1]));
+        assertTrue(Weighers.weigh(new String[0]) > 0);
+    }
+
+    @Test
+    void testWeighJson() {
+        final int weight = Weighers.weigh(jsonObject(0));
+        assertTrue(weight > 0);
+        // Each character of a string adds two bytes, everything else stays the same
+        assertEquals(weight + 2000, Weighers.weigh(jsonObject(1000)));
+    }
+
+    @Test
+    void testWeighSerialized() {
+        final var map = new HashMap<>(Map.of("test", "x".repeat(1000)));
+        assertTrue(Weighers.weighSerialized(map) >= 2000);
+    }
+
+    @Test
+    void testApiCaffeineCacheMaxWeight() {
+        final JsonObject value = jsonObject(1000);
+        final int entryWeight = Weighers.weigh("key00") + Weighers.weigh(value);
+        final var underTest = new ApiCaffeineCache(1000, 10L * entryWeight, 60);
+
+        for (int i = 0; i < 20; i++) {
+            underTest.put("key%02d".formatted(i), value);
+        }
+        underTest.purge();
+
+        // The bound applies to the estimates, regardless of the maximum number of entries
+        assertTrue(underTest.isWeighted());
+        assertEquals(10L * entryWeight, underTest.getMaximum());
+        assertTrue(underTest.getWeight() <= underTest.getMaximum());
+        assertEquals(underTest.getSize() * entryWeight, underTest.getWeight());
+        assertTrue(underTest.getSize() >= 9);
+        assertEquals(20, underTest.getSize() + underTest.getEvictionCount());
+        assertEquals(underTest.getEvictionCount() * entryWeight, underTest.getEvictionWeight());
+    }
+
+    @Test
+    void testApiCaffeineCacheMaxSize() {
+        final var underTest = new ApiCaffeineCache(10, 60);
+
+        for (int i = 0; i < 20; i++) {
+            underTest.put("key%02d".formatted(i), jsonObject(1000));
+        }
+        underTest.purge();
+
+        assertFalse(underTest.isWeighted());
+        assertEquals(10, underTest.getMaximum());
+        assertEquals(10, underTest.getSize());
+        assertEquals(underTest.getSize(), underTest.getWeight());
+    }
+
+}
@@ -10,6 +10,7 @@ import org.toolforge.vcat.graphviz.GraphvizException;
 import org.toolforge.vcat.mediawiki.ApiException;
 import org.toolforge.vcat.mediawiki.Metadata;
 import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
 import org.toolforge.vcat.params.AbstractAllParams;
 import org.toolforge.vcat.params.Relation;
 import org.toolforge.vcat.params.TitleNamespaceParam;
@@ -18,10 +19,7 @@ import java.io.IOException;
 import java.io.Serial;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.function.BiFunction;
 
 public abstract class AbstractVCat {
@@ -75,11 +73,54 @@ public abstract class AbstractVCat {
 
     protected final CategoryProvider categoryProvider;
 
+    /**
+     * Names of the root nodes for pages outside the category namespace, in the graph being rendered.
+     */
+    private final Set<String> otherNamespaceRootNames = new HashSet<>();
+
     protected AbstractVCat(final AbstractAllParams all, final CategoryProvider categoryProvider) {
         this.all = all;
         this.categoryProvider = categoryProvider;
     }
 
+    /**
+     * @see CategoryProvider#requestCategories(Wiki, List, boolean)
+     */
+    protected final Map<String, Collection<String>> requestCategories(List<String> fullTitles, boolean showhidden)
+            throws ApiException {
+        return categoryProvider.requestCategories(all.getWiki(), fullTitles, showhidden);
+    }
+
+    /**
+     * @see CategoryProvider#requestCategorymembers(Wiki, String)
+     */
+    protected final List<String> requestCategorymembers(String fullTitle) throws ApiException {
+        return categoryProvider.requestCategorymembers(all.getWiki(), fullTitle);
+    }
+
+    /**
+     * @see CategoryProvider#requestCategorymembers(Wiki, List)
+     */
+    protected final Map<String, List<String>> requestCategorymembers(List<String> fullTitles) throws ApiException {
+        return categoryProvider.requestCategorymembers(all.getWiki(), fullTitles);
+    }
+
+    /**
+     * @see CategoryProvider#requestCategorymembers(Wiki, List, int)
+     */
+    protected final Map<String, List<String>> requestCategorymembers(List<String> fullTitles, int minTitles)
+            throws ApiException {
+        return categoryProvider.requestCategorymembers(all.getWiki(), fullTitles, minTitles);
+    }
+
+    /**
+     * @param node Node in the graph being rendered.
+     * @return Whether the node stands for a category, rather than for a root page in another namespace.
+     */
+    protected final boolean isCategoryNode(Node node) {
+        return !otherNamespaceRootNames.contains(node.getName());
+    }
+
     protected String getDefaultGraphLabel(Collection<Root> roots) {
         final StringBuilder sb = new StringBuilder(all.getVCat().getWiki().getDisplayName());
         for (Root root : roots) {
@@ -97,6 +138,7 @@ public abstract class AbstractVCat {
         final long startMillis = System.currentTimeMillis();
 
         final var graph = new Graph();
+        otherNamespaceRootNames.clear();
 
         final String categoryNamespacePrefix = all.getMetadata().getAuthoritativeName(Metadata.NS_CATEGORY) + ':';
 
@@ -120,6 +162,7 @@ public abstract class AbstractVCat {
                 } else {
                     // Otherwise use "ROOT" with a number and set a label with the full title
                     rootNode = graph.node(ROOT_NODE_PREFIX + namespaceCounter);
+                    otherNamespaceRootNames.add(rootNode.getName());
                     namespaceCounter++;
                     rootNode.setLabel(fullTitle);
                 }
@@ -153,10 +196,18 @@ public abstract class AbstractVCat {
                 Collection<Node> curNodes = newNodes;
                 newNodes = new ArrayList<>();
 
-                renderGraphOuterLoop(graph, newNodes, curNodes, allNodesFound, categoryNamespacePrefix,
-                        all.getVCat().isShowhidden(), exceedDepth);
+                // Once the limit is exceeded beyond the first level, the graph is rendered again with a lower depth. If
+                // this is certain to happen, the graph for this depth is discarded, so there is no need to get all
+                // categories for this level.
+                final boolean complete;
+                if (limit != null && curDepth > 1 && graph.getNodeCount() > limit) {
+                    complete = false;
+                } else {
+                    complete = renderGraphOuterLoop(graph, newNodes, curNodes, allNodesFound, categoryNamespacePrefix,
+                            all.getVCat().isShowhidden(), exceedDepth, curDepth > 1 && !exceedDepth ? limit : null);
+                }
 
-                if (limit != null && graph.getNodeCount() > limit && curDepth > 1) {
+                if (!complete || (limit != null && graph.getNodeCount() > limit && curDepth > 1)) {
                     // If curDepth and maxDepth end up the same, reduce curDepth by one
                     if (maxDepth != null && curDepth == maxDepth) {
                         curDepth--;
@@ -234,8 +285,17 @@ public abstract class AbstractVCat {
     protected abstract void renderGraphOuterFirstLoop(Graph graph, Collection<Node> newNodes, Node rootNode, Set<Node> allNodesFound, String fullTitle,
                                                       String categoryNamespacePrefix, boolean showHidden) throws ApiException;
 
-    protected abstract void renderGraphOuterLoop(Graph graph, Collection<Node> newNodes, Collection<Node> curNodes, Set<Node> allNodesFound,
-                                                 String categoryNamespacePrefix, boolean showHidden, boolean exceedDepth) throws ApiException;
+    /**
+     * Add the categories for one level of the graph.
+     *
+     * @param nodeLimit If not <code>null</code>, the graph will be discarded if it has more nodes than this after this
+     *                  level. Implementations may then stop early as soon as this is certain, without changing the
+     *                  graph.
+     * @return <code>false</code> if stopped early because the graph would have more nodes than the limit.
+     */
+    protected abstract boolean renderGraphOuterLoop(Graph graph, Collection<Node> newNodes, Collection<Node> curNodes, Set<Node> allNodesFound,
+                                                    String categoryNamespacePrefix, boolean showHidden, boolean exceedDepth,
+                                                    @Nullable Integer nodeLimit) throws ApiException;
 
     protected final void renderGraphInnerLoop(
             Graph graph, Collection<Node> newNodes, Set<Node> allNodesFound, String categoryNamespacePrefix,
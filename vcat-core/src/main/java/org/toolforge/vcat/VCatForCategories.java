@@ -1,5 +1,6 @@
 package org.toolforge.vcat;
 
+import org.jspecify.annotations.Nullable;
 import org.toolforge.vcat.graph.Graph;
 import org.toolforge.vcat.graph.GroupRank;
 import org.toolforge.vcat.graph.Node;
@@ -23,8 +24,7 @@ public class VCatForCategories extends AbstractVCat {
                                              String categoryNamespacePrefix, boolean showHidden) throws ApiException {
         List<String> rootFullTitles = Collections.singletonList(fullTitle);
         {
-            Collection<String> categoryFullTitles = categoryProvider
-                    .requestCategories(all.getWiki(), rootFullTitles, showHidden).get(fullTitle);
+            Collection<String> categoryFullTitles = requestCategories(rootFullTitles, showHidden).get(fullTitle);
             if (categoryFullTitles != null) {
                 renderGraphInnerFirstLoop(graph, rootNode, allNodesFound, newNodes, categoryFullTitles,
                         categoryNamespacePrefix);
@@ -47,9 +47,10 @@ public class VCatForCategories extends AbstractVCat {
     }
 
     @Override
-    protected void renderGraphOuterLoop(
+    protected boolean renderGraphOuterLoop(
             Graph graph, Collection<Node> newNodes, Collection<Node> curNodes, Set<Node> allNodesFound,
-            String categoryNamespacePrefix, boolean showHidden, boolean exceedDepth) throws ApiException {
+            String categoryNamespacePrefix, boolean showHidden, boolean exceedDepth, @Nullable Integer nodeLimit)
+            throws ApiException {
 
         // Create a list of the full titles (including namespace) needed for API call
         var curFullTitles = curNodes.stream()
@@ -60,14 +61,14 @@ public class VCatForCategories extends AbstractVCat {
         final CreateEdgeFunction createEdgeFunction = graph::edge;
 
         // Look at categories from API
-        for (var categoryFullEntry : categoryProvider.requestCategories(all.getWiki(), curFullTitles, showHidden)
-                .entrySet()) {
+        for (var categoryFullEntry : requestCategories(curFullTitles, showHidden).entrySet()) {
             final String baseTitle = categoryFullEntry.getKey().substring(categoryNamespacePrefix.length());
             final var categoryFullTitles = categoryFullEntry.getValue();
             renderGraphInnerLoop(graph, newNodes, allNodesFound, categoryNamespacePrefix, exceedDepth, baseTitle,
                     categoryFullTitles, createEdgeFunction);
         }
 
+        return true;
     }
 
     @Override
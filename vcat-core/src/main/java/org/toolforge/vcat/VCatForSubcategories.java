@@ -1,5 +1,6 @@
 package org.toolforge.vcat;
 
+import org.jspecify.annotations.Nullable;
 import org.toolforge.vcat.graph.Graph;
 import org.toolforge.vcat.graph.GroupRank;
 import org.toolforge.vcat.graph.Node;
@@ -7,8 +8,8 @@ import org.toolforge.vcat.mediawiki.ApiException;
 import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
 import org.toolforge.vcat.params.AbstractAllParams;
 
-import java.util.Collection;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.Collectors;
 
 public class VCatForSubcategories extends AbstractVCat {
 
@@ -35,26 +36,139 @@ public class VCatForSubcategories extends AbstractVCat {
     protected void renderGraphOuterFirstLoop(
             Graph graph, Collection<Node> newNodes, Node rootNode, Set<Node> allNodesFound, String fullTitle,
             String categoryNamespacePrefix, boolean showHidden) throws ApiException {
-        final Collection<String> categoryFullTitles = categoryProvider.requestCategorymembers(all.getWiki(), fullTitle);
+        final Collection<String> categoryFullTitles = requestCategorymembers(fullTitle);
         if (!categoryFullTitles.isEmpty()) {
             renderGraphInnerLoop(graph, rootNode, allNodesFound, newNodes, categoryFullTitles, categoryNamespacePrefix);
         }
     }
 
     @Override
-    protected void renderGraphOuterLoop(
+    protected boolean renderGraphOuterLoop(
             Graph graph, Collection<Node> newNodes, Collection<Node> curNodes, Set<Node> allNodesFound,
-            String categoryNamespacePrefix, boolean showHidden, boolean exceedDepth) throws ApiException {
+            String categoryNamespacePrefix, boolean showHidden, boolean exceedDepth, @Nullable Integer nodeLimit)
+            throws ApiException {
+
+        // Create a list of the full titles (including namespace) needed for API call
+        final var curFullTitles = curNodes.stream()
+                .map(Node::getName)
+                .map(name -> categoryNamespacePrefix + name)
+                .toList();
 
         final CreateEdgeFunction createEdgeFunction = graph::edgeReverse;
 
+        // Get subcategories of the whole level at once
+        final Map<String, List<String>> categorymembersMap;
+        if (exceedDepth) {
+            categorymembersMap = requestCategorymembersBeyondDepth(graph, allNodesFound, curFullTitles,
+                    categoryNamespacePrefix);
+        } else if (nodeLimit == null) {
+            categorymembersMap = requestCategorymembers(curFullTitles);
+        } else {
+            categorymembersMap = requestCategorymembersWithinLimit(graph, curFullTitles, categoryNamespacePrefix,
+                    nodeLimit);
+            if (categorymembersMap == null) {
+                return false;
+            }
+        }
+
         for (var curNode : curNodes) {
-            final var categoryFullTitles = categoryProvider
-                    .requestCategorymembers(all.getWiki(), categoryNamespacePrefix + curNode.getName());
+            final var categoryFullTitles = categorymembersMap.get(categoryNamespacePrefix + curNode.getName());
             final String baseTitle = curNode.getName();
             renderGraphInnerLoop(graph, newNodes, allNodesFound, categoryNamespacePrefix, exceedDepth, baseTitle,
                     categoryFullTitles, createEdgeFunction);
         }
+
+        return true;
+    }
+
+    /**
+     * Get the subcategories for a level, stopping early for big categories if there will be more nodes than the limit
+     * anyway.
+     *
+     * @return Subcategories, or <code>null</code> if there will be more nodes than the limit.
+     */
+    @Nullable
+    private Map<String, List<String>> requestCategorymembersWithinLimit(
+            Graph graph, List<String> curFullTitles, String categoryNamespacePrefix, int nodeLimit)
+            throws ApiException {
+
+        // A single category with more subcategories than this could exceed the limit on its own
+        final int minTitles = Math.max(1, nodeLimit - graph.getNodeCount() + 1);
+        final var categorymembersMap = new LinkedHashMap<>(
+                requestCategorymembers(curFullTitles, minTitles));
+
+        // Each subcategory not yet in the graph will become a new node
+        final Set<String> newTitles = new HashSet<>();
+        for (var categoryFullTitles : categorymembersMap.values()) {
+            for (String categoryFullTitle : categoryFullTitles) {
+                final String categoryTitle = categoryFullTitle.substring(categoryNamespacePrefix.length());
+                if (!graph.containsNode(categoryTitle)) {
+                    newTitles.add(categoryTitle);
+                }
+            }
+        }
+        if (graph.getNodeCount() + newTitles.size() > nodeLimit) {
+            return null;
+        }
+
+        // Still within the limit, so get all subcategories of categories which may have been cut short
+        final var incompleteFullTitles = categorymembersMap.entrySet().stream()
+                .filter(entry -> entry.getValue().size() >= minTitles)
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!incompleteFullTitles.isEmpty()) {
+            categorymembersMap.putAll(requestCategorymembers(incompleteFullTitles));
+        }
+        return categorymembersMap;
+    }
+
+    /**
+     * Get the subcategories for the level beyond the maximum depth. There, only subcategories already in the graph are
+     * shown, plus whether there are any others, so big categories are not retrieved in full. A category with more
+     * subcategories than there are nodes has at least one which is not in the graph, and the nodes among its
+     * subcategories are found from the categories of the nodes instead. Only nodes standing for categories are looked
+     * up, not nodes for more subcategories or root pages in other namespaces.
+     *
+     * @return Subcategories, which for big categories are the nodes in the graph among them plus some of the others.
+     */
+    private Map<String, List<String>> requestCategorymembersBeyondDepth(
+            Graph graph, Set<Node> allNodesFound, List<String> curFullTitles, String categoryNamespacePrefix)
+            throws ApiException {
+
+        final int minTitles = graph.getNodeCount() + 1;
+        final var categorymembersMap = new LinkedHashMap<>(requestCategorymembers(curFullTitles, minTitles));
+
+        final var incompleteFullTitles = categorymembersMap.entrySet().stream()
+                .filter(entry -> entry.getValue().size() >= minTitles)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        if (incompleteFullTitles.isEmpty()) {
+            return categorymembersMap;
+        }
+
+        final var nodeFullTitles = graph.getNodes().stream()
+                .filter(allNodesFound::contains)
+                .filter(this::isCategoryNode)
+                .map(Node::getName)
+                .map(name -> categoryNamespacePrefix + name)
+                .toList();
+        final Map<String, Set<String>> nodeFullTitlesMap = new HashMap<>();
+        // Hidden categories have subcategories as well
+        requestCategories(nodeFullTitles, true).forEach((nodeFullTitle, categoryFullTitles) -> {
+            for (String categoryFullTitle : categoryFullTitles) {
+                if (incompleteFullTitles.contains(categoryFullTitle)) {
+                    nodeFullTitlesMap.computeIfAbsent(categoryFullTitle, k -> new LinkedHashSet<>())
+                            .add(nodeFullTitle);
+                }
+            }
+        });
+
+        for (String incompleteFullTitle : incompleteFullTitles) {
+            final Set<String> categoryFullTitles = new LinkedHashSet<>(categorymembersMap.get(incompleteFullTitle));
+            categoryFullTitles.addAll(nodeFullTitlesMap.getOrDefault(incompleteFullTitle, Set.of()));
+            categorymembersMap.put(incompleteFullTitle, List.copyOf(categoryFullTitles));
+        }
+        return categorymembersMap;
     }
 
     @Override
@@ -0,0 +1,125 @@
+package org.toolforge.vcat.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.toolforge.vcat.Messages;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Purges caches in the background at a fixed interval, so requests do not have to. Each run is timed, and the number
+ * of runs, their total duration and the number of entries they removed are kept for metrics.
+ * <p>
+ * If the interval is zero or less, nothing runs in the background, and {@link #purge()} has to be called instead.
+ */
+@Slf4j
+public class CachePurger implements AutoCloseable {
+
+    /**
+     * Task purging one or more caches.
+     */
+    @FunctionalInterface
+    public interface PurgeTask {
+
+        /**
+         * @return Number of entries removed, if known.
+         * @throws CacheException If a cache could not be purged.
+         */
+        int purge() throws CacheException;
+
+    }
+
+    private final PurgeTask task;
+
+    @Nullable
+    private final ScheduledExecutorService executor;
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder removed = new LongAdder();
+
+    private final LongAdder time = new LongAdder();
+
+    /**
+     * @param name              Name of the thread running the task in the background.
+     * @param intervalInSeconds Interval between the end of one run and the start of the next (seconds), or zero or
+     *                          less not to run in the background.
+     * @param task              Task to run.
+     */
+    public CachePurger(String name, int intervalInSeconds, PurgeTask task) {
+        this.task = task;
+        if (intervalInSeconds > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name(name).daemon().factory());
+            executor.scheduleWithFixedDelay(this::purgeInBackground, 0, intervalInSeconds, TimeUnit.SECONDS);
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * @return Whether the task runs in the background.
+     */
+    public boolean isScheduled() {
+        return executor != null;
+    }
+
+    /**
+     * Run the task now, in the calling thread.
+     *
+     * @throws CacheException If a cache could not be purged.
+     */
+    public void purge() throws CacheException {
+        final long start = System.nanoTime();
+        try {
+            removed.add(task.purge());
+        } finally {
+            time.add(System.nanoTime() - start);
+            count.increment();
+        }
+    }
+
+    private void purgeInBackground() {
+        try {
+            purge();
+        } catch (CacheException | RuntimeException e) {
+            // Log and carry on, as an exception would end the schedule
+            LOG.warn(Messages.getString("CachePurger.Warn.Purge"), e);
+        }
+    }
+
+    /**
+     * @return Number of runs.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return Number of entries removed by all runs.
+     */
+    public long getRemoved() {
+        return removed.sum();
+    }
+
+    /**
+     * @param unit Time unit.
+     * @return Total duration of all runs.
+     */
+    public double getTotalTime(TimeUnit unit) {
+        return (double) time.sum() / unit.toNanos(1);
+    }
+
+    /**
+     * Stop running in the background. A run in progress is finished.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.toolforge.vcat.cache;
+
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+import org.toolforge.vcat.params.Relation;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Key for the categories of a single page in a {@link org.toolforge.vcat.cache.interfaces.CategoryCache}.
+ *
+ * @param apiUrl     API URL of the wiki.
+ * @param fullTitle  Full title of the page.
+ * @param showhidden Whether hidden categories are included (always <code>false</code> for subcategories).
+ * @param relation   {@link Relation#Category} for the parent categories, {@link Relation#Subcategory} for the
+ *                   subcategories.
+ */
+public record CategoryCacheKey(String apiUrl, String fullTitle, boolean showhidden, Relation relation)
+        implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -3387312690452011374L;
+
+    public static CategoryCacheKey categories(Wiki wiki, String fullTitle, boolean showhidden) {
+        return new CategoryCacheKey(wiki.getApiUrl(), fullTitle, showhidden, Relation.Category);
+    }
+
+    public static CategoryCacheKey subcategories(Wiki wiki, String fullTitle) {
+        // Hidden categories are only left out of the parent categories
+        return new CategoryCacheKey(wiki.getApiUrl(), fullTitle, false, Relation.Subcategory);
+    }
+
+}
@@ -2,6 +2,8 @@ package org.toolforge.vcat.cache.file;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import net.dapete.locks.Locks;
+import net.dapete.locks.ReentrantLocks;
 import org.jspecify.annotations.Nullable;
 import org.slf4j.helpers.MessageFormatter;
 import org.toolforge.vcat.Messages;
@@ -12,17 +14,44 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * Abstract base class for caches to store generic {@link Serializable} objects, backed by files in a directory in the
  * file system.
+ * <p>
+ * New entries are written to a temporary file next to their final one, which is then atomically moved into place. A
+ * file in the cache is therefore always complete, and is never changed once it is there, so reading does not need any
+ * lock: a reader which has opened a file keeps reading the old contents, even if the entry is replaced or removed
+ * meanwhile. Writing and removing use a lock for each file, so operations on different entries do not wait for each
+ * other. Optionally, files are spread over subdirectories named after the first characters of their hash, to keep
+ * directories small.
+ * <p>
+ * An index of all files is kept in memory, with the size of each file, when it was written and the last two times it
+ * was used. It is built by one scan of the directory at startup, and kept current by this cache, so looking up an entry
+ * and purging do not need to access the file system. The directory must therefore not be changed by anything else
+ * while the cache is used. Temporary files left over from before are deleted by the scan, and are not part of the
+ * index.
+ * <p>
+ * Optionally, the disk space used by all files is limited. Once the limit is exceeded, the coldest files are evicted
+ * until the used space is a tenth below it: first the files used only once, then the others by the time they were used
+ * before their last use (LRU-2), so files used again and again are kept longest. Purging then removes files not used
+ * for the maximum age, rather than files written before it.
  *
  * @param <K> Class used for key.
  * @author Peter Schlömer
@@ -30,13 +59,99 @@ import java.util.stream.Stream;
 @Slf4j
 public abstract class AbstractFileCache<K extends Serializable> {
 
+    /**
+     * Length of the hash prefix naming the subdirectory of a file, if sharded.
+     */
+    private static final int SHARD_LENGTH = 2;
+
+    /**
+     * File name suffix of temporary files, which are written before they are moved into place.
+     */
+    protected static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Order of eviction if the disk space is limited.
+     */
+    private static final Comparator<EvictionCandidate> COLDEST_FIRST = Comparator
+            .comparingLong(EvictionCandidate::previousAccess)
+            .thenComparingLong(EvictionCandidate::lastAccess);
+
+    /**
+     * Size and use of a file in the index.
+     */
+    private static final class Entry {
+
+        private final long size;
+
+        private final long lastModified;
+
+        private volatile long lastAccess;
+
+        /**
+         * Time of the use before the last one, or 0 if used only once.
+         */
+        private volatile long previousAccess;
+
+        private Entry(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+            lastAccess = lastModified;
+        }
+
+        private void touch(long now) {
+            previousAccess = lastAccess;
+            lastAccess = now;
+        }
+
+    }
+
+    /**
+     * Snapshot of an entry, so it can be sorted while the entry is used.
+     */
+    private record EvictionCandidate(String filename, Entry entry, long previousAccess, long lastAccess) {
+    }
+
     /**
      * The cache directory.
      */
     @Getter
     protected final Path cacheDirectory;
 
-    protected final Lock lock = new ReentrantLock();
+    /**
+     * Locks for writing or removing each file, by file name.
+     */
+    private final ReentrantLocks<String> locks = Locks.reentrant();
+
+    /**
+     * Whether files are spread over subdirectories.
+     */
+    protected final boolean sharded;
+
+    /**
+     * Maximum disk space used by all files (bytes), or 0 if not limited.
+     */
+    @Getter
+    protected final long maxBytes;
+
+    /**
+     * Index of all files by file name.
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Disk space used by all files in the index (bytes).
+     */
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    /**
+     * Lock held while evicting, so only one thread evicts at a time.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * Number of files evicted.
+     */
+    private final LongAdder evictedFiles = new LongAdder();
 
     /**
      * Maximum age of cached items in seconds
@@ -60,9 +175,42 @@ public abstract class AbstractFileCache<K extends Serializable> {
      * @param prefix          File name prefix.
      * @param suffix          File name suffix.
      * @param maxAgeInSeconds Maximum age of cached items in seconds.
-     * @throws CacheException If the directory does not exist or is not writeable.
+     * @throws CacheException If the directory does not exist or is not writeable, or could not be read.
      */
     protected AbstractFileCache(Path cacheDirectory, String prefix, String suffix, final int maxAgeInSeconds) throws CacheException {
+        this(cacheDirectory, prefix, suffix, maxAgeInSeconds, false);
+    }
+
+    /**
+     * Internal constructor called by subclasses.
+     *
+     * @param cacheDirectory  The cache directory. This must exist and be writeable.
+     * @param prefix          File name prefix.
+     * @param suffix          File name suffix.
+     * @param maxAgeInSeconds Maximum age of cached items in seconds.
+     * @param sharded         Whether files are spread over subdirectories named after the first characters of their
+     *                        hash.
+     * @throws CacheException If the directory does not exist or is not writeable, or could not be read.
+     */
+    protected AbstractFileCache(Path cacheDirectory, String prefix, String suffix, final int maxAgeInSeconds,
+                                boolean sharded) throws CacheException {
+        this(cacheDirectory, prefix, suffix, maxAgeInSeconds, sharded, 0);
+    }
+
+    /**
+     * Internal constructor called by subclasses.
+     *
+     * @param cacheDirectory  The cache directory. This must exist and be writeable.
+     * @param prefix          File name prefix.
+     * @param suffix          File name suffix.
+     * @param maxAgeInSeconds Maximum age of cached items in seconds.
+     * @param sharded         Whether files are spread over subdirectories named after the first characters of their
+     *                        hash.
+     * @param maxBytes        Maximum disk space used by all files (bytes), or 0 if not limited.
+     * @throws CacheException If the directory does not exist or is not writeable, or could not be read.
+     */
+    protected AbstractFileCache(Path cacheDirectory, String prefix, String suffix, final int maxAgeInSeconds,
+                                boolean sharded, long maxBytes) throws CacheException {
         if (!Files.exists(cacheDirectory) || !Files.isDirectory(cacheDirectory) || !Files.isWritable(cacheDirectory)) {
             throw new CacheException(MessageFormatter
                     .format(Messages.getString("AbstractFileCache.Exception.DirMustExist"), cacheDirectory)
@@ -72,87 +220,247 @@ public abstract class AbstractFileCache<K extends Serializable> {
         this.prefix = prefix;
         this.suffix = suffix;
         this.maxAgeInSeconds = maxAgeInSeconds;
+        this.sharded = sharded;
+        this.maxBytes = maxBytes;
+        indexAllFiles();
+        evict(null);
     }
 
-    public void clear() throws CacheException {
-        lock.lock();
-        try {
-            int clearedFiles = 0;
-            for (Path path : getAllFiles()) {
+    /**
+     * @return Whether the disk space used by all files is limited.
+     */
+    private boolean isLimited() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @param path File.
+     * @return Whether the file is a temporary file, not yet moved into place.
+     */
+    private static boolean isTemporaryFile(Path path) {
+        return path.getFileName().toString().endsWith(TEMPORARY_SUFFIX);
+    }
+
+    /**
+     * Add all files in the cache directory to the index, with one scan. They count as used once, when they were last
+     * modified. Temporary files are left over from a write which did not finish, so they are deleted.
+     */
+    private void indexAllFiles() throws CacheException {
+        final int[] deletedFiles = new int[1];
+        try (Stream<Path> pathStream = Files.find(cacheDirectory, sharded ? 2 : 1,
+                (path, attributes) -> attributes.isRegularFile()
+                        && path.getFileName().toString().startsWith(prefix))) {
+            pathStream.forEach(path -> {
                 try {
-                    Files.delete(path);
-                    clearedFiles++;
+                    if (isTemporaryFile(path)) {
+                        Files.deleteIfExists(path);
+                        deletedFiles[0]++;
+                    } else {
+                        final var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        index(path.getFileName().toString(), attributes.size(),
+                                attributes.lastModifiedTime().toMillis());
+                    }
+                } catch (NoSuchFileException e) {
+                    // Already removed
                 } catch (IOException e) {
-                    LOG.warn(Messages.getString("AbstractFileCache.Warn.CouldNotDeleteClearing"), path, e);
+                    throw new UncheckedIOException(e);
                 }
-            }
-            if (clearedFiles > 0) {
-                LOG.info(Messages.getString("AbstractFileCache.Info.Cleared"), clearedFiles);
-            }
-        } finally {
-            lock.unlock();
+            });
+        } catch (IOException | UncheckedIOException e) {
+            throw new CacheException(Messages.getString("AbstractFileCache.Exception.IOReading"), e);
+        }
+        LOG.info(Messages.getString("AbstractFileCache.Info.Indexed"), entries.size(), usedBytes.get(),
+                cacheDirectory);
+        if (deletedFiles[0] > 0) {
+            LOG.info(Messages.getString("AbstractFileCache.Info.DeletedTemporary"), deletedFiles[0]);
         }
     }
 
-    public boolean containsKey(K key) {
-        lock.lock();
-        try {
-            return Files.exists(getCacheFile(key));
-        } finally {
-            lock.unlock();
+    /**
+     * Add a file which has been written to the index.
+     */
+    private void index(String filename, long size, long lastModified) {
+        final Entry previousEntry = entries.put(filename, new Entry(size, lastModified));
+        usedBytes.addAndGet(previousEntry == null ? size : size - previousEntry.size);
+    }
+
+    /**
+     * Remove a file which has been deleted from the index.
+     */
+    private void unindex(String filename) {
+        final Entry entry = entries.remove(filename);
+        if (entry != null) {
+            usedBytes.addAndGet(-entry.size);
         }
     }
 
-    public byte @Nullable [] get(K key) throws CacheException {
-        lock.lock();
+    /**
+     * Remove a file which has been deleted or found to be missing from the index, unless it has been replaced
+     * meanwhile.
+     *
+     * @return Whether the entry was removed.
+     */
+    private boolean unindex(String filename, Entry entry) {
+        if (entries.remove(filename, entry)) {
+            usedBytes.addAndGet(-entry.size);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * If the disk space used is above the limit, evict the coldest files until it is a tenth below it. If another
+     * thread is already evicting, return at once.
+     *
+     * @param keepFilename File name of a file not to evict, because it has just been written.
+     */
+    private void evict(@Nullable String keepFilename) {
+        if (!isLimited() || usedBytes.get() <= maxBytes || !evictionLock.tryLock()) {
+            return;
+        }
         try {
-            final Path cacheFile = getCacheFile(key);
-            if (Files.exists(cacheFile)) {
+            final long targetBytes = maxBytes - maxBytes / 10;
+            final List<EvictionCandidate> candidates = new ArrayList<>(entries.size());
+            entries.forEach((filename, entry) -> candidates.add(
+                    new EvictionCandidate(filename, entry, entry.previousAccess, entry.lastAccess)));
+            candidates.sort(COLDEST_FIRST);
+            int evicted = 0;
+            for (EvictionCandidate candidate : candidates) {
+                if (usedBytes.get() <= targetBytes) {
+                    break;
+                }
+                if (candidate.filename().equals(keepFilename)) {
+                    continue;
+                }
+                final var fileLock = locks.lock(candidate.filename());
                 try {
-                    return Files.readAllBytes(cacheFile);
+                    // Only if not replaced meanwhile; kept in the index if it could not be deleted
+                    if (entries.get(candidate.filename()) == candidate.entry()) {
+                        Files.deleteIfExists(getCacheFile(candidate.filename()));
+                        if (unindex(candidate.filename(), candidate.entry())) {
+                            evicted++;
+                        }
+                    }
                 } catch (IOException e) {
-                    throw new CacheException(e);
+                    LOG.warn(Messages.getString("AbstractFileCache.Warn.CouldNotDeleteEvicting"),
+                            candidate.filename(), e);
+                } finally {
+                    fileLock.unlock();
                 }
-            } else {
-                return null;
+            }
+            evictedFiles.add(evicted);
+            if (evicted > 0) {
+                LOG.info(Messages.getString("AbstractFileCache.Info.Evicted"), evicted, maxBytes);
             }
         } finally {
-            lock.unlock();
+            evictionLock.unlock();
         }
     }
 
     /**
-     * @return List of all files used by the cache.
+     * @return Number of files in the cache.
      */
-    private List<Path> getAllFiles() throws CacheException {
-        lock.lock();
-        try {
-            try (Stream<Path> pathStream = Files.list(cacheDirectory)) {
-                return pathStream.filter(s -> s.getFileName().toString().startsWith(prefix))
-                        .collect(Collectors.toList());
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Disk space used by all files (bytes).
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * @return Number of files evicted to stay within the limit of the disk space.
+     */
+    public long getEvictedFiles() {
+        return evictedFiles.sum();
+    }
+
+    public void clear() throws CacheException {
+        int clearedFiles = 0;
+        for (Path path : getAllFiles()) {
+            final var fileLock = locks.lock(path.getFileName().toString());
+            try {
+                Files.deleteIfExists(path);
+                unindex(path.getFileName().toString());
+                clearedFiles++;
             } catch (IOException e) {
-                throw new CacheException("Error reading list of files", e);
+                LOG.warn(Messages.getString("AbstractFileCache.Warn.CouldNotDeleteClearing"), path, e);
+            } finally {
+                fileLock.unlock();
             }
-        } finally {
-            lock.unlock();
+        }
+        if (clearedFiles > 0) {
+            LOG.info(Messages.getString("AbstractFileCache.Info.Cleared"), clearedFiles);
+        }
+    }
+
+    public boolean containsKey(K key) {
+        return getCacheFileIfPresent(key) != null;
+    }
+
+    /**
+     * Look up an entry in the index, and note its use if it is found.
+     *
+     * @param filename File name of an item.
+     * @return Entry of the item, or null if it is not in the cache.
+     */
+    @Nullable
+    private Entry lookup(String filename) {
+        final Entry entry = entries.get(filename);
+        if (entry != null) {
+            entry.touch(System.currentTimeMillis());
+        }
+        return entry;
+    }
+
+    public byte @Nullable [] get(K key) throws CacheException {
+        final String filename = getCacheFilename(key);
+        final Entry entry = lookup(filename);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(getCacheFile(filename));
+        } catch (NoSuchFileException e) {
+            // Removed by something else
+            unindex(filename, entry);
+            return null;
+        } catch (IOException e) {
+            throw new CacheException(e);
+        }
+    }
+
+    /**
+     * @return List of all files used by the cache, including temporary files.
+     */
+    private List<Path> getAllFiles() throws CacheException {
+        try (Stream<Path> pathStream = Files.find(cacheDirectory, sharded ? 2 : 1,
+                (path, attributes) -> attributes.isRegularFile()
+                        && path.getFileName().toString().startsWith(prefix))) {
+            return pathStream.toList();
+        } catch (IOException e) {
+            throw new CacheException("Error reading list of files", e);
         }
     }
 
     @Nullable
     public InputStream getAsInputStream(K key) throws CacheException {
-        lock.lock();
+        final String filename = getCacheFilename(key);
+        final Entry entry = lookup(filename);
+        if (entry == null) {
+            return null;
+        }
         try {
-            if (containsKey(key)) {
-                try {
-                    return Files.newInputStream(getCacheFile(key));
-                } catch (Exception e) {
-                    throw new CacheException(Messages.getString("AbstractFileCache.Exception.IOReading"), e);
-                }
-            } else {
-                return null;
-            }
-        } finally {
-            lock.unlock();
+            return Files.newInputStream(getCacheFile(filename));
+        } catch (NoSuchFileException e) {
+            // Removed by something else
+            unindex(filename, entry);
+            return null;
+        } catch (Exception e) {
+            throw new CacheException(Messages.getString("AbstractFileCache.Exception.IOReading"), e);
         }
     }
 
@@ -161,7 +469,32 @@ public abstract class AbstractFileCache<K extends Serializable> {
      * @return The file the item with the specified key is stored in.
      */
     public Path getCacheFile(K key) {
-        return cacheDirectory.resolve(getCacheFilename(key));
+        return getCacheFile(getCacheFilename(key));
+    }
+
+    /**
+     * Return the file an item is stored in, if it is in the cache. Unlike calling {@link #containsKey} and
+     * {@link #getCacheFile(Serializable)}, this hashes the key only once. The file system is not accessed.
+     *
+     * @param key Key.
+     * @return The file the item with the specified key is stored in, or null if it is not in the cache.
+     */
+    @Nullable
+    public Path getCacheFileIfPresent(K key) {
+        final String filename = getCacheFilename(key);
+        return lookup(filename) != null ? getCacheFile(filename) : null;
+    }
+
+    /**
+     * @param filename File name of an item.
+     * @return The file the item is stored in.
+     */
+    private Path getCacheFile(String filename) {
+        if (sharded) {
+            return cacheDirectory.resolve(filename.substring(prefix.length(), prefix.length() + SHARD_LENGTH))
+                    .resolve(filename);
+        }
+        return cacheDirectory.resolve(filename);
     }
 
     /**
@@ -183,82 +516,167 @@ public abstract class AbstractFileCache<K extends Serializable> {
     }
 
     public void purge() throws CacheException {
-        lock.lock();
-        try {
-            if (maxAgeInSeconds < 0) {
-                return;
+        purgeExpired();
+    }
+
+    /**
+     * Purge all expired files in one pass over the index. Only the files to delete are accessed.
+     *
+     * @return Number of files purged.
+     */
+    public int purgeExpired() {
+        if (maxAgeInSeconds < 0) {
+            return 0;
+        }
+        final long threshold = System.currentTimeMillis() - (1000L * maxAgeInSeconds);
+        int purgedFiles = 0;
+        for (var indexEntry : entries.entrySet()) {
+            final String filename = indexEntry.getKey();
+            final Entry entry = indexEntry.getValue();
+            // If the disk space is limited, files are kept as long as they are used
+            if ((isLimited() ? entry.lastAccess : entry.lastModified) >= threshold) {
+                continue;
             }
-            final long lastModifiedThreshold = System.currentTimeMillis() - (1000L * maxAgeInSeconds);
-            int purgedFiles = 0;
-            for (Path path : getAllFiles()) {
-                if (path.toFile().lastModified() < lastModifiedThreshold) {
-                    try {
-                        Files.delete(path);
+            final var fileLock = locks.lock(filename);
+            try {
+                // Only if not replaced meanwhile; kept in the index if it could not be deleted
+                if (entries.get(filename) == entry) {
+                    Files.deleteIfExists(getCacheFile(filename));
+                    if (unindex(filename, entry)) {
                         purgedFiles++;
-                    } catch (IOException e) {
-                        LOG.warn(Messages.getString("AbstractFileCache.Warn.CouldNotDeletePurging"), path, e);
                     }
                 }
+            } catch (IOException e) {
+                LOG.warn(Messages.getString("AbstractFileCache.Warn.CouldNotDeletePurging"), filename, e);
+            } finally {
+                fileLock.unlock();
             }
-            if (purgedFiles > 0) {
-                LOG.info(Messages.getString("AbstractFileCache.Info.Purged"), purgedFiles);
-            }
-        } finally {
-            lock.unlock();
         }
+        if (purgedFiles > 0) {
+            LOG.info(Messages.getString("AbstractFileCache.Info.Purged"), purgedFiles);
+        }
+        return purgedFiles;
+    }
+
+    /**
+     * Create the directory for a file, if it is in a subdirectory.
+     */
+    private void createDirectory(Path cacheFile) throws IOException {
+        if (sharded) {
+            Files.createDirectories(cacheFile.getParent());
+        }
+    }
+
+    /**
+     * Create a temporary file next to a file in the cache, to be moved into its place once it is complete. Its name
+     * starts with the one of the file, so it is deleted when the cache is cleared or the next time it is started,
+     * should it ever be left over.
+     */
+    private Path createTemporaryFile(Path cacheFile) throws IOException {
+        createDirectory(cacheFile);
+        return Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString() + '.', TEMPORARY_SUFFIX);
+    }
+
+    /**
+     * Atomically move a complete temporary file into the place of a file in the cache, replacing any existing one.
+     * Readers see either the old or the new file, never a partially written one.
+     */
+    private static void publish(Path temporaryFile, Path cacheFile) throws IOException {
+        Files.move(temporaryFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
     }
 
     public void put(K key, byte[] value) throws CacheException {
-        lock.lock();
+        final String filename = getCacheFilename(key);
+        final var fileLock = locks.lock(filename);
+        Path temporaryFile = null;
         try {
-            try (OutputStream outputStream = Files.newOutputStream(getCacheFile(key))) {
+            final Path cacheFile = getCacheFile(filename);
+            temporaryFile = createTemporaryFile(cacheFile);
+            try (OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
                 writeValueToStream(value, outputStream);
-            } catch (IOException e) {
-                throw new CacheException(Messages.getString("AbstractFileCache.Exception.WriteFailed"), e);
             }
+            final long size = Files.size(temporaryFile);
+            publish(temporaryFile, cacheFile);
+            temporaryFile = null;
+            index(filename, size, System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new CacheException(Messages.getString("AbstractFileCache.Exception.WriteFailed"), e);
         } finally {
-            lock.unlock();
+            fileLock.unlock();
+            deleteTemporaryFile(temporaryFile);
         }
+        evict(filename);
     }
 
-    public void putFile(K key, Path file, boolean move) throws CacheException {
-        lock.lock();
+    /**
+     * Put a file into the cache.
+     *
+     * @param key  Key.
+     * @param file File.
+     * @param move Whether to move the file, rather than copy it.
+     * @return The file the item is stored in.
+     * @throws CacheException If the file could not be moved or copied.
+     */
+    public Path putFile(K key, Path file, boolean move) throws CacheException {
+        final String filename = getCacheFilename(key);
+        final var fileLock = locks.lock(filename);
+        final Path cacheFile = getCacheFile(filename);
+        Path temporaryFile = null;
         try {
-            final Path cacheFile = getCacheFile(key);
-            // Delete file in cache, if it exists
-            try {
-                Files.deleteIfExists(cacheFile);
-            } catch (IOException e) {
-                throw new CacheException(Messages.getString("AbstractFileCache.Exception.DeleteFailed"), e);
-            }
+            final long size = Files.size(file);
+            boolean moved = false;
             if (move) {
                 try {
-                    Files.move(file, cacheFile);
-                } catch (IOException e) {
-                    throw new CacheException(Messages.getString("AbstractFileCache.Exception.MoveFailed"), e);
+                    createDirectory(cacheFile);
+                    publish(file, cacheFile);
+                    moved = true;
+                } catch (AtomicMoveNotSupportedException e) {
+                    // On another file system, so copy it first
                 }
-            } else {
-                try {
-                    Files.copy(file, cacheFile);
-                } catch (IOException e) {
-                    throw new CacheException(Messages.getString("AbstractFileCache.Exception.MoveFailed"), e);
+            }
+            if (!moved) {
+                temporaryFile = createTemporaryFile(cacheFile);
+                Files.copy(file, temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+                publish(temporaryFile, cacheFile);
+                temporaryFile = null;
+                if (move) {
+                    Files.delete(file);
                 }
             }
+            index(filename, size, System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new CacheException(Messages.getString("AbstractFileCache.Exception.MoveFailed"), e);
         } finally {
-            lock.unlock();
+            fileLock.unlock();
+            deleteTemporaryFile(temporaryFile);
         }
+        evict(filename);
+        return cacheFile;
     }
 
-    public void remove(K key) throws CacheException {
-        lock.lock();
-        try {
+    /**
+     * Delete a temporary file left over after writing has failed.
+     */
+    private static void deleteTemporaryFile(@Nullable Path temporaryFile) {
+        if (temporaryFile != null) {
             try {
-                Files.delete(getCacheFile(key));
+                Files.deleteIfExists(temporaryFile);
             } catch (IOException e) {
-                throw new CacheException(Messages.getString("AbstractFileCache.Exception.DeleteFailed"), e);
+                LOG.warn(Messages.getString("AbstractFileCache.Warn.CouldNotDeleteTemporary"), temporaryFile, e);
             }
+        }
+    }
+
+    public void remove(K key) throws CacheException {
+        final String filename = getCacheFilename(key);
+        final var fileLock = locks.lock(filename);
+        try {
+            Files.delete(getCacheFile(filename));
+            unindex(filename);
+        } catch (IOException e) {
+            throw new CacheException(Messages.getString("AbstractFileCache.Exception.DeleteFailed"), e);
         } finally {
-            lock.unlock();
+            fileLock.unlock();
         }
     }
 
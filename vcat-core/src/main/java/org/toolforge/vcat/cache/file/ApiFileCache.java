@@ -9,6 +9,7 @@ import org.toolforge.vcat.cache.CacheException;
 import org.toolforge.vcat.cache.interfaces.ApiCache;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Path;
 
@@ -25,33 +26,23 @@ public class ApiFileCache extends AbstractFileCache<String> implements ApiCache
     @Override
     @Nullable
     public JsonObject getJSONObject(String key) throws CacheException {
-        lock.lock();
-        try {
-            if (containsKey(key)) {
-                try (var reader = new InputStreamReader(getAsInputStream(key));
-                     var jsonReader = Json.createReader(reader)) {
-                    return jsonReader.readObject();
-                } catch (JsonException | NullPointerException e) {
-                    throw new CacheException(Messages.getString("ApiFileCache.Exception.ParseJSON"), e);
-                } catch (IOException e) {
-                    throw new CacheException(Messages.getString("ApiFileCache.Exception.CloseJSON"), e);
-                }
-            } else {
-                return null;
-            }
-        } finally {
-            lock.unlock();
+        final InputStream inputStream = getAsInputStream(key);
+        if (inputStream == null) {
+            return null;
+        }
+        try (var reader = new InputStreamReader(inputStream);
+             var jsonReader = Json.createReader(reader)) {
+            return jsonReader.readObject();
+        } catch (JsonException e) {
+            throw new CacheException(Messages.getString("ApiFileCache.Exception.ParseJSON"), e);
+        } catch (IOException e) {
+            throw new CacheException(Messages.getString("ApiFileCache.Exception.CloseJSON"), e);
         }
     }
 
     @Override
     public void put(String key, JsonObject jsonObject) throws CacheException {
-        lock.lock();
-        try {
-            put(key, jsonObject.toString().getBytes());
-        } finally {
-            lock.unlock();
-        }
+        put(key, jsonObject.toString().getBytes());
     }
 
 }
@@ -26,45 +26,35 @@ public class MetadataFileCache extends AbstractFileCache<String> implements Meta
     @Override
     @Nullable
     public Metadata getMetadata(Wiki wiki) throws CacheException {
-        lock.lock();
+        final String key = wiki.getApiUrl();
+        final byte[] value = get(key);
+        if (value == null) {
+            return null;
+        }
         try {
-            final String key = wiki.getApiUrl();
-            if (containsKey(key)) {
-                try {
-                    final var metadataObject = SerializationUtils.deserialize(get(key));
-                    if (metadataObject == null) {
-                        return null;
-                    } else if (metadataObject instanceof Metadata metadata) {
-                        return metadata;
-                    } else {
-                        // Wrong type
-                        remove(key);
-                        String message = Messages.getString("MetadataFileCache.Error.Deserialize");
-                        LOG.error(message);
-                        throw new CacheException(message);
-                    }
-                } catch (SerializationException e) {
-                    // Error during deserializing
-                    remove(key);
-                    throw new CacheException(Messages.getString("MetadataFileCache.Error.Deserialize"), e);
-                }
-            } else {
+            final var metadataObject = SerializationUtils.deserialize(value);
+            if (metadataObject == null) {
                 return null;
+            } else if (metadataObject instanceof Metadata metadata) {
+                return metadata;
+            } else {
+                // Wrong type
+                remove(key);
+                String message = Messages.getString("MetadataFileCache.Error.Deserialize");
+                LOG.error(message);
+                throw new CacheException(message);
             }
-        } finally {
-            lock.unlock();
+        } catch (SerializationException e) {
+            // Error during deserializing
+            remove(key);
+            throw new CacheException(Messages.getString("MetadataFileCache.Error.Deserialize"), e);
         }
     }
 
     @Override
     public void put(Wiki wiki, Metadata metadata) throws CacheException {
-        lock.lock();
-        try {
-            final String key = wiki.getApiUrl();
-            put(key, SerializationUtils.serialize(metadata));
-        } finally {
-            lock.unlock();
-        }
+        final String key = wiki.getApiUrl();
+        put(key, SerializationUtils.serialize(metadata));
     }
 
 }
@@ -12,7 +12,18 @@ public class RenderedFileCache extends AbstractFileCache<CombinedParams> {
     private static final String SUFFIX = "";
 
     public RenderedFileCache(final Path cacheDirectory, final int maxAgeInSeconds) throws CacheException {
-        super(cacheDirectory, PREFIX, SUFFIX, maxAgeInSeconds);
+        this(cacheDirectory, maxAgeInSeconds, 0);
+    }
+
+    /**
+     * @param cacheDirectory  The cache directory. This must exist and be writeable.
+     * @param maxAgeInSeconds Maximum age of cached items in seconds, or, if the disk space is limited, maximum time
+     *                        since they were last used.
+     * @param maxBytes        Maximum disk space used by all files (bytes), or 0 if not limited.
+     * @throws CacheException If the directory does not exist or is not writeable, or could not be read.
+     */
+    public RenderedFileCache(final Path cacheDirectory, final int maxAgeInSeconds, final long maxBytes) throws CacheException {
+        super(cacheDirectory, PREFIX, SUFFIX, maxAgeInSeconds, true, maxBytes);
     }
 
     @Override
@@ -0,0 +1,15 @@
+package org.toolforge.vcat.cache.interfaces;
+
+import org.jspecify.annotations.Nullable;
+import org.toolforge.vcat.cache.CacheException;
+import org.toolforge.vcat.cache.CategoryCacheKey;
+
+public interface CategoryCache {
+
+    String @Nullable [] getFullTitles(CategoryCacheKey key) throws CacheException;
+
+    void purge() throws CacheException;
+
+    void put(CategoryCacheKey key, String[] fullTitles) throws CacheException;
+
+}
@@ -0,0 +1,523 @@
+package org.toolforge.vcat.cache.mapped;
+
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.helpers.MessageFormatter;
+import org.toolforge.vcat.Messages;
+import org.toolforge.vcat.cache.CacheException;
+import org.toolforge.vcat.cache.CachePurger;
+import org.toolforge.vcat.cache.interfaces.ApiCache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * API cache keeping its entries outside the Java heap, in memory-mapped segment files.
+ * <p>
+ * Entries are appended to one segment at a time. When it is full, the next segment is used, and whatever it held
+ * before is dropped, so space is reclaimed a whole segment at a time, oldest first; {@link #purge()} also reclaims
+ * segments whose entries have all expired. The index is an open-addressing hash table in two primitive arrays, so
+ * millions of entries do not add objects for the garbage collector. Values are parsed directly from the mapped
+ * segments, without copying them to the heap first.
+ * <p>
+ * The segment files are only used while the cache is open, and are deleted when it is closed. Segment files left over
+ * in the directory by a cache which was not closed are deleted when the next one is created.
+ */
+@Slf4j
+public class MappedApiCache implements ApiCache, Closeable {
+
+    /**
+     * Size of the record header: key length, value length and expiry time.
+     */
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    private static final long EMPTY = 0;
+
+    private static final long DELETED = -1;
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private static final String SEGMENT_PREFIX = "ApiSegment-";
+
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private final Path[] segmentFiles;
+
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Write position in each segment.
+     */
+    private final int[] positions;
+
+    /**
+     * Latest expiry time of the entries in each segment.
+     */
+    private final long[] segmentExpires;
+
+    private final int segmentSize;
+
+    private final long maxAgeInMillis;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Purger of the cache, also for metrics.
+     */
+    @Getter
+    private final CachePurger purger;
+
+    /**
+     * Hashes of the keys in the index.
+     */
+    private long[] hashes = new long[INITIAL_CAPACITY];
+
+    /**
+     * Locations of the entries in the index: segment (plus one, so no location is empty) in the upper, position of the
+     * record in the lower half.
+     */
+    private long[] locations = new long[INITIAL_CAPACITY];
+
+    /**
+     * Number of entries in the index.
+     */
+    private int size;
+
+    /**
+     * Number of slots in the index which are not empty, including deleted entries.
+     */
+    private int usedSlots;
+
+    private int activeSegment;
+
+    private long reclaimedSegments;
+
+    private boolean closed;
+
+    /**
+     * Create a cache which is not purged in the background, so {@link #purge()} has to be called.
+     *
+     * @param directory       Directory for the segment files. This must exist and be writeable.
+     * @param segmentCount    Number of segments.
+     * @param segmentSize     Size of each segment (bytes). This also limits the size of a single entry.
+     * @param maxAgeInSeconds Maximum age of cached items in seconds.
+     * @throws CacheException If the directory does not exist, or the segments cannot be created.
+     */
+    public MappedApiCache(Path directory, int segmentCount, int segmentSize, int maxAgeInSeconds)
+            throws CacheException {
+        this(directory, segmentCount, segmentSize, maxAgeInSeconds, 0);
+    }
+
+    /**
+     * @param directory       Directory for the segment files. This must exist and be writeable.
+     * @param segmentCount    Number of segments.
+     * @param segmentSize     Size of each segment (bytes). This also limits the size of a single entry.
+     * @param maxAgeInSeconds Maximum age of cached items in seconds.
+     * @param purgeInterval   Interval for purging in the background (seconds), or zero or less not to purge in the
+     *                        background.
+     * @throws CacheException If the directory does not exist, or the segments cannot be created.
+     */
+    public MappedApiCache(Path directory, int segmentCount, int segmentSize, int maxAgeInSeconds, int purgeInterval)
+            throws CacheException {
+        if (!Files.isDirectory(directory) || !Files.isWritable(directory)) {
+            throw new CacheException(MessageFormatter
+                    .format(Messages.getString("MappedApiCache.Exception.DirMustExist"), directory).getMessage());
+        }
+        this.segmentSize = segmentSize;
+        maxAgeInMillis = 1000L * maxAgeInSeconds;
+        segmentFiles = new Path[segmentCount];
+        segments = new MappedByteBuffer[segmentCount];
+        positions = new int[segmentCount];
+        segmentExpires = new long[segmentCount];
+        try {
+            deleteStaleSegmentFiles(directory);
+            for (int i = 0; i < segmentCount; i++) {
+                segmentFiles[i] = Files.createTempFile(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+                try (FileChannel channel = FileChannel.open(segmentFiles[i], StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+                    // The mapping stays valid after the channel is closed
+                    segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+                }
+            }
+        } catch (IOException e) {
+            deleteSegmentFiles();
+            throw new CacheException(Messages.getString("MappedApiCache.Exception.Map"), e);
+        }
+        purger = new CachePurger("vcat-api-segments-purge", purgeInterval, this::purgeExpired);
+    }
+
+    /**
+     * Delete segment files left over from a cache which was not closed, e.g. because the process was killed. Their
+     * entries cannot be used, as the index was only kept in memory.
+     */
+    private static void deleteStaleSegmentFiles(Path directory) throws IOException {
+        int deletedFiles = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + '*' + SEGMENT_SUFFIX)) {
+            for (Path segmentFile : stream) {
+                try {
+                    if (Files.deleteIfExists(segmentFile)) {
+                        deletedFiles++;
+                    }
+                } catch (IOException e) {
+                    LOG.warn(Messages.getString("MappedApiCache.Warn.Delete"), segmentFile, e);
+                }
+            }
+        }
+        if (deletedFiles > 0) {
+            LOG.info(Messages.getString("MappedApiCache.Info.DeletedStale"), deletedFiles, directory);
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the key, with a final mix so neighbouring slots are spread.
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static int segment(long location) {
+        return (int) (location >>> 32) - 1;
+    }
+
+    private static int position(long location) {
+        return (int) location;
+    }
+
+    private static long location(int segment, int position) {
+        return ((long) (segment + 1) << 32) | position;
+    }
+
+    private boolean keyEquals(long location, byte[] key) {
+        final ByteBuffer segment = segments[segment(location)];
+        final int position = position(location);
+        if (segment.getInt(position) != key.length) {
+            return false;
+        }
+        return segment.slice(position + RECORD_HEADER_SIZE, key.length).equals(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * @return Slot of the key in the index, or -1 if it is not in the index.
+     */
+    private int find(long hash, byte[] key) {
+        final int mask = hashes.length - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            final long location = locations[slot];
+            if (location == EMPTY) {
+                return -1;
+            }
+            if (location != DELETED && hashes[slot] == hash && keyEquals(location, key)) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(long hash, long location) {
+        final int mask = hashes.length - 1;
+        int slot = (int) hash & mask;
+        while (locations[slot] != EMPTY && locations[slot] != DELETED) {
+            slot = (slot + 1) & mask;
+        }
+        if (locations[slot] == EMPTY) {
+            usedSlots++;
+        }
+        hashes[slot] = hash;
+        locations[slot] = location;
+        size++;
+    }
+
+    private void delete(int slot) {
+        locations[slot] = DELETED;
+        size--;
+    }
+
+    /**
+     * Rebuild the index without deleted entries, growing it if it is more than half full.
+     */
+    private void rehash() {
+        final long[] oldHashes = hashes;
+        final long[] oldLocations = locations;
+        final int capacity = size * 2 > oldHashes.length ? oldHashes.length * 2 : oldHashes.length;
+        hashes = new long[capacity];
+        locations = new long[capacity];
+        size = 0;
+        usedSlots = 0;
+        for (int slot = 0; slot < oldHashes.length; slot++) {
+            if (oldLocations[slot] != EMPTY && oldLocations[slot] != DELETED) {
+                insert(oldHashes[slot], oldLocations[slot]);
+            }
+        }
+    }
+
+    /**
+     * Drop all entries in a segment, so it can be written again.
+     */
+    private void reclaim(int segment) {
+        if (positions[segment] == 0) {
+            return;
+        }
+        for (int slot = 0; slot < locations.length; slot++) {
+            final long location = locations[slot];
+            if (location != EMPTY && location != DELETED && segment(location) == segment) {
+                delete(slot);
+            }
+        }
+        positions[segment] = 0;
+        segmentExpires[segment] = 0;
+        reclaimedSegments++;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final long hash = hash(keyBytes);
+        lock.readLock().lock();
+        try {
+            final int slot = find(hash, keyBytes);
+            return slot >= 0 && !isExpired(locations[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isExpired(long location) {
+        return segments[segment(location)].getLong(position(location) + 8) <= currentTimeMillis();
+    }
+
+    @Override
+    @Nullable
+    public JsonObject getJSONObject(String key) throws CacheException {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final long hash = hash(keyBytes);
+        lock.readLock().lock();
+        try {
+            final int slot = find(hash, keyBytes);
+            if (slot < 0 || isExpired(locations[slot])) {
+                return null;
+            }
+            final long location = locations[slot];
+            final ByteBuffer segment = segments[segment(location)];
+            final int position = position(location);
+            final ByteBuffer value = segment.slice(position + RECORD_HEADER_SIZE + keyBytes.length,
+                    segment.getInt(position + 4));
+            // Parsed while the lock is held, as the segment may be reclaimed afterwards
+            try (var jsonReader = Json.createReader(new ByteBufferInputStream(value))) {
+                return jsonReader.readObject();
+            } catch (JsonException e) {
+                throw new CacheException(Messages.getString("MappedApiCache.Exception.ParseJSON"), e);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reclaim all segments whose entries have expired.
+     */
+    @Override
+    public void purge() {
+        purgeExpired();
+    }
+
+    /**
+     * @return Number of entries removed.
+     */
+    private int purgeExpired() {
+        lock.writeLock().lock();
+        try {
+            final int sizeBefore = size;
+            final long now = currentTimeMillis();
+            for (int segment = 0; segment < segments.length; segment++) {
+                if (positions[segment] > 0 && segmentExpires[segment] <= now) {
+                    reclaim(segment);
+                }
+            }
+            if (usedSlots > size * 2 && usedSlots > INITIAL_CAPACITY / 2) {
+                rehash();
+            }
+            return sizeBefore - size;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(String key, JsonObject jsonObject) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] value = jsonObject.toString().getBytes(StandardCharsets.UTF_8);
+        final int recordSize = RECORD_HEADER_SIZE + keyBytes.length + value.length;
+        if (recordSize > segmentSize) {
+            LOG.debug("Entry of {} bytes is too large for segments of {} bytes", recordSize, segmentSize);
+            return;
+        }
+        final long hash = hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (segmentSize - positions[activeSegment] < recordSize) {
+                activeSegment = (activeSegment + 1) % segments.length;
+                reclaim(activeSegment);
+            }
+
+            final int slot = find(hash, keyBytes);
+            if (slot >= 0) {
+                delete(slot);
+            }
+            final long expires = currentTimeMillis() + maxAgeInMillis;
+            final ByteBuffer segment = segments[activeSegment];
+            final int position = positions[activeSegment];
+            segment.putInt(position, keyBytes.length)
+                    .putInt(position + 4, value.length)
+                    .putLong(position + 8, expires)
+                    .put(position + RECORD_HEADER_SIZE, keyBytes)
+                    .put(position + RECORD_HEADER_SIZE + keyBytes.length, value);
+            positions[activeSegment] += recordSize;
+            segmentExpires[activeSegment] = Math.max(segmentExpires[activeSegment], expires);
+
+            if ((usedSlots + 1) * 4L > hashes.length * 3L) {
+                rehash();
+            }
+            insert(hash, location(activeSegment, position));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of entries, including expired entries not yet reclaimed.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of bytes used in all segments.
+     */
+    public long getUsedBytes() {
+        lock.readLock().lock();
+        try {
+            return Arrays.stream(positions).asLongStream().sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of times a segment has been reclaimed.
+     */
+    public long getReclaimedSegments() {
+        lock.readLock().lock();
+        try {
+            return reclaimedSegments;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void deleteSegmentFiles() {
+        for (Path segmentFile : segmentFiles) {
+            if (segmentFile != null) {
+                try {
+                    Files.deleteIfExists(segmentFile);
+                } catch (IOException e) {
+                    LOG.warn(Messages.getString("MappedApiCache.Warn.Delete"), segmentFile, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop purging in the background, drop all entries and delete the segment files. The mappings are released by the
+     * garbage collector. Entries put afterwards are ignored.
+     */
+    @Override
+    public void close() {
+        purger.close();
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(hashes, 0);
+            Arrays.fill(locations, EMPTY);
+            size = 0;
+            usedSlots = 0;
+            Arrays.fill(positions, 0);
+            Arrays.fill(segments, null);
+            closed = true;
+            deleteSegmentFiles();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Input stream reading from a buffer without copying it.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.toolforge.vcat.cache.store;
+
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import org.jspecify.annotations.Nullable;
+import org.toolforge.vcat.Messages;
+import org.toolforge.vcat.cache.CacheException;
+import org.toolforge.vcat.cache.interfaces.ApiCache;
+import org.toolforge.vcat.util.HashHelper;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * API cache keeping all entries in a single {@link KeyValueStore} file.
+ */
+public class ApiStoreCache implements ApiCache, Closeable {
+
+    private final KeyValueStore store;
+
+    @Nullable
+    private final Duration ttl;
+
+    /**
+     * @param file            The store file. Its directory must exist and be writable.
+     * @param maxAgeInSeconds Maximum age of cached items in seconds, or a negative number if they do not expire.
+     * @throws CacheException If the store file cannot be opened.
+     */
+    public ApiStoreCache(Path file, int maxAgeInSeconds) throws CacheException {
+        store = new KeyValueStore(file);
+        ttl = maxAgeInSeconds < 0 ? null : Duration.ofSeconds(maxAgeInSeconds);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return store.containsKey(HashHelper.sha256Hex(key));
+    }
+
+    @Override
+    @Nullable
+    public JsonObject getJSONObject(String key) throws CacheException {
+        final byte[] value = store.get(HashHelper.sha256Hex(key));
+        if (value == null) {
+            return null;
+        }
+        try (var jsonReader = Json.createReader(new ByteArrayInputStream(value))) {
+            return jsonReader.readObject();
+        } catch (JsonException e) {
+            throw new CacheException(Messages.getString("ApiStoreCache.Exception.ParseJSON"), e);
+        }
+    }
+
+    @Override
+    public void purge() throws CacheException {
+        store.purge();
+    }
+
+    @Override
+    public void put(String key, JsonObject jsonObject) throws CacheException {
+        store.put(HashHelper.sha256Hex(key), jsonObject.toString().getBytes(StandardCharsets.UTF_8), ttl);
+    }
+
+    public void clear() throws CacheException {
+        store.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+}
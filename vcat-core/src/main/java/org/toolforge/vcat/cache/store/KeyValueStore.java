@@ -0,0 +1,654 @@
+package org.toolforge.vcat.cache.store;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.helpers.MessageFormatter;
+import org.toolforge.vcat.Messages;
+import org.toolforge.vcat.cache.CacheException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded key-value store keeping all entries in a single file, instead of one file per entry.
+ * <p>
+ * The file is a log: new values and removals are appended as records, and an index in memory points to the current
+ * value of each key. Each record carries the time it expires, and a checksum, so the index can be rebuilt when the
+ * file is opened again; records cut short by a crash are dropped. Writes are collected in memory and appended in
+ * batches. When the records which are no longer current take up more space than the current ones, the file is
+ * compacted by copying the current records to a new file, which then replaces the old one.
+ * <p>
+ * Reads may run concurrently; writes are serialized. Only one store may use a file at a time.
+ */
+@Slf4j
+public class KeyValueStore implements Closeable {
+
+    /**
+     * Magic number and version at the start of the file.
+     */
+    private static final int MAGIC = 0x56434b56;
+
+    private static final int VERSION = 1;
+
+    private static final int FILE_HEADER_SIZE = 8;
+
+    /**
+     * Size of the record header: checksum, key length, value length and expiry time.
+     */
+    private static final int RECORD_HEADER_SIZE = 20;
+
+    /**
+     * Value length marking the removal of a key.
+     */
+    private static final int TOMBSTONE = -1;
+
+    /**
+     * Expiry time of records which do not expire.
+     */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * Size of pending writes after which they are appended to the file.
+     */
+    private static final int BATCH_SIZE = 64 * 1024;
+
+    /**
+     * Size of records no longer current below which the file is not compacted.
+     */
+    private static final long MIN_COMPACT_SIZE = 1024 * 1024;
+
+    /**
+     * Position and expiry time of the current value of a key in the file.
+     */
+    private record Location(long position, int length, long expires) {
+
+        private int recordSize(int keyLength) {
+            return RECORD_HEADER_SIZE + keyLength + length;
+        }
+
+    }
+
+    /**
+     * Write not yet appended to the file.
+     */
+    private record Pending(byte @Nullable [] value, long expires) {
+    }
+
+    /**
+     * The store file.
+     */
+    @Getter
+    private final Path file;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Location> index = new HashMap<>();
+
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+
+    private int pendingSize;
+
+    private FileChannel channel;
+
+    /**
+     * Size of all current records in the file.
+     */
+    private long liveSize;
+
+    /**
+     * Size of all records in the file which are no longer current.
+     */
+    private long garbageSize;
+
+    /**
+     * Open a store, reading the index from the file if it exists.
+     *
+     * @param file The store file. Its directory must exist and be writable.
+     * @throws CacheException If the file cannot be opened, is used by another store or is no store file.
+     */
+    public KeyValueStore(Path file) throws CacheException {
+        this.file = file;
+        channel = open(file);
+        try {
+            if (channel.size() == 0) {
+                writeFileHeader(channel);
+            } else {
+                readIndex();
+            }
+        } catch (IOException | CacheException e) {
+            closeQuietly();
+            throw e instanceof CacheException cacheException ? cacheException
+                    : new CacheException(format("KeyValueStore.Exception.Open", file), e);
+        }
+    }
+
+    private FileChannel open(Path path) throws CacheException {
+        final FileChannel fileChannel;
+        try {
+            fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new CacheException(format("KeyValueStore.Exception.Open", path), e);
+        }
+        // Released when the channel is closed
+        FileLock fileLock;
+        try {
+            fileLock = fileChannel.tryLock();
+        } catch (IOException | OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            try {
+                fileChannel.close();
+            } catch (IOException e) {
+                // Not used yet
+            }
+            throw new CacheException(format("KeyValueStore.Exception.Locked", path));
+        }
+        return fileChannel;
+    }
+
+    private static String format(String key, Object argument) {
+        return MessageFormatter.format(Messages.getString(key), argument).getMessage();
+    }
+
+    private static void writeFileHeader(FileChannel fileChannel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(fileChannel, buffer, 0);
+    }
+
+    private static void writeFully(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException {
+        long writePosition = position;
+        while (buffer.hasRemaining()) {
+            writePosition += fileChannel.write(buffer, writePosition);
+        }
+    }
+
+    private static boolean readFully(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException {
+        long readPosition = position;
+        while (buffer.hasRemaining()) {
+            final int read = fileChannel.read(buffer, readPosition);
+            if (read < 0) {
+                return false;
+            }
+            readPosition += read;
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * Rebuild the index by reading all records. The file is truncated after the last complete record.
+     */
+    private void readIndex() throws IOException, CacheException {
+        final ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        if (!readFully(channel, fileHeader, 0) || fileHeader.getInt() != MAGIC || fileHeader.getInt() != VERSION) {
+            throw new CacheException(format("KeyValueStore.Exception.Format", file));
+        }
+
+        final long fileSize = channel.size();
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long position = FILE_HEADER_SIZE;
+        while (position < fileSize) {
+            header.clear();
+            if (!readFully(channel, header, position)) {
+                break;
+            }
+            final int checksum = header.getInt();
+            final int keyLength = header.getInt();
+            final int valueLength = header.getInt();
+            final long expires = header.getLong();
+            final long recordSize = (long) RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+            if (keyLength < 0 || valueLength < TOMBSTONE || position + recordSize > fileSize) {
+                break;
+            }
+            final ByteBuffer data = ByteBuffer.allocate((int) recordSize - RECORD_HEADER_SIZE);
+            if (!readFully(channel, data, position + RECORD_HEADER_SIZE)
+                    || checksum(header, data) != checksum) {
+                break;
+            }
+
+            final String key = new String(data.array(), 0, keyLength, StandardCharsets.UTF_8);
+            if (valueLength == TOMBSTONE) {
+                removeFromIndex(key);
+                garbageSize += recordSize;
+            } else {
+                putInIndex(key, new Location(position + RECORD_HEADER_SIZE + keyLength, valueLength, expires));
+            }
+            position += recordSize;
+        }
+
+        if (position < fileSize) {
+            LOG.warn(Messages.getString("KeyValueStore.Warn.Truncated"), file, fileSize - position);
+            channel.truncate(position);
+        }
+    }
+
+    private static int checksum(ByteBuffer header, ByteBuffer data) {
+        final CRC32 crc = new CRC32();
+        crc.update(header.array(), 4, RECORD_HEADER_SIZE - 4);
+        crc.update(data.array(), 0, data.limit());
+        return (int) crc.getValue();
+    }
+
+    private static int keyLength(String key) {
+        return key.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void putInIndex(String key, Location location) {
+        final int keyLength = keyLength(key);
+        removeFromIndex(key);
+        index.put(key, location);
+        liveSize += location.recordSize(keyLength);
+    }
+
+    private void removeFromIndex(String key) {
+        final Location oldLocation = index.remove(key);
+        if (oldLocation != null) {
+            final int size = oldLocation.recordSize(keyLength(key));
+            liveSize -= size;
+            garbageSize += size;
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private long expires(@Nullable Duration ttl) {
+        return ttl == null ? NEVER : currentTimeMillis() + ttl.toMillis();
+    }
+
+    private static boolean isExpired(long expires, long now) {
+        return expires <= now;
+    }
+
+    /**
+     * @param key Key.
+     * @return Whether the store holds a value for the key which has not expired.
+     */
+    public boolean containsKey(String key) {
+        lock.readLock().lock();
+        try {
+            final long now = currentTimeMillis();
+            final Pending pendingWrite = pending.get(key);
+            if (pendingWrite != null) {
+                return pendingWrite.value != null && !isExpired(pendingWrite.expires, now);
+            }
+            final Location location = index.get(key);
+            return location != null && !isExpired(location.expires, now);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key Key.
+     * @return The value for the key, or <code>null</code> if there is none or it has expired.
+     * @throws CacheException If the value cannot be read.
+     */
+    public byte @Nullable [] get(String key) throws CacheException {
+        lock.readLock().lock();
+        try {
+            final long now = currentTimeMillis();
+            final Pending pendingWrite = pending.get(key);
+            if (pendingWrite != null) {
+                return pendingWrite.value == null || isExpired(pendingWrite.expires, now) ? null
+                        : pendingWrite.value.clone();
+            }
+            final Location location = index.get(key);
+            if (location == null || isExpired(location.expires, now)) {
+                return null;
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate(location.length);
+            if (!readFully(channel, buffer, location.position)) {
+                throw new CacheException(format("KeyValueStore.Exception.Read", file));
+            }
+            return buffer.array();
+        } catch (IOException e) {
+            throw new CacheException(format("KeyValueStore.Exception.Read", file), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Store a value. It is written to the file with the next batch.
+     *
+     * @param key   Key.
+     * @param value Value.
+     * @param ttl   Time after which the value expires, or <code>null</code> if it does not expire.
+     * @throws CacheException If the batch cannot be written.
+     */
+    public void put(String key, byte[] value, @Nullable Duration ttl) throws CacheException {
+        write(key, new Pending(value.clone(), expires(ttl)));
+    }
+
+    /**
+     * Remove the value for a key, if there is one.
+     *
+     * @param key Key.
+     * @throws CacheException If the batch cannot be written.
+     */
+    public void remove(String key) throws CacheException {
+        write(key, new Pending(null, NEVER));
+    }
+
+    private void write(String key, Pending pendingWrite) throws CacheException {
+        lock.writeLock().lock();
+        try {
+            pending.put(key, pendingWrite);
+            pendingSize += RECORD_HEADER_SIZE + keyLength(key)
+                    + (pendingWrite.value == null ? 0 : pendingWrite.value.length);
+            if (pendingSize >= BATCH_SIZE) {
+                flushPending();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Append all pending writes to the file.
+     *
+     * @throws CacheException If the writes fail.
+     */
+    public void flush() throws CacheException {
+        lock.writeLock().lock();
+        try {
+            flushPending();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void flushPending() throws CacheException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            final long position = channel.size();
+            final ByteBuffer buffer = ByteBuffer.allocate(pendingSize);
+            final Map<String, Location> locations = new HashMap<>();
+            for (var entry : pending.entrySet()) {
+                final Location location = appendRecord(buffer, position, entry.getKey(), entry.getValue().value,
+                        entry.getValue().expires);
+                if (location != null) {
+                    locations.put(entry.getKey(), location);
+                }
+            }
+            buffer.flip();
+            writeFully(channel, buffer, position);
+
+            for (var entry : pending.entrySet()) {
+                final Location location = locations.get(entry.getKey());
+                if (location == null) {
+                    removeFromIndex(entry.getKey());
+                    garbageSize += RECORD_HEADER_SIZE + keyLength(entry.getKey());
+                } else {
+                    putInIndex(entry.getKey(), location);
+                }
+            }
+        } catch (IOException e) {
+            throw new CacheException(format("KeyValueStore.Exception.Write", file), e);
+        } finally {
+            pending.clear();
+            pendingSize = 0;
+        }
+
+        if (isCompactionNeeded()) {
+            compactFile();
+        }
+    }
+
+    /**
+     * Add a record to a buffer.
+     *
+     * @param buffer   Buffer.
+     * @param position Position in the file where the buffer will be written.
+     * @param key      Key.
+     * @param value    Value, or <code>null</code> to remove the key.
+     * @param expires  Expiry time.
+     * @return Location of the value in the file, or <code>null</code> for a removal.
+     */
+    @Nullable
+    private static Location appendRecord(ByteBuffer buffer, long position, String key, byte @Nullable [] value,
+                                         long expires) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int valueLength = value == null ? TOMBSTONE : value.length;
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        header.putInt(0).putInt(keyBytes.length).putInt(valueLength).putLong(expires);
+        final CRC32 crc = new CRC32();
+        crc.update(header.array(), 4, RECORD_HEADER_SIZE - 4);
+        crc.update(keyBytes);
+        if (value != null) {
+            crc.update(value);
+        }
+        header.putInt(0, (int) crc.getValue());
+
+        final long recordPosition = position + buffer.position();
+        buffer.put(header.array()).put(keyBytes);
+        if (value == null) {
+            return null;
+        }
+        buffer.put(value);
+        return new Location(recordPosition + RECORD_HEADER_SIZE + keyBytes.length, value.length, expires);
+    }
+
+    private boolean isCompactionNeeded() {
+        return garbageSize >= MIN_COMPACT_SIZE && garbageSize > liveSize;
+    }
+
+    /**
+     * Remove all expired values. If the records no longer current then take up more space than the current ones, the
+     * file is compacted.
+     *
+     * @throws CacheException If writing fails.
+     */
+    public void purge() throws CacheException {
+        lock.writeLock().lock();
+        try {
+            flushPending();
+            final long now = currentTimeMillis();
+            int purged = 0;
+            for (var iterator = index.entrySet().iterator(); iterator.hasNext(); ) {
+                final var entry = iterator.next();
+                if (isExpired(entry.getValue().expires, now)) {
+                    final int size = entry.getValue().recordSize(keyLength(entry.getKey()));
+                    liveSize -= size;
+                    garbageSize += size;
+                    iterator.remove();
+                    purged++;
+                }
+            }
+            if (purged > 0) {
+                LOG.info(Messages.getString("KeyValueStore.Info.Purged"), purged, file);
+            }
+            if (isCompactionNeeded()) {
+                compactFile();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write all current values to a new file, which replaces the old one.
+     *
+     * @throws CacheException If writing fails.
+     */
+    public void compact() throws CacheException {
+        lock.writeLock().lock();
+        try {
+            flushPending();
+            compactFile();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactFile() throws CacheException {
+        final long oldFileSize = FILE_HEADER_SIZE + liveSize + garbageSize;
+        final Path compactFile = file.resolveSibling(file.getFileName() + ".compact");
+        final Map<String, Location> newIndex = new HashMap<>();
+        long newLiveSize = 0;
+        try (FileChannel compactChannel = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFileHeader(compactChannel);
+            final long now = currentTimeMillis();
+            long position = FILE_HEADER_SIZE;
+            ByteBuffer buffer = ByteBuffer.allocate(BATCH_SIZE);
+            for (var entry : index.entrySet()) {
+                final Location location = entry.getValue();
+                if (isExpired(location.expires, now)) {
+                    continue;
+                }
+                final ByteBuffer value = ByteBuffer.allocate(location.length);
+                if (!readFully(channel, value, location.position)) {
+                    throw new IOException("Unexpected end of file");
+                }
+                final int recordSize = location.recordSize(keyLength(entry.getKey()));
+                if (buffer.remaining() < recordSize) {
+                    buffer.flip();
+                    writeFully(compactChannel, buffer, position);
+                    position += buffer.limit();
+                    buffer = ByteBuffer.allocate(Math.max(BATCH_SIZE, recordSize));
+                }
+                newIndex.put(entry.getKey(),
+                        appendRecord(buffer, position, entry.getKey(), value.array(), location.expires));
+                newLiveSize += recordSize;
+            }
+            buffer.flip();
+            writeFully(compactChannel, buffer, position);
+            compactChannel.force(true);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(compactFile);
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+            throw new CacheException(format("KeyValueStore.Exception.Compact", file), e);
+        }
+
+        closeQuietly();
+        try {
+            Files.move(compactFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Keep using the old file
+            LOG.warn(format("KeyValueStore.Exception.Compact", file), e);
+            channel = open(file);
+            return;
+        }
+        channel = open(file);
+        index.clear();
+        index.putAll(newIndex);
+        liveSize = newLiveSize;
+        garbageSize = 0;
+        LOG.info(Messages.getString("KeyValueStore.Info.Compacted"), file, oldFileSize,
+                FILE_HEADER_SIZE + liveSize);
+    }
+
+    /**
+     * Remove all values.
+     *
+     * @throws CacheException If the file cannot be truncated.
+     */
+    public void clear() throws CacheException {
+        lock.writeLock().lock();
+        try {
+            pending.clear();
+            pendingSize = 0;
+            index.clear();
+            liveSize = 0;
+            garbageSize = 0;
+            channel.truncate(FILE_HEADER_SIZE);
+        } catch (IOException e) {
+            throw new CacheException(format("KeyValueStore.Exception.Write", file), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of keys with a value, including expired values not yet purged.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = index.size();
+            for (var entry : pending.entrySet()) {
+                if (entry.getValue().value == null) {
+                    size -= index.containsKey(entry.getKey()) ? 1 : 0;
+                } else {
+                    size += index.containsKey(entry.getKey()) ? 0 : 1;
+                }
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Size of the file, without pending writes.
+     */
+    public long getFileSize() {
+        lock.readLock().lock();
+        try {
+            return FILE_HEADER_SIZE + liveSize + garbageSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn(format("KeyValueStore.Exception.Close", file), e);
+        }
+    }
+
+    /**
+     * Write all pending writes and close the file.
+     *
+     * @throws IOException If writing or closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!channel.isOpen()) {
+                return;
+            }
+            try {
+                flushPending();
+                channel.force(true);
+            } catch (CacheException e) {
+                throw new IOException(e);
+            } finally {
+                channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.toolforge.vcat.cache.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+import org.jspecify.annotations.Nullable;
+import org.toolforge.vcat.Messages;
+import org.toolforge.vcat.cache.CacheException;
+import org.toolforge.vcat.cache.interfaces.MetadataCache;
+import org.toolforge.vcat.mediawiki.Metadata;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Metadata cache keeping all entries in a single {@link KeyValueStore} file.
+ */
+@Slf4j
+public class MetadataStoreCache implements MetadataCache, Closeable {
+
+    private final KeyValueStore store;
+
+    @Nullable
+    private final Duration ttl;
+
+    /**
+     * @param file            The store file. Its directory must exist and be writable.
+     * @param maxAgeInSeconds Maximum age of cached items in seconds, or a negative number if they do not expire.
+     * @throws CacheException If the store file cannot be opened.
+     */
+    public MetadataStoreCache(Path file, int maxAgeInSeconds) throws CacheException {
+        store = new KeyValueStore(file);
+        ttl = maxAgeInSeconds < 0 ? null : Duration.ofSeconds(maxAgeInSeconds);
+    }
+
+    @Override
+    @Nullable
+    public Metadata getMetadata(Wiki wiki) throws CacheException {
+        final String key = wiki.getApiUrl();
+        final byte[] value = store.get(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (SerializationUtils.deserialize(value) instanceof Metadata metadata) {
+                return metadata;
+            }
+            // Wrong type
+            store.remove(key);
+            final String message = Messages.getString("MetadataStoreCache.Error.Deserialize");
+            LOG.error(message);
+            throw new CacheException(message);
+        } catch (SerializationException e) {
+            // Error during deserializing
+            store.remove(key);
+            throw new CacheException(Messages.getString("MetadataStoreCache.Error.Deserialize"), e);
+        }
+    }
+
+    @Override
+    public void purge() throws CacheException {
+        store.purge();
+    }
+
+    @Override
+    public void put(Wiki wiki, Metadata metadata) throws CacheException {
+        store.put(wiki.getApiUrl(), SerializationUtils.serialize(metadata), ttl);
+    }
+
+    public void clear() throws CacheException {
+        store.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+}
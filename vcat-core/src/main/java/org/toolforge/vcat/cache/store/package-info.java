@@ -0,0 +1,4 @@
+@NullMarked
+package org.toolforge.vcat.cache.store;
+
+import org.jspecify.annotations.NullMarked;
\ No newline at end of file
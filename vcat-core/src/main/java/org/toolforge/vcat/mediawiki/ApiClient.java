@@ -4,286 +4,511 @@ import jakarta.json.Json;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonException;
 import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
 import jakarta.ws.rs.core.UriBuilder;
-import net.dapete.locks.Locks;
-import net.dapete.locks.ReentrantLocks;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.jspecify.annotations.Nullable;
 import org.slf4j.helpers.MessageFormatter;
 import org.toolforge.vcat.Messages;
-import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
-import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
+import org.toolforge.vcat.mediawiki.interfaces.AsyncCategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.AsyncMetadataProvider;
+import org.toolforge.vcat.mediawiki.interfaces.RateLimiter;
 import org.toolforge.vcat.mediawiki.interfaces.Wiki;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serial;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
-public class ApiClient implements CategoryProvider, MetadataProvider {
+@Slf4j
+public class ApiClient implements AsyncCategoryProvider, AsyncMetadataProvider {
 
     @Serial
     private static final long serialVersionUID = -5476476560276033334L;
 
     /**
-     * Maximum number of titles parameters to use in one request.
+     * Default maximum number of titles parameters to use in one request.
      */
-    private static final int TITLES_MAX = 50;
+    static final int TITLES_MAX = 50;
 
     /**
-     * Locks for API Etiquette (see below).
+     * Maximum number of titles parameters to use in one request for users with the <code>apihighlimits</code> right.
      */
-    private final ReentrantLocks<String> locks = Locks.reentrant(true);
+    static final int TITLES_MAX_HIGH_LIMITS = 500;
+
+    private final ApiClientSettings settings;
+
+    /**
+     * Rate limiters for API Etiquette (see below), by API URL.
+     */
+    private final ConcurrentMap<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * Maximum number of titles parameters to use in one request, by API URL.
+     */
+    private final ConcurrentMap<String, CompletableFuture<Integer>> titlesMaxByApiUrl = new ConcurrentHashMap<>();
 
     private final HttpClient httpClient;
 
     public ApiClient() {
-        httpClient = HttpClient.newBuilder()
-                .build();
+        this(new ApiClientSettings());
     }
 
-    @Nullable
-    private static Map<String, String> buildContinueMap(JsonObject result, final String oldQueryContinueChildName) {
-        Map<String, String> continueMap = null;
-        JsonObject jsonContinue = null;
-        if (result.containsKey("continue")) {
-            // new continue (default starting with MW 1.26)
-            jsonContinue = result.getJsonObject("continue");
-        } else if (result.containsKey("query-continue")) {
-            // Old "raw" continue (default until MW 1.25)
-            jsonContinue = result.getJsonObject("query-continue").getJsonObject(oldQueryContinueChildName);
+    public ApiClient(ApiClientSettings settings) {
+        this.settings = settings;
+        final var builder = HttpClient.newBuilder()
+                .version(settings.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+        if (settings.getConnectTimeout() > 0) {
+            builder.connectTimeout(Duration.ofSeconds(settings.getConnectTimeout()));
         }
-        if (jsonContinue != null) {
-            continueMap = new HashMap<>();
-            for (String key : jsonContinue.keySet()) {
-                continueMap.put(key, jsonContinue.getString(key));
-            }
-        }
-        return continueMap;
+        httpClient = builder.build();
     }
 
-
-    private static URI buildRequestUri(String apiUrl, Map<String, String> params) {
+    private URI buildRequestUri(String apiUrl, Map<String, String> params) {
         final var uriBuilder = UriBuilder.fromUri(apiUrl)
                 .queryParam("format", "json")
                 .queryParam("action", "query");
         params.forEach(uriBuilder::queryParam);
+        // Added here and not to the parameters, as it does not change the result
+        final Integer maxlag = settings.getMaxlag();
+        if (maxlag != null) {
+            uriBuilder.queryParam("maxlag", maxlag);
+        }
         return uriBuilder.build();
     }
 
-    private static HttpRequest buildHttpRequest(URI uri) {
+    private HttpRequest buildHttpRequest(URI uri) {
         // API Etiquette: use default "get" method to enable server-side caching
-        return HttpRequest.newBuilder(uri)
-                .setHeader("User-Agent", Messages.getString("ApiClient.UserAgent"))
-                .build();
+        final var builder = HttpRequest.newBuilder(uri)
+                .setHeader("User-Agent", Messages.getString("ApiClient.UserAgent"));
+        if (settings.isCompression()) {
+            // API Etiquette: request compressed responses to reduce bandwidth
+            builder.setHeader("Accept-Encoding", "gzip, deflate");
+        }
+        if (settings.getRequestTimeout() > 0) {
+            builder.timeout(Duration.ofSeconds(settings.getRequestTimeout()));
+        }
+        return builder.build();
     }
 
-    @Nullable
-    protected JsonObject request(String apiUrl, Map<String, String> params) throws ApiException {
+    /**
+     * Get a stream for a response body, decoding it if necessary.
+     *
+     * @param body            Response body.
+     * @param contentEncoding Value of the <code>Content-Encoding</code> header, if any.
+     * @return Stream for the decoded body.
+     * @throws IOException If the compressed body cannot be read.
+     */
+    static InputStream decodeBody(byte[] body, @Nullable String contentEncoding) throws IOException {
+        final InputStream inputStream = new ByteArrayInputStream(body);
+        if (contentEncoding == null) {
+            return inputStream;
+        }
+        return switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(inputStream);
+            // Some servers send raw deflate data instead of the zlib format required by the standard
+            case "deflate" -> new InflaterInputStream(inputStream, new Inflater(!hasZlibHeader(body)));
+            default -> inputStream;
+        };
+    }
+
+    private static boolean hasZlibHeader(byte[] body) {
+        return body.length >= 2 && (body[0] & 0x0f) == 8 && ((body[0] & 0xff) << 8 | (body[1] & 0xff)) % 31 == 0;
+    }
+
+    /**
+     * Send a request to the API asynchronously, reading the response as a JSON object.
+     *
+     * @param apiUrl URL of the API.
+     * @param params Query parameters.
+     * @return Future for the JSON response, which is completed exceptionally with an {@link ApiException} if there
+     * are any errors.
+     */
+    protected CompletableFuture<JsonObject> requestAsync(String apiUrl, Map<String, String> params) {
+        return sendAsync(apiUrl, params, inputStream -> {
+            try (var jsonReader = Json.createReader(inputStream)) {
+                return jsonReader.readObject();
+            }
+        });
+    }
+
+    /**
+     * Send a request for a property or list module to the API asynchronously. The response is parsed as a stream, only
+     * extracting titles and continue parameters.
+     *
+     * @param apiUrl URL of the API.
+     * @param params Query parameters.
+     * @param name   Name of the property or list module.
+     * @return Future for the extracted titles, which is completed exceptionally with an {@link ApiException} if there
+     * are any errors.
+     */
+    protected CompletableFuture<TitleListResult> requestTitlesAsync(String apiUrl, Map<String, String> params,
+                                                                    String name) {
+        return sendAsync(apiUrl, params, inputStream -> TitleListParser.parse(inputStream, name));
+    }
+
+    private <T> CompletableFuture<T> sendAsync(String apiUrl, Map<String, String> params,
+                                               Function<InputStream, T> bodyParser) {
         final var requestUri = buildRequestUri(apiUrl, params);
         final var httpRequest = buildHttpRequest(requestUri);
 
         /*
-         * API Etiquette: There should always be only one concurrent HTTP access; at least for Wikimedia-run wikis, doing more at the same time may lead
-         * to being blocked. It is probably nice to do this for any wiki, anyway. See <a href="https://www.mediawiki.org/wiki/API:Etiquette">API:Etiquette</a> on
-         * the MediaWiki wiki for more information on Wikimedia API etiquette.
+         * API Etiquette: By default, there is always only one concurrent HTTP access per wiki; at least for Wikimedia-run wikis, doing more at the same
+         * time may lead to being blocked. It is probably nice to do this for any wiki, anyway. See <a href="https://www.mediawiki.org/wiki/API:Etiquette">API:Etiquette</a>
+         * on the MediaWiki wiki for more information on Wikimedia API etiquette. Requests waiting for their turn are queued without blocking a thread.
          */
-        final var lock = locks.lock(apiUrl);
+        return sendWithRetries(getRateLimiter(apiUrl), httpRequest, 0)
+                .handle((httpResponse, e) -> {
+                    if (e != null) {
+                        // IOException will be thrown for all HTTP problems
+                        throw ApiFutures.wrap(new ApiException(MessageFormatter
+                                .format(Messages.getString("ApiClient.Exception.HTTP"), requestUri.toString())
+                                .getMessage(), ApiFutures.unwrap(e)));
+                    }
+                    if (retryAfter(httpResponse) != null) {
+                        throw ApiFutures.wrap(new ApiException(MessageFormatter
+                                .format(Messages.getString("ApiClient.Exception.RetriesExhausted"), requestUri.toString())
+                                .getMessage()));
+                    }
+                    final InputStream body;
+                    try {
+                        body = decodeBody(httpResponse.body(),
+                                httpResponse.headers().firstValue("Content-Encoding").orElse(null));
+                    } catch (IOException ee) {
+                        throw ApiFutures.wrap(new ApiException(MessageFormatter
+                                .format(Messages.getString("ApiClient.Exception.HTTP"), requestUri.toString())
+                                .getMessage(), ee));
+                    }
+                    try {
+                        return bodyParser.apply(body);
+                    } catch (JsonException ee) {
+                        throw ApiFutures.wrap(new ApiException(MessageFormatter
+                                .format(Messages.getString("ApiClient.Exception.ParsingJSON"), requestUri.toString())
+                                .getMessage(), ee));
+                    }
+                });
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> sendWithRetries(RateLimiter rateLimiter, HttpRequest httpRequest,
+                                                                   int retries) {
+        return rateLimiter.acquire()
+                .thenCompose(permit -> {
+                    try {
+                        return httpClient.sendAsync(httpRequest, BodyHandlers.ofByteArray())
+                                .whenComplete((httpResponse, e) -> permit.release());
+                    } catch (RuntimeException e) {
+                        permit.release();
+                        return CompletableFuture.failedFuture(e);
+                    }
+                })
+                .thenCompose(httpResponse -> {
+                    // API Etiquette: if the wiki asks to retry later, stop sending any requests to it until then
+                    final Duration retryAfter = retryAfter(httpResponse);
+                    if (retryAfter != null && retries < settings.getMaxRetries()) {
+                        rateLimiter.backOff(retryAfter);
+                        return sendWithRetries(rateLimiter, httpRequest, retries + 1);
+                    }
+                    return CompletableFuture.completedFuture(httpResponse);
+                });
+    }
+
+    /**
+     * Check if a response asks to retry the request later. This is the case if the database replication lag is higher
+     * than the <code>maxlag</code> parameter, or if the server is overloaded.
+     *
+     * @param httpResponse HTTP response.
+     * @return Time to wait before retrying, or <code>null</code> if the response does not ask to retry.
+     */
+    @Nullable
+    private Duration retryAfter(HttpResponse<?> httpResponse) {
+        final var headers = httpResponse.headers();
+        final boolean maxlagError = headers.firstValue("MediaWiki-API-Error")
+                .filter("maxlag"::equals)
+                .isPresent();
+        final int statusCode = httpResponse.statusCode();
+        if (!maxlagError && statusCode != 429 && statusCode != 503) {
+            return null;
+        }
+        return headers.firstValue("Retry-After")
+                .map(ApiClient::parseRetryAfter)
+                .orElseGet(() -> Duration.ofSeconds(settings.getDefaultRetryAfter()));
+    }
+
+    @Nullable
+    private static Duration parseRetryAfter(String retryAfter) {
+        // Either a number of seconds or an HTTP date
         try {
-            final var httpResponse = httpClient.send(httpRequest, BodyHandlers.ofInputStream());
-            try (var bodyStream = httpResponse.body();
-                 var jsonReader = Json.createReader(bodyStream)) {
-                return jsonReader.readObject();
-            }
-        } catch (InterruptedException | IOException e) {
-            // IOException will be thrown for all HTTP problems
-            throw new ApiException(MessageFormatter
-                    .format(Messages.getString("ApiClient.Exception.HTTP"), requestUri.toString()).getMessage(),
-                    e);
-        } catch (JsonException e) {
-            throw new ApiException(MessageFormatter
-                    .format(Messages.getString("ApiClient.Exception.ParsingJSON"), requestUri.toString())
-                    .getMessage(), e);
-        } finally {
-            lock.unlock();
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            // not a number
+        }
+        try {
+            final var date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            final var duration = Duration.between(Instant.now(), date.toInstant());
+            return duration.isNegative() ? Duration.ZERO : duration;
+        } catch (DateTimeParseException e) {
+            return null;
         }
     }
 
-    @Override
-    public Map<String, Collection<String>> requestCategories(Wiki wiki, List<String> fullTitles, boolean showHidden)
-            throws ApiException {
-        final Map<String, Collection<String>> categoryMap = new HashMap<>();
-        final String clshow = showHidden ? null : "!hidden";
-        requestCategoriesRecursive(wiki.getApiUrl(), fullTitles, categoryMap, null, clshow);
-        return categoryMap;
+    /**
+     * Get the rate limiter used for all requests to an API, creating it if necessary.
+     *
+     * @param apiUrl URL of the API.
+     * @return Rate limiter for the API.
+     */
+    public RateLimiter getRateLimiter(String apiUrl) {
+        return rateLimiters.computeIfAbsent(apiUrl, this::createRateLimiter);
     }
 
-    private void requestCategoriesRecursive(String apiUrl, List<String> fullTitles, final Map<String, Collection<String>> categoryMap,
-                                            @Nullable Map<String, String> continueMap, @Nullable String clshow) throws ApiException {
-        if (fullTitles.size() > TITLES_MAX) {
+    /**
+     * Create the rate limiter for an API. Subclasses may override this to use a different policy for some wikis.
+     *
+     * @param apiUrl URL of the API.
+     * @return New rate limiter.
+     */
+    protected RateLimiter createRateLimiter(String apiUrl) {
+        return new TokenBucketRateLimiter(settings.getMaxConcurrentRequests(), settings.getRequestsPerSecond());
+    }
 
-            for (List<String> fullTitlesPart : ListUtils.partition(fullTitles, TITLES_MAX)) {
-                requestCategoriesRecursive(apiUrl, fullTitlesPart, categoryMap, continueMap, clshow);
-            }
+    /**
+     * Get the maximum number of titles parameters to use in one request to an API. Unless detection is enabled in the
+     * settings, this is always the configured value. Otherwise, the rights of the user are requested once per API, and
+     * the higher limit is used if the user has the <code>apihighlimits</code> right.
+     *
+     * @param apiUrl URL of the API.
+     * @return Future for the maximum number of titles.
+     */
+    protected CompletableFuture<Integer> titlesMaxAsync(String apiUrl) {
+        if (!settings.isDetectHighLimits()) {
+            return CompletableFuture.completedFuture(settings.getTitlesMax());
+        }
+        return titlesMaxByApiUrl.computeIfAbsent(apiUrl, this::requestTitlesMaxAsync);
+    }
 
-        } else {
+    private CompletableFuture<Integer> requestTitlesMaxAsync(String apiUrl) {
 
-            // Set query properties
-            Map<String, String> params = new HashMap<>();
-            params.put("prop", "categories");
-            params.put("cllimit", "max");
-            params.put("titles", String.join("|", fullTitles));
-            if (clshow != null) {
-                params.put("clshow", clshow);
+        // Set query properties
+        final Map<String, String> params = new HashMap<>();
+        params.put("meta", "userinfo");
+        params.put("uiprop", "rights");
+
+        return requestAsync(apiUrl, params).handle((json, e) -> {
+            if (e != null) {
+                // Not worth failing for, just use the configured value
+                LOG.warn(MessageFormatter.format(Messages.getString("ApiClient.Warn.Userinfo"), apiUrl).getMessage(),
+                        ApiFutures.unwrap(e));
+                return settings.getTitlesMax();
             }
+            return hasApiHighLimits(json) ? Math.max(settings.getTitlesMax(), TITLES_MAX_HIGH_LIMITS)
+                    : settings.getTitlesMax();
+        });
+    }
+
+    private static boolean hasApiHighLimits(JsonObject json) {
+        try {
+            return json.getValue("/query/userinfo/rights").asJsonArray().stream()
+                    .anyMatch(right -> right instanceof JsonString rightString
+                            && "apihighlimits".equals(rightString.getString()));
+        } catch (JsonException | ClassCastException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Create a cursor over the pages of a query for a property or list module. The parameters for each page are the
+     * supplied parameters followed by the continue parameters.
+     *
+     * @param apiUrl   URL of the API.
+     * @param params   Query parameters, without continue parameters.
+     * @param name     Name of the property or list module.
+     * @param prefetch Whether to request the following page before it is asked for.
+     * @return Cursor over the pages.
+     */
+    protected TitleListCursor titlesCursor(String apiUrl, Map<String, String> params, String name, boolean prefetch) {
+        return new TitleListCursor(continueMap -> {
+            final Map<String, String> pageParams = new LinkedHashMap<>(params);
             if (continueMap != null) {
-                params.putAll(continueMap);
+                pageParams.putAll(continueMap);
             }
-            final JsonObject result = request(apiUrl, params);
+            return requestTitlesAsync(apiUrl, pageParams, name);
+        }, prefetch);
+    }
 
-            try {
-                final JsonObject query = result.getJsonObject("query");
-                if (query != null) {
-                    final JsonObject pages = query.getJsonObject("pages");
-                    if (pages != null) {
-                        for (String pagesKey : pages.keySet()) {
-                            final JsonObject pagesData = pages.getJsonObject(pagesKey);
-                            if (pagesData.containsKey("categories")) {
-                                final JsonArray jsonCategories = pagesData.getJsonArray("categories");
-                                final String pagesDataTitle = pagesData.getString("title");
-                                final Collection<String> categories = categoryMap.computeIfAbsent(pagesDataTitle,
-                                        k -> new ArrayList<>(jsonCategories.size()));
-                                for (int i = 0; i < jsonCategories.size(); i++) {
-                                    JsonObject category = jsonCategories.getJsonObject(i);
-                                    categories.add(category.getString("title"));
+    @Override
+    public CompletableFuture<Map<String, Collection<String>>> requestCategoriesAsync(Wiki wiki, List<String> fullTitles,
+                                                                                     boolean showHidden) {
+        final String apiUrl = wiki.getApiUrl();
+        final Map<String, Collection<String>> categoryMap = new HashMap<>();
+        return titlesMaxAsync(apiUrl).thenCompose(titlesMax -> {
+            // Partitions are requested one after the other, so only one thread at a time modifies the map
+            CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+            for (List<String> fullTitlesPart : ListUtils.partition(fullTitles, titlesMax)) {
+                future = future.thenCompose(v -> categoriesCursor(wiki, fullTitlesPart, showHidden)
+                        .forEachAsync(result -> {
+                            result.getPages().forEach((pageTitle, categories) -> {
+                                final List<String> wantedCategories = filterHiddenCategories(showHidden)
+                                        ? categories.stream()
+                                        .filter(category -> !result.getHidden().contains(category))
+                                        .toList()
+                                        : categories;
+                                // Like clshow=!hidden, leave out pages with only hidden categories
+                                if (!wantedCategories.isEmpty() || !filterHiddenCategories(showHidden)) {
+                                    categoryMap.computeIfAbsent(pageTitle,
+                                                    k -> new ArrayList<>(wantedCategories.size()))
+                                            .addAll(wantedCategories);
                                 }
-                            }
-                        }
-                    }
-                }
-
-                // Try to get continue map, if there is one, make another request
-                final var newContinueMap = buildContinueMap(result, "categories");
-                if (newContinueMap != null) {
-                    requestCategoriesRecursive(apiUrl, fullTitles, categoryMap, newContinueMap, clshow);
-                }
-            } catch (JsonException e) {
-                throw new ApiException(Messages.getString("ApiClient.Exception.ParsingJSON"), e);
+                            });
+                            return true;
+                        }));
             }
+            return future;
+        }).thenApply(v -> categoryMap);
+    }
+
+    /**
+     * @return Whether hidden categories are included in the response although not wanted, and must be left out.
+     */
+    private boolean filterHiddenCategories(boolean showHidden) {
+        return !showHidden && settings.isFilterHiddenCategories();
+    }
+
+    /**
+     * Create a cursor over the pages of categories for the supplied pages.
+     *
+     * @param wiki       Wiki to get categories from.
+     * @param fullTitles Full titles (including namespace) of pages, at most as many as allowed in one request.
+     * @param showHidden Whether hidden categories should be included. If hidden categories are filtered on the client
+     *                   (see {@link ApiClientSettings#isFilterHiddenCategories()}), they are always included, and
+     *                   marked in {@link TitleListResult#getHidden()}.
+     * @return Cursor over the pages, with the categories in {@link TitleListResult#getPages()}.
+     */
+    public TitleListCursor categoriesCursor(Wiki wiki, List<String> fullTitles, boolean showHidden) {
 
+        // Set query properties
+        final Map<String, String> params = new LinkedHashMap<>();
+        params.put("prop", "categories");
+        params.put("cllimit", "max");
+        params.put("titles", String.join("|", fullTitles));
+        if (settings.isFilterHiddenCategories()) {
+            params.put("clprop", "hidden");
+        } else if (!showHidden) {
+            params.put("clshow", "!hidden");
         }
+
+        return titlesCursor(wiki.getApiUrl(), params, "categories", true);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> requestCategorymembersAsync(Wiki wiki, String fullTitle) {
+        return requestCategorymembersAsync(wiki, fullTitle, Integer.MAX_VALUE);
     }
 
     @Override
-    public List<String> requestCategorymembers(Wiki wiki, String fullTitle) throws ApiException {
+    public CompletableFuture<List<String>> requestCategorymembersAsync(Wiki wiki, String fullTitle, int minTitles) {
         final List<String> categories = new ArrayList<>();
-        requestCategorymembersRecursive(wiki.getApiUrl(), fullTitle, categories, null);
-        return categories;
+        // Only prefetch if all pages are needed anyway
+        return categorymembersCursor(wiki, fullTitle, minTitles == Integer.MAX_VALUE)
+                .forEachAsync(result -> {
+                    categories.addAll(result.getList());
+                    // Stop once there are enough titles
+                    return categories.size() < minTitles;
+                })
+                .thenApply(v -> categories);
     }
 
-    private void requestCategorymembersRecursive(String apiUrl, String fullTitle, List<String> categories,
-                                                 @Nullable Map<String, String> continueMap) throws ApiException {
+    /**
+     * Create a cursor over the pages of subcategories of the supplied category.
+     *
+     * @param wiki      Wiki to get category members from.
+     * @param fullTitle Full page title of the category.
+     * @param prefetch  Whether to request the following page before it is asked for.
+     * @return Cursor over the pages, with the subcategories in {@link TitleListResult#getList()}.
+     */
+    public TitleListCursor categorymembersCursor(Wiki wiki, String fullTitle, boolean prefetch) {
 
         // Set query properties
-        final Map<String, String> params = new HashMap<>();
+        final Map<String, String> params = new LinkedHashMap<>();
         params.put("list", "categorymembers");
         params.put("cmlimit", "max");
         params.put("cmtitle", fullTitle);
         params.put("cmtype", "subcat");
-        if (continueMap != null) {
-            params.putAll(continueMap);
-        }
-        JsonObject result = request(apiUrl, params);
-
-        try {
-            JsonObject query = result.getJsonObject("query");
-            if (query != null) {
-                JsonArray jsonCategories = query.getJsonArray("categorymembers");
-                if (jsonCategories != null) {
-                    for (int i = 0; i < jsonCategories.size(); i++) {
-                        JsonObject category = jsonCategories.getJsonObject(i);
-                        categories.add(category.getString("title"));
-                    }
-                }
-            }
-
-            // Try to get continue map, if there is one, make another request
-            final Map<String, String> newContinueMap = buildContinueMap(result, "categorymembers");
-            if (newContinueMap != null) {
-                requestCategorymembersRecursive(apiUrl, fullTitle, categories, newContinueMap);
-            }
-        } catch (JsonException e) {
-            throw new ApiException(Messages.getString("ApiClient.Exception.ParsingJSON"), e);
-        }
 
+        return titlesCursor(wiki.getApiUrl(), params, "categorymembers", prefetch);
     }
 
-    private void requestLinksBetweenRecursive(final String apiUrl, final List<String> fullTitles, final Collection<Pair<String, String>> links,
-                                              @Nullable Map<String, String> continueMap) throws ApiException {
-
-        if (fullTitles.size() > TITLES_MAX) {
-
-            for (List<String> fullTitlesPart : ListUtils.partition(fullTitles, TITLES_MAX)) {
-                requestLinksBetweenRecursive(apiUrl, fullTitlesPart, links, continueMap);
-            }
-
-        } else {
-
-            // Set query properties
-            final Map<String, String> params = new HashMap<>();
-            params.put("prop", "links");
-            params.put("pllimit", "max");
-            final String titlesParam = String.join("|", fullTitles);
-            params.put("titles", titlesParam);
-            params.put("pltitles", titlesParam);
-            if (continueMap != null) {
-                params.putAll(continueMap);
+    private CompletableFuture<Void> requestLinksBetweenAsync(final String apiUrl, final List<String> fullTitles,
+                                                             final Collection<Pair<String, String>> links) {
+        return titlesMaxAsync(apiUrl).thenCompose(titlesMax -> {
+            CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+            for (List<String> fullTitlesPart : ListUtils.partition(fullTitles, titlesMax)) {
+                future = future.thenCompose(v -> linksBetweenCursor(apiUrl, fullTitlesPart)
+                        .forEachAsync(result -> {
+                            result.getPages().forEach((pageTitle, linkTitles) -> {
+                                for (String linkTitle : linkTitles) {
+                                    links.add(new MutablePair<>(pageTitle, linkTitle));
+                                }
+                            });
+                            return true;
+                        }));
             }
-            final JsonObject result = request(apiUrl, params);
-
-            try {
-                final JsonObject query = result.getJsonObject("query");
-                if (query != null) {
-                    final JsonObject pages = query.getJsonObject("pages");
-                    for (String pagesKey : pages.keySet()) {
-                        final JsonObject pagesData = pages.getJsonObject(pagesKey);
-                        if (pagesData.containsKey("links")) {
-                            JsonArray jsonLinks = pagesData.getJsonArray("links");
-                            String pagesDataTitle = pagesData.getString("title");
-                            for (int i = 0; i < jsonLinks.size(); i++) {
-                                final JsonObject category = jsonLinks.getJsonObject(i);
-                                links.add(new MutablePair<>(pagesDataTitle, category.getString("title")));
-                            }
-                        }
-                    }
-                }
+            return future;
+        });
+    }
 
-                // Try to get continue map, if there is one, make another request
-                final var newContinueMap = buildContinueMap(result, "categories");
-                if (newContinueMap != null) {
-                    requestLinksBetweenRecursive(apiUrl, fullTitles, links, newContinueMap);
-                }
-            } catch (JsonException e) {
-                throw new ApiException(Messages.getString("ApiClient.Exception.ParsingJSON"), e);
-            }
+    private TitleListCursor linksBetweenCursor(final String apiUrl, final List<String> fullTitles) {
 
-        }
+        // Set query properties
+        final Map<String, String> params = new LinkedHashMap<>();
+        params.put("prop", "links");
+        params.put("pllimit", "max");
+        final String titlesParam = String.join("|", fullTitles);
+        params.put("titles", titlesParam);
+        params.put("pltitles", titlesParam);
+
+        return titlesCursor(apiUrl, params, "links", true);
     }
 
     @Override
-    public Metadata requestMetadata(final Wiki wiki) throws ApiException {
+    public CompletableFuture<Metadata> requestMetadataAsync(final Wiki wiki) {
 
         // Set query properties
         final Map<String, String> params = new HashMap<>();
         params.put("meta", "siteinfo");
         params.put("siprop", "general|namespaces|namespacealiases");
 
-        final JsonObject json = request(wiki.getApiUrl(), params);
+        return requestAsync(wiki.getApiUrl(), params).thenApply(json -> {
+            try {
+                return parseMetadata(json);
+            } catch (ApiException e) {
+                throw ApiFutures.wrap(e);
+            }
+        });
+
+    }
+
+    private static Metadata parseMetadata(final JsonObject json) throws ApiException {
 
         final String articlepath;
         final String server;
@@ -0,0 +1,85 @@
+package org.toolforge.vcat.mediawiki;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.jspecify.annotations.Nullable;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Settings for the {@link ApiClient}. The defaults follow the Wikimedia API Etiquette.
+ */
+@Getter
+@Setter
+public class ApiClientSettings implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 2848261958702468217L;
+
+    /**
+     * Whether to ask for compressed (gzip or deflate) responses.
+     */
+    private boolean compression = true;
+
+    /**
+     * Whether to prefer HTTP/2, falling back to HTTP/1.1 if the server does not support it.
+     */
+    private boolean http2 = true;
+
+    /**
+     * Timeout (in seconds) for connecting to the server (zero or less means no timeout).
+     */
+    private int connectTimeout = 30;
+
+    /**
+     * Timeout (in seconds) for receiving the response to a request (zero or less means no timeout).
+     */
+    private int requestTimeout = 120;
+
+    /**
+     * Maximum number of concurrent requests per wiki (zero or less means no limit).
+     */
+    private int maxConcurrentRequests = 1;
+
+    /**
+     * Maximum number of requests per second per wiki (zero or less means no limit).
+     */
+    private double requestsPerSecond = 0;
+
+    /**
+     * Maximum number of titles to use in one request. MediaWiki allows 50, or 500 for users with the
+     * <code>apihighlimits</code> right.
+     */
+    private int titlesMax = ApiClient.TITLES_MAX;
+
+    /**
+     * Whether to check the rights of the user for each wiki (using <code>meta=userinfo</code>), and use the higher
+     * maximum number of titles if it has the <code>apihighlimits</code> right.
+     */
+    private boolean detectHighLimits = false;
+
+    /**
+     * Whether to always request hidden categories, marked as such (using <code>clprop=hidden</code>), and leave them
+     * out on the client if they are not wanted. Requests with and without hidden categories are then the same, and
+     * share the cache.
+     */
+    private boolean filterHiddenCategories = false;
+
+    /**
+     * Value for the <code>maxlag</code> parameter sent with each request, or <code>null</code> to not send it.
+     */
+    @Nullable
+    private Integer maxlag;
+
+    /**
+     * How often a request is retried if the wiki asks to retry later.
+     */
+    private int maxRetries = 3;
+
+    /**
+     * Time to wait (in seconds) if the wiki asks to retry later without specifying when.
+     */
+    private int defaultRetryAfter = 5;
+
+}
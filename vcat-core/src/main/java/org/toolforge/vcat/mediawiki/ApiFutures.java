@@ -0,0 +1,79 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.toolforge.vcat.Messages;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helper methods to use {@link CompletableFuture}s returned by asynchronous API requests, which are completed
+ * exceptionally with an {@link ApiException} if there are any errors.
+ */
+public class ApiFutures {
+
+    private ApiFutures() {
+    }
+
+    /**
+     * Wait for a future returned by an asynchronous API request and return its result.
+     *
+     * @param future Future to wait for.
+     * @param <T>    Type of the result.
+     * @return The result of the future.
+     * @throws ApiException If the future was completed exceptionally, or waiting for it was interrupted.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws ApiException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(Messages.getString("ApiFutures.Exception.Interrupted"), e);
+        } catch (ExecutionException e) {
+            throw toApiException(e.getCause());
+        }
+    }
+
+    /**
+     * Wrap an {@link ApiException} so it can be thrown inside a function used to compose {@link CompletableFuture}s.
+     *
+     * @param e Exception to wrap.
+     * @return A {@link CompletionException} with the supplied exception as its cause.
+     */
+    public static CompletionException wrap(ApiException e) {
+        return new CompletionException(e);
+    }
+
+    /**
+     * Convert an exception a future was completed with to an {@link ApiException}, removing any
+     * {@link CompletionException} or {@link ExecutionException} wrappers.
+     *
+     * @param throwable Exception the future was completed with.
+     * @return The exception itself if it is an {@link ApiException}, otherwise a new {@link ApiException} with it as
+     * its cause.
+     */
+    public static ApiException toApiException(Throwable throwable) {
+        final Throwable cause = unwrap(throwable);
+        if (cause instanceof ApiException apiException) {
+            return apiException;
+        } else {
+            return new ApiException(Messages.getString("ApiFutures.Exception.Failed"), cause);
+        }
+    }
+
+    /**
+     * Remove any {@link CompletionException} or {@link ExecutionException} wrappers from an exception.
+     *
+     * @param throwable Exception the future was completed with.
+     * @return The first cause which is not a wrapper.
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+               && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+}
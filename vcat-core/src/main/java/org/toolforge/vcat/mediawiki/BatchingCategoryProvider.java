@@ -0,0 +1,167 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.toolforge.vcat.mediawiki.interfaces.AsyncCategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.Serial;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AsyncCategoryProvider} which collects the titles from concurrent calls to
+ * {@link #requestCategoriesAsync(Wiki, List, boolean)} for the same wiki for a short time, so they can be requested in
+ * full batches. The results are split up again for each caller. All other calls are passed on directly.
+ */
+public class BatchingCategoryProvider implements AsyncCategoryProvider {
+
+    @Serial
+    private static final long serialVersionUID = 4069254183927011346L;
+
+    private record BatchKey(String apiUrl, boolean showhidden) {
+    }
+
+    private record Waiter(List<String> fullTitles, CompletableFuture<Map<String, Collection<String>>> future) {
+    }
+
+    /**
+     * Titles and callers waiting to be sent together in one call.
+     */
+    private static class Batch {
+
+        private final Wiki wiki;
+
+        private final Set<String> fullTitles = new LinkedHashSet<>();
+
+        private final List<Waiter> waiters = new ArrayList<>();
+
+        private Batch(Wiki wiki) {
+            this.wiki = wiki;
+        }
+
+    }
+
+    private final AsyncCategoryProvider categoryProvider;
+
+    /**
+     * Time to wait for more titles before sending a batch (in milliseconds).
+     */
+    private final long windowMillis;
+
+    /**
+     * Number of titles after which a batch is sent without waiting any longer.
+     */
+    private final int batchSize;
+
+    /**
+     * Batches currently collecting titles. Must only be accessed while synchronized on this map.
+     */
+    private final Map<BatchKey, Batch> pendingBatches = new HashMap<>();
+
+    /**
+     * @param categoryProvider Category provider to send the batches to.
+     * @param window           Time to wait for more titles before sending a batch.
+     * @param batchSize        Number of titles after which a batch is sent without waiting any longer; this should be
+     *                         the number of titles the category provider sends in one request.
+     */
+    public BatchingCategoryProvider(AsyncCategoryProvider categoryProvider, Duration window, int batchSize) {
+        this.categoryProvider = categoryProvider;
+        windowMillis = window.toMillis();
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Collection<String>>> requestCategoriesAsync(Wiki wiki, List<String> fullTitles,
+                                                                                     boolean showhidden) {
+        if (fullTitles.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+
+        final var key = new BatchKey(wiki.getApiUrl(), showhidden);
+        final var future = new CompletableFuture<Map<String, Collection<String>>>();
+        final Batch batch;
+        final boolean isNewBatch;
+        final boolean isFull;
+        synchronized (pendingBatches) {
+            final var existingBatch = pendingBatches.get(key);
+            isNewBatch = existingBatch == null;
+            batch = isNewBatch ? new Batch(wiki) : existingBatch;
+            batch.fullTitles.addAll(fullTitles);
+            batch.waiters.add(new Waiter(fullTitles, future));
+            isFull = batch.fullTitles.size() >= batchSize;
+            if (isFull) {
+                pendingBatches.remove(key);
+            } else if (isNewBatch) {
+                pendingBatches.put(key, batch);
+            }
+        }
+
+        if (isFull) {
+            send(key, batch);
+        } else if (isNewBatch) {
+            CompletableFuture.delayedExecutor(windowMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                synchronized (pendingBatches) {
+                    // Batch may have been sent already because it was full
+                    if (!pendingBatches.remove(key, batch)) {
+                        return;
+                    }
+                }
+                send(key, batch);
+            });
+        }
+        return future;
+    }
+
+    private void send(BatchKey key, Batch batch) {
+        final CompletableFuture<Map<String, Collection<String>>> batchFuture;
+        try {
+            batchFuture = categoryProvider.requestCategoriesAsync(batch.wiki, new ArrayList<>(batch.fullTitles),
+                    key.showhidden());
+        } catch (RuntimeException e) {
+            batch.waiters.forEach(waiter -> waiter.future().completeExceptionally(e));
+            return;
+        }
+        batchFuture.whenComplete((categoryMap, e) -> {
+            for (Waiter waiter : batch.waiters) {
+                if (e != null) {
+                    waiter.future().completeExceptionally(ApiFutures.unwrap(e));
+                } else {
+                    // Each caller only gets the titles it asked for
+                    final Map<String, Collection<String>> waiterCategoryMap = new HashMap<>();
+                    for (String fullTitle : waiter.fullTitles()) {
+                        final var categories = categoryMap.get(fullTitle);
+                        if (categories != null) {
+                            waiterCategoryMap.put(fullTitle, categories);
+                        }
+                    }
+                    waiter.future().complete(waiterCategoryMap);
+                }
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<String>> requestCategorymembersAsync(Wiki wiki, String fullTitle) {
+        return categoryProvider.requestCategorymembersAsync(wiki, fullTitle);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> requestCategorymembersAsync(Wiki wiki, String fullTitle, int minTitles) {
+        return categoryProvider.requestCategorymembersAsync(wiki, fullTitle, minTitles);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, List<String>>> requestCategorymembersAsync(Wiki wiki,
+                                                                                  List<String> fullTitles) {
+        return categoryProvider.requestCategorymembersAsync(wiki, fullTitles);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, List<String>>> requestCategorymembersAsync(Wiki wiki,
+                                                                                  List<String> fullTitles,
+                                                                                  int minTitles) {
+        return categoryProvider.requestCategorymembersAsync(wiki, fullTitles, minTitles);
+    }
+
+}
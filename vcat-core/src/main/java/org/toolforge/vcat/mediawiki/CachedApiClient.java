@@ -1,7 +1,7 @@
 package org.toolforge.vcat.mediawiki;
 
+import jakarta.json.JsonException;
 import jakarta.json.JsonObject;
-import org.jspecify.annotations.Nullable;
 import org.toolforge.vcat.Messages;
 import org.toolforge.vcat.cache.CacheException;
 import org.toolforge.vcat.cache.interfaces.ApiCache;
@@ -11,8 +11,13 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class CachedApiClient extends ApiClient {
 
@@ -21,48 +26,147 @@ public class CachedApiClient extends ApiClient {
 
     private final ApiCache cache;
 
-    private final Lock cacheLock = new ReentrantLock();
+    /**
+     * Requests currently in progress, by cache key. Concurrent callers for the same key share one future.
+     */
+    private final ConcurrentMap<String, CompletableFuture<JsonObject>> inFlightRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Requests for titles currently in progress, by cache key.
+     */
+    private final ConcurrentMap<String, CompletableFuture<TitleListResult>> inFlightTitlesRequests =
+            new ConcurrentHashMap<>();
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private final LongAdder coalescedRequests = new LongAdder();
 
     public CachedApiClient(ApiCache cache) {
         this.cache = cache;
     }
 
-    @Override
-    @Nullable
-    protected JsonObject request(String apiUrl, Map<String, String> params) throws ApiException {
+    public CachedApiClient(ApiCache cache, ApiClientSettings settings) {
+        super(settings);
+        this.cache = cache;
+    }
+
+    /**
+     * Build the cache key from the API URL and the parameters, sorted by name, so it does not depend on the order of
+     * the parameters in the map.
+     */
+    private static String buildCacheKey(String apiUrl, Map<String, String> params) {
         final StringBuilder requestStuff = new StringBuilder(apiUrl)
                 .append('&');
-        for (Entry<String, String> param : params.entrySet()) {
+        for (Entry<String, String> param : new TreeMap<>(params).entrySet()) {
             requestStuff.append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8))
                     .append('&')
                     .append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8));
         }
-        final String cacheKey = requestStuff.toString();
+        return requestStuff.toString();
+    }
 
-        cacheLock.lock();
-        try {
-            if (cache.containsKey(cacheKey)) {
-                try {
-                    return cache.getJSONObject(cacheKey);
-                } catch (CacheException e) {
-                    throw new ApiException(Messages.getString("CachedApiClient.Exception.AccessCache"), e);
-                }
+    @Override
+    protected CompletableFuture<JsonObject> requestAsync(String apiUrl, Map<String, String> params) {
+        return cachedRequestAsync(inFlightRequests, buildCacheKey(apiUrl, params), Function.identity(),
+                Function.identity(), () -> uncachedRequestAsync(apiUrl, params));
+    }
+
+    @Override
+    protected CompletableFuture<TitleListResult> requestTitlesAsync(String apiUrl, Map<String, String> params,
+                                                                    String name) {
+        // Only the extracted titles are cached, not the whole response
+        return cachedRequestAsync(inFlightTitlesRequests, buildCacheKey(apiUrl, params),
+                jsonObject -> TitleListParser.parse(jsonObject, name),
+                result -> result.toJsonObject(name),
+                () -> uncachedRequestTitlesAsync(apiUrl, params, name));
+    }
+
+    private <T> CompletableFuture<T> cachedRequestAsync(ConcurrentMap<String, CompletableFuture<T>> inFlight,
+                                                        String cacheKey, Function<JsonObject, T> fromCache,
+                                                        Function<T, JsonObject> toCache,
+                                                        Supplier<CompletableFuture<T>> uncachedRequest) {
+        final var future = new CompletableFuture<T>();
+        final var existingFuture = inFlight.putIfAbsent(cacheKey, future);
+        if (existingFuture != null) {
+            // Same request is already in progress, wait for it instead of sending another one
+            coalescedRequests.increment();
+            return existingFuture.copy();
+        }
+
+        // Only this caller gets here for the key until the future is completed
+        fetchAsync(cacheKey, fromCache, toCache, uncachedRequest).whenComplete((result, e) -> {
+            // Remove before completing, so later callers do not get a completed future and look up the cache instead
+            inFlight.remove(cacheKey, future);
+            if (e != null) {
+                future.completeExceptionally(ApiFutures.unwrap(e));
             } else {
-                final var jsonObject = uncachedRequest(apiUrl, params);
-                try {
-                    cache.put(cacheKey, jsonObject);
-                } catch (CacheException e) {
-                    throw new ApiException(Messages.getString("CachedApiClient.Exception.CacheResult"), e);
-                }
-                return jsonObject;
+                future.complete(result);
+            }
+        });
+        return future.copy();
+    }
+
+    private <T> CompletableFuture<T> fetchAsync(String cacheKey, Function<JsonObject, T> fromCache,
+                                                Function<T, JsonObject> toCache,
+                                                Supplier<CompletableFuture<T>> uncachedRequest) {
+        try {
+            final var jsonObject = cache.getJSONObject(cacheKey);
+            if (jsonObject != null) {
+                cacheHits.increment();
+                return CompletableFuture.completedFuture(fromCache.apply(jsonObject));
             }
-        } finally {
-            cacheLock.unlock();
+        } catch (CacheException | JsonException e) {
+            return CompletableFuture.failedFuture(
+                    new ApiException(Messages.getString("CachedApiClient.Exception.AccessCache"), e));
         }
+
+        cacheMisses.increment();
+        final CompletableFuture<T> uncachedFuture;
+        try {
+            uncachedFuture = uncachedRequest.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return uncachedFuture.thenApply(result -> {
+            try {
+                cache.put(cacheKey, toCache.apply(result));
+            } catch (CacheException e) {
+                throw ApiFutures.wrap(new ApiException(Messages.getString("CachedApiClient.Exception.CacheResult"), e));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * @return Number of requests answered from the cache.
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return Number of requests sent to the API because they were not in the cache.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * @return Number of requests which waited for an identical request already in progress.
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.sum();
+    }
+
+    protected CompletableFuture<JsonObject> uncachedRequestAsync(String apiUrl, Map<String, String> params) {
+        return super.requestAsync(apiUrl, params);
     }
 
-    protected JsonObject uncachedRequest(String apiUrl, Map<String, String> params) throws ApiException {
-        return super.request(apiUrl, params);
+    protected CompletableFuture<TitleListResult> uncachedRequestTitlesAsync(String apiUrl, Map<String, String> params,
+                                                                            String name) {
+        return super.requestTitlesAsync(apiUrl, params, name);
     }
 
 }
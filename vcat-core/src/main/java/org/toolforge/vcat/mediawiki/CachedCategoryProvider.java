@@ -0,0 +1,183 @@
+package org.toolforge.vcat.mediawiki;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.toolforge.vcat.Messages;
+import org.toolforge.vcat.cache.CacheException;
+import org.toolforge.vcat.cache.CategoryCacheKey;
+import org.toolforge.vcat.cache.interfaces.CategoryCache;
+import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.Serial;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link CategoryProvider} which caches the categories and subcategories of each page separately, so they are found in
+ * the cache regardless of which other pages they were requested with. Only the pages not in the cache are requested
+ * from another category provider. Shared by all renders, this holds the parts of the category graph they have seen.
+ */
+@Slf4j
+public class CachedCategoryProvider implements CategoryProvider {
+
+    @Serial
+    private static final long serialVersionUID = -6306012718316424797L;
+
+    private final CategoryCache categoryCache;
+
+    private final CategoryProvider categoryProvider;
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder cacheMisses = new LongAdder();
+
+    public CachedCategoryProvider(CategoryProvider categoryProvider, CategoryCache categoryCache) {
+        this.categoryProvider = categoryProvider;
+        this.categoryCache = categoryCache;
+    }
+
+    @Nullable
+    private List<String> get(CategoryCacheKey key) {
+        String[] fullTitles = null;
+        try {
+            fullTitles = categoryCache.getFullTitles(key);
+        } catch (CacheException e) {
+            LOG.warn(Messages.getString("CachedCategoryProvider.Warn.Retrieve"), e);
+        }
+        if (fullTitles == null) {
+            cacheMisses.increment();
+            return null;
+        }
+        cacheHits.increment();
+        return Arrays.asList(fullTitles);
+    }
+
+    private void put(CategoryCacheKey key, Collection<String> fullTitles) throws ApiException {
+        try {
+            categoryCache.put(key, fullTitles.toArray(String[]::new));
+        } catch (CacheException e) {
+            throw new ApiException(Messages.getString("CachedCategoryProvider.Exception.Store"), e);
+        }
+    }
+
+    @Override
+    public Map<String, Collection<String>> requestCategories(Wiki wiki, List<String> fullTitles, boolean showhidden)
+            throws ApiException {
+        final Map<String, Collection<String>> categoryMap = new HashMap<>();
+        final List<String> missingFullTitles = new ArrayList<>();
+        for (String fullTitle : fullTitles) {
+            final List<String> categoryFullTitles = get(CategoryCacheKey.categories(wiki, fullTitle, showhidden));
+            if (categoryFullTitles == null) {
+                missingFullTitles.add(fullTitle);
+            } else if (!categoryFullTitles.isEmpty()) {
+                categoryMap.put(fullTitle, categoryFullTitles);
+            }
+        }
+        if (missingFullTitles.isEmpty()) {
+            return categoryMap;
+        }
+
+        final var requestedCategoryMap = categoryProvider.requestCategories(wiki, missingFullTitles, showhidden);
+        for (String fullTitle : missingFullTitles) {
+            // Pages without categories are left out of the result, but are cached as well
+            final Collection<String> categoryFullTitles = requestedCategoryMap.get(fullTitle);
+            put(CategoryCacheKey.categories(wiki, fullTitle, showhidden),
+                    categoryFullTitles == null ? List.of() : categoryFullTitles);
+        }
+        if (categoryMap.isEmpty()) {
+            return requestedCategoryMap;
+        }
+        categoryMap.putAll(requestedCategoryMap);
+        return categoryMap;
+    }
+
+    @Override
+    public List<String> requestCategorymembers(Wiki wiki, String fullTitle) throws ApiException {
+        final var key = CategoryCacheKey.subcategories(wiki, fullTitle);
+        final List<String> cachedCategorymembers = get(key);
+        if (cachedCategorymembers != null) {
+            return cachedCategorymembers;
+        }
+        final List<String> categorymembers = categoryProvider.requestCategorymembers(wiki, fullTitle);
+        put(key, categorymembers);
+        return categorymembers;
+    }
+
+    @Override
+    public List<String> requestCategorymembers(Wiki wiki, String fullTitle, int minTitles) throws ApiException {
+        final var key = CategoryCacheKey.subcategories(wiki, fullTitle);
+        final List<String> cachedCategorymembers = get(key);
+        if (cachedCategorymembers != null) {
+            return cachedCategorymembers;
+        }
+        final List<String> categorymembers = categoryProvider.requestCategorymembers(wiki, fullTitle, minTitles);
+        // Lists which may have been cut short are not cached
+        if (categorymembers.size() < minTitles) {
+            put(key, categorymembers);
+        }
+        return categorymembers;
+    }
+
+    @Override
+    public Map<String, List<String>> requestCategorymembers(Wiki wiki, List<String> fullTitles)
+            throws ApiException {
+        return requestCategorymembers(wiki, fullTitles, 0);
+    }
+
+    @Override
+    public Map<String, List<String>> requestCategorymembers(Wiki wiki, List<String> fullTitles, int minTitles)
+            throws ApiException {
+        final Map<String, List<String>> cachedCategorymembersMap = new HashMap<>();
+        final List<String> missingFullTitles = new ArrayList<>();
+        for (String fullTitle : fullTitles) {
+            final List<String> categorymembers = get(CategoryCacheKey.subcategories(wiki, fullTitle));
+            if (categorymembers == null) {
+                missingFullTitles.add(fullTitle);
+            } else {
+                cachedCategorymembersMap.put(fullTitle, categorymembers);
+            }
+        }
+
+        final Map<String, List<String>> requestedCategorymembersMap;
+        if (missingFullTitles.isEmpty()) {
+            requestedCategorymembersMap = Map.of();
+        } else if (minTitles > 0) {
+            requestedCategorymembersMap = categoryProvider.requestCategorymembers(wiki, missingFullTitles, minTitles);
+        } else {
+            requestedCategorymembersMap = categoryProvider.requestCategorymembers(wiki, missingFullTitles);
+        }
+        for (var entry : requestedCategorymembersMap.entrySet()) {
+            // Lists which may have been cut short are not cached
+            if (minTitles <= 0 || entry.getValue().size() < minTitles) {
+                put(CategoryCacheKey.subcategories(wiki, entry.getKey()), entry.getValue());
+            }
+        }
+
+        // Keep the order of the supplied titles
+        final Map<String, List<String>> categorymembersMap = new LinkedHashMap<>();
+        for (String fullTitle : fullTitles) {
+            final List<String> categorymembers = cachedCategorymembersMap.containsKey(fullTitle)
+                    ? cachedCategorymembersMap.get(fullTitle) : requestedCategorymembersMap.get(fullTitle);
+            if (categorymembers != null) {
+                categorymembersMap.put(fullTitle, categorymembers);
+            }
+        }
+        return categorymembersMap;
+    }
+
+    /**
+     * @return Number of pages whose categories were found in the cache.
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return Number of pages whose categories were requested because they were not in the cache.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+}
@@ -1,34 +1,84 @@
 package org.toolforge.vcat.mediawiki;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.toolforge.vcat.Messages;
 import org.toolforge.vcat.cache.CacheException;
+import org.toolforge.vcat.cache.CachePurger;
 import org.toolforge.vcat.cache.interfaces.MetadataCache;
 import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
 import org.toolforge.vcat.mediawiki.interfaces.Wiki;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 
+/**
+ * Metadata provider using a cache. Expired metadata is purged from the cache in the background at an interval, or,
+ * with an interval of zero or less, before each request.
+ */
 @Slf4j
-public class CachedMetadataProvider implements MetadataProvider {
+public class CachedMetadataProvider implements MetadataProvider, AutoCloseable {
 
     @Serial
     private static final long serialVersionUID = 5966985791741996909L;
 
+    /**
+     * Default interval for purging in the background (seconds).
+     */
+    public static final int DEFAULT_PURGE_INTERVAL = 60;
+
     private final MetadataCache metadataCache;
 
     private final MetadataProvider metadataProvider;
 
+    private final int purgeInterval;
+
+    /**
+     * Purger of the cache, also for metrics. Not serialized, and started again after deserialization.
+     */
+    @Getter
+    private transient CachePurger purger;
+
     public CachedMetadataProvider(final MetadataProvider metadataProvider, MetadataCache metadataCache) {
+        this(metadataProvider, metadataCache, DEFAULT_PURGE_INTERVAL);
+    }
+
+    /**
+     * @param metadataProvider Provider to request metadata not in the cache from.
+     * @param metadataCache    Cache.
+     * @param purgeInterval    Interval for purging in the background (seconds), or zero or less to purge before each
+     *                         request.
+     */
+    public CachedMetadataProvider(final MetadataProvider metadataProvider, MetadataCache metadataCache,
+                                  int purgeInterval) {
         this.metadataProvider = metadataProvider;
         this.metadataCache = metadataCache;
+        this.purgeInterval = purgeInterval;
+        initPurger();
+    }
+
+    private void initPurger() {
+        purger = new CachePurger("vcat-metadata-purge", purgeInterval, () -> {
+            metadataCache.purge();
+            // Not known
+            return 0;
+        });
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initPurger();
     }
 
     @Override
     public Metadata requestMetadata(Wiki wiki) throws ApiException {
         Metadata metadata = null;
         try {
-            this.metadataCache.purge();
+            if (!purger.isScheduled()) {
+                purger.purge();
+            }
             metadata = this.metadataCache.getMetadata(wiki);
         } catch (CacheException e) {
             LOG.warn(Messages.getString("CachedMetadataProvider.Warn.Retrieve"), e);
@@ -46,4 +96,12 @@ public class CachedMetadataProvider implements MetadataProvider {
         return metadata;
     }
 
+    /**
+     * Stop purging in the background.
+     */
+    @Override
+    public void close() {
+        purger.close();
+    }
+
 }
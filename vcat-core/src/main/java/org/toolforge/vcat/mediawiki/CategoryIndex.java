@@ -0,0 +1,229 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.slf4j.helpers.MessageFormatter;
+import org.toolforge.vcat.Messages;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only index of the category graph of a wiki, written by {@link CategoryIndexBuilder} and memory-mapped from a
+ * file. Every page and category is a node, numbered in the order of namespace and title. The categories of each node
+ * and the subcategories of each category are stored in compressed sparse row (CSR) form, so looking them up is only a
+ * matter of reading array elements.
+ * <p>
+ * File format (all numbers are big-endian 32-bit integers):
+ * <ul>
+ * <li>Header: magic number, version, number of nodes, number of category links, number of subcategory links, number
+ * of bytes of titles.</li>
+ * <li>Namespace of each node.</li>
+ * <li>Title offset of each node, plus the end of the last title.</li>
+ * <li>Titles in UTF-8, with underscores instead of spaces.</li>
+ * <li>Flags of each node (one byte each).</li>
+ * <li>Start of the categories of each node, plus the end of the last.</li>
+ * <li>Categories (nodes, in order of title).</li>
+ * <li>Start of the subcategories of each node, plus the end of the last.</li>
+ * <li>Subcategories (nodes, in the order the wiki lists them).</li>
+ * </ul>
+ * Each section is mapped separately, so none may be larger than 2 GiB.
+ * <p>
+ * Instances are safe for use by multiple threads.
+ */
+public class CategoryIndex {
+
+    static final int MAGIC = 0x56434958;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+    /**
+     * Flag for hidden categories.
+     */
+    static final byte FLAG_HIDDEN = 1;
+
+    private final IntBuffer namespaces;
+
+    private final IntBuffer titleOffsets;
+
+    private final ByteBuffer titles;
+
+    private final ByteBuffer flags;
+
+    private final IntBuffer categoryOffsets;
+
+    private final IntBuffer categories;
+
+    private final IntBuffer subcategoryOffsets;
+
+    private final IntBuffer subcategories;
+
+    private final int nodeCount;
+
+    private CategoryIndex(FileChannel channel, Path path) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            throw new IOException(MessageFormatter
+                    .format(Messages.getString("CategoryIndex.Exception.InvalidFile"), path).getMessage());
+        }
+        final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException(MessageFormatter
+                    .format(Messages.getString("CategoryIndex.Exception.InvalidFile"), path).getMessage());
+        }
+        nodeCount = header.getInt();
+        final int categoryCount = header.getInt();
+        final int subcategoryCount = header.getInt();
+        final int titleBytes = header.getInt();
+
+        // Check the size before mapping anything, so a broken file is not mapped beyond its end
+        final long expectedSize = HEADER_SIZE + (long) nodeCount * Integer.BYTES * 4 + 3L * Integer.BYTES + titleBytes
+                + nodeCount + (long) categoryCount * Integer.BYTES + (long) subcategoryCount * Integer.BYTES;
+        if (nodeCount < 0 || categoryCount < 0 || subcategoryCount < 0 || titleBytes < 0
+                || expectedSize != channel.size()) {
+            throw new IOException(MessageFormatter
+                    .format(Messages.getString("CategoryIndex.Exception.InvalidFile"), path).getMessage());
+        }
+
+        long position = HEADER_SIZE;
+        namespaces = map(channel, position, nodeCount).asIntBuffer();
+        position += (long) nodeCount * Integer.BYTES;
+        titleOffsets = map(channel, position, nodeCount + 1).asIntBuffer();
+        position += (long) (nodeCount + 1) * Integer.BYTES;
+        titles = channel.map(FileChannel.MapMode.READ_ONLY, position, titleBytes);
+        position += titleBytes;
+        flags = channel.map(FileChannel.MapMode.READ_ONLY, position, nodeCount);
+        position += nodeCount;
+        categoryOffsets = map(channel, position, nodeCount + 1).asIntBuffer();
+        position += (long) (nodeCount + 1) * Integer.BYTES;
+        categories = map(channel, position, categoryCount).asIntBuffer();
+        position += (long) categoryCount * Integer.BYTES;
+        subcategoryOffsets = map(channel, position, nodeCount + 1).asIntBuffer();
+        position += (long) (nodeCount + 1) * Integer.BYTES;
+        subcategories = map(channel, position, subcategoryCount).asIntBuffer();
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, int intCount) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, (long) intCount * Integer.BYTES);
+    }
+
+    /**
+     * Open an index file. The file is mapped into memory, and stays mapped until the index is garbage collected.
+     *
+     * @param path Index file.
+     * @return The index.
+     * @throws IOException If the file cannot be read or is not an index.
+     */
+    public static CategoryIndex open(Path path) throws IOException {
+        // The mapping stays valid after the channel has been closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new CategoryIndex(channel, path);
+        }
+    }
+
+    /**
+     * @return Number of nodes (pages and categories).
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Find a node by binary search.
+     *
+     * @param namespace Namespace number.
+     * @param title     Title without namespace, with underscores instead of spaces.
+     * @return Number of the node, or -1 if there is none.
+     */
+    public int find(int namespace, String title) {
+        final byte[] titleBytes = title.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            int comparison = Integer.compare(namespaces.get(mid), namespace);
+            if (comparison == 0) {
+                comparison = compareTitle(mid, titleBytes);
+            }
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare the title of a node to the supplied UTF-8 bytes, byte by byte as unsigned values.
+     */
+    private int compareTitle(int node, byte[] titleBytes) {
+        final int start = titleOffsets.get(node);
+        final int length = titleOffsets.get(node + 1) - start;
+        final int commonLength = Math.min(length, titleBytes.length);
+        for (int i = 0; i < commonLength; i++) {
+            final int comparison = Byte.compareUnsigned(titles.get(start + i), titleBytes[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, titleBytes.length);
+    }
+
+    /**
+     * @param node Number of the node.
+     * @return Namespace number of the node.
+     */
+    public int getNamespace(int node) {
+        return namespaces.get(node);
+    }
+
+    /**
+     * @param node Number of the node.
+     * @return Title of the node, without namespace and with underscores instead of spaces.
+     */
+    public String getTitle(int node) {
+        final int start = titleOffsets.get(node);
+        final byte[] titleBytes = new byte[titleOffsets.get(node + 1) - start];
+        titles.get(start, titleBytes);
+        return new String(titleBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param node Number of the node.
+     * @return Whether the node is a hidden category.
+     */
+    public boolean isHiddenCategory(int node) {
+        return (flags.get(node) & FLAG_HIDDEN) != 0;
+    }
+
+    /**
+     * @param node Number of the node.
+     * @return Nodes of the categories the node is in, in order of title.
+     */
+    public int[] getCategories(int node) {
+        return slice(categoryOffsets, categories, node);
+    }
+
+    /**
+     * @param node Number of the node.
+     * @return Nodes of the subcategories of the node, in the order the wiki lists them.
+     */
+    public int[] getSubcategories(int node) {
+        return slice(subcategoryOffsets, subcategories, node);
+    }
+
+    private static int[] slice(IntBuffer offsets, IntBuffer links, int node) {
+        final int start = offsets.get(node);
+        final int[] result = new int[offsets.get(node + 1) - start];
+        links.get(start, result);
+        return result;
+    }
+
+}
@@ -0,0 +1,391 @@
+package org.toolforge.vcat.mediawiki;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.helpers.MessageFormatter;
+import org.toolforge.vcat.Messages;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Builds a {@link CategoryIndex} from the SQL dumps of the <code>page</code>, <code>categorylinks</code>,
+ * <code>linktarget</code> and <code>page_props</code> tables of a wiki. The dumps may be read in any order; the
+ * <code>linktarget</code> dump is only needed if <code>categorylinks</code> refers to categories by link target, and
+ * the <code>page_props</code> dump is only needed to recognize hidden categories.
+ * <p>
+ * Everything is kept in memory until the index is written, so building the index for a big wiki needs a big heap.
+ * <p>
+ * Can also be run from the command line, with the index file to write followed by the dump files (which may be
+ * compressed using gzip).
+ */
+@Slf4j
+public class CategoryIndexBuilder {
+
+    private static final String SUBCAT = "subcat";
+
+    private record NodeKey(int namespace, String title) {
+    }
+
+    /**
+     * Growable array of ints.
+     */
+    private static class IntList {
+
+        private int[] values = new int[1024];
+
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+    }
+
+    /**
+     * Growable array of longs.
+     */
+    private static class LongList {
+
+        private long[] values = new long[1024];
+
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+    }
+
+    /**
+     * Namespace and title of each node, in the order they were found.
+     */
+    private final List<NodeKey> keys = new ArrayList<>();
+
+    private final Map<NodeKey, Integer> keyIds = new HashMap<>();
+
+    /**
+     * Page ID to key ID.
+     */
+    private final Map<Long, Integer> pageIds = new HashMap<>();
+
+    /**
+     * Link target ID to key ID, for categories only.
+     */
+    private final Map<Long, Integer> linkTargetIds = new HashMap<>();
+
+    private final Set<Long> hiddenPageIds = new HashSet<>();
+
+    /**
+     * Page IDs of the pages in each category link.
+     */
+    private final LongList linkFrom = new LongList();
+
+    /**
+     * Key ID of the category in each category link if it is not negative, otherwise the link target ID as
+     * <code>-id - 1</code>.
+     */
+    private final LongList linkTo = new LongList();
+
+    /**
+     * Indexes of the category links which are for subcategories.
+     */
+    private final IntList subcategoryLinks = new IntList();
+
+    /**
+     * Sort keys of the category links which are for subcategories.
+     */
+    private final List<byte[]> subcategorySortkeys = new ArrayList<>();
+
+    private int keyId(int namespace, String title) {
+        return keyIds.computeIfAbsent(new NodeKey(namespace, title), key -> {
+            keys.add(key);
+            return keys.size() - 1;
+        });
+    }
+
+    /**
+     * Add a page.
+     *
+     * @param pageId    Page ID.
+     * @param namespace Namespace number.
+     * @param title     Title without namespace, with underscores instead of spaces.
+     */
+    public void addPage(long pageId, int namespace, String title) {
+        pageIds.put(pageId, keyId(namespace, title));
+    }
+
+    /**
+     * Add a link target. Only link targets for categories are kept.
+     *
+     * @param linkTargetId Link target ID.
+     * @param namespace    Namespace number.
+     * @param title        Title without namespace, with underscores instead of spaces.
+     */
+    public void addLinkTarget(long linkTargetId, int namespace, String title) {
+        if (namespace == Metadata.NS_CATEGORY) {
+            linkTargetIds.put(linkTargetId, keyId(namespace, title));
+        }
+    }
+
+    /**
+     * Mark a page as hidden category.
+     *
+     * @param pageId Page ID.
+     */
+    public void addHiddenCategory(long pageId) {
+        hiddenPageIds.add(pageId);
+    }
+
+    /**
+     * Add a category link using the title of the category.
+     *
+     * @param pageId        Page ID of the page in the category.
+     * @param categoryTitle Title of the category without namespace, with underscores instead of spaces.
+     * @param sortkey       Sort key of the page in the category.
+     * @param subcategory   Whether the page is a subcategory.
+     */
+    public void addCategoryLink(long pageId, String categoryTitle, byte[] sortkey, boolean subcategory) {
+        addLink(pageId, keyId(Metadata.NS_CATEGORY, categoryTitle), sortkey, subcategory);
+    }
+
+    /**
+     * Add a category link using the link target ID of the category.
+     *
+     * @param pageId       Page ID of the page in the category.
+     * @param linkTargetId Link target ID of the category.
+     * @param sortkey      Sort key of the page in the category.
+     * @param subcategory  Whether the page is a subcategory.
+     */
+    public void addCategoryLink(long pageId, long linkTargetId, byte[] sortkey, boolean subcategory) {
+        addLink(pageId, -linkTargetId - 1, sortkey, subcategory);
+    }
+
+    private void addLink(long pageId, long to, byte[] sortkey, boolean subcategory) {
+        if (subcategory) {
+            subcategoryLinks.add(linkFrom.size);
+            subcategorySortkeys.add(sortkey);
+        }
+        linkFrom.add(pageId);
+        linkTo.add(to);
+    }
+
+    /**
+     * Read a dump of one of the supported tables. The table is recognized by its name in the dump.
+     *
+     * @param inputStream Stream with the uncompressed dump.
+     * @throws IOException If there are any errors reading or parsing the dump.
+     */
+    public void readDump(InputStream inputStream) throws IOException {
+        SqlDumpReader.read(inputStream, row -> {
+            switch (row.getTable()) {
+                case "page" -> addPage(row.getLong("page_id"), (int) row.getLong("page_namespace"),
+                        Objects.requireNonNull(row.getString("page_title")));
+                case "linktarget" -> addLinkTarget(row.getLong("lt_id"), (int) row.getLong("lt_namespace"),
+                        Objects.requireNonNull(row.getString("lt_title")));
+                case "page_props" -> {
+                    if ("hiddencat".equals(row.getString("pp_propname"))) {
+                        addHiddenCategory(row.getLong("pp_page"));
+                    }
+                }
+                case "categorylinks" -> {
+                    final long pageId = row.getLong("cl_from");
+                    final byte[] sortkey = Objects.requireNonNullElse(row.getBytes("cl_sortkey"), new byte[0]);
+                    final boolean subcategory = SUBCAT.equals(row.getString("cl_type"));
+                    if (row.hasColumn("cl_to")) {
+                        addCategoryLink(pageId, Objects.requireNonNull(row.getString("cl_to")), sortkey, subcategory);
+                    } else {
+                        addCategoryLink(pageId, row.getLong("cl_target_id"), sortkey, subcategory);
+                    }
+                }
+                default -> throw new IOException(MessageFormatter
+                        .format(Messages.getString("CategoryIndexBuilder.Exception.UnknownTable"), row.getTable())
+                        .getMessage());
+            }
+        });
+    }
+
+    /**
+     * Write the index.
+     *
+     * @param path Index file to write.
+     * @throws IOException If there are any errors writing the file.
+     */
+    public void write(Path path) throws IOException {
+
+        // Nodes are sorted by namespace and title, so they can be found using binary search
+        final int nodeCount = keys.size();
+        final byte[][] titles = new byte[nodeCount][];
+        for (int i = 0; i < nodeCount; i++) {
+            titles[i] = keys.get(i).title().getBytes(StandardCharsets.UTF_8);
+        }
+        final Integer[] sortedKeyIds = new Integer[nodeCount];
+        Arrays.setAll(sortedKeyIds, i -> i);
+        Arrays.sort(sortedKeyIds, Comparator.<Integer>comparingInt(i -> keys.get(i).namespace())
+                .thenComparing((i1, i2) -> Arrays.compareUnsigned(titles[i1], titles[i2])));
+        final int[] nodes = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            nodes[sortedKeyIds[node]] = node;
+        }
+
+        // Resolve the category links to pairs of nodes; links to missing pages or link targets are left out
+        final int[] linkFromNodes = new int[linkFrom.size];
+        final int[] linkToNodes = new int[linkFrom.size];
+        for (int i = 0; i < linkFrom.size; i++) {
+            final Integer fromKeyId = pageIds.get(linkFrom.get(i));
+            final long to = linkTo.get(i);
+            final Integer toKeyId = to >= 0 ? Integer.valueOf((int) to) : linkTargetIds.get(-to - 1);
+            if (fromKeyId == null || toKeyId == null) {
+                linkFromNodes[i] = -1;
+                linkToNodes[i] = -1;
+            } else {
+                linkFromNodes[i] = nodes[fromKeyId];
+                linkToNodes[i] = nodes[toKeyId];
+            }
+        }
+
+        // Categories of each node, in order of title (which is the order of the nodes, as all are in one namespace)
+        final int[] categoryOffsets = new int[nodeCount + 1];
+        final int[] categories = csr(linkFromNodes, linkToNodes, categoryOffsets, null);
+        for (int node = 0; node < nodeCount; node++) {
+            Arrays.sort(categories, categoryOffsets[node], categoryOffsets[node + 1]);
+        }
+
+        // Subcategories of each category, in order of sort key and page ID like in the API
+        final int subcategoryCount = subcategoryLinks.size;
+        final int[] subcategoryFromNodes = new int[subcategoryCount];
+        final int[] subcategoryToNodes = new int[subcategoryCount];
+        for (int i = 0; i < subcategoryCount; i++) {
+            subcategoryFromNodes[i] = linkToNodes[subcategoryLinks.get(i)];
+            subcategoryToNodes[i] = linkFromNodes[subcategoryLinks.get(i)];
+        }
+        final Integer[] subcategoryOrder = new Integer[subcategoryCount];
+        Arrays.setAll(subcategoryOrder, i -> i);
+        Arrays.sort(subcategoryOrder, Comparator.<Integer>comparingInt(i -> subcategoryFromNodes[i])
+                .thenComparing((i1, i2) -> Arrays.compareUnsigned(subcategorySortkeys.get(i1),
+                        subcategorySortkeys.get(i2)))
+                .thenComparingLong(i -> linkFrom.get(subcategoryLinks.get(i))));
+        final int[] subcategoryOffsets = new int[nodeCount + 1];
+        final int[] subcategories = csr(subcategoryFromNodes, subcategoryToNodes, subcategoryOffsets,
+                subcategoryOrder);
+
+        final byte[] flags = new byte[nodeCount];
+        for (long pageId : hiddenPageIds) {
+            final Integer keyId = pageIds.get(pageId);
+            if (keyId != null) {
+                flags[nodes[keyId]] |= CategoryIndex.FLAG_HIDDEN;
+            }
+        }
+
+        long titleBytes = 0;
+        for (byte[] title : titles) {
+            titleBytes += title.length;
+        }
+
+        try (var outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            outputStream.writeInt(CategoryIndex.MAGIC);
+            outputStream.writeInt(CategoryIndex.VERSION);
+            outputStream.writeInt(nodeCount);
+            outputStream.writeInt(categories.length);
+            outputStream.writeInt(subcategories.length);
+            outputStream.writeInt(Math.toIntExact(titleBytes));
+            for (int node = 0; node < nodeCount; node++) {
+                outputStream.writeInt(keys.get(sortedKeyIds[node]).namespace());
+            }
+            int titleOffset = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                outputStream.writeInt(titleOffset);
+                titleOffset += titles[sortedKeyIds[node]].length;
+            }
+            outputStream.writeInt(titleOffset);
+            for (int node = 0; node < nodeCount; node++) {
+                outputStream.write(titles[sortedKeyIds[node]]);
+            }
+            outputStream.write(flags);
+            writeInts(outputStream, categoryOffsets);
+            writeInts(outputStream, categories);
+            writeInts(outputStream, subcategoryOffsets);
+            writeInts(outputStream, subcategories);
+        }
+    }
+
+    /**
+     * Build the compressed sparse row form of a list of links, leaving out links with a negative node.
+     *
+     * @param from    Node each link starts from.
+     * @param to      Node each link goes to.
+     * @param offsets Array to fill with the start of the links of each node, plus the end of the last.
+     * @param order   Order in which to add the links, or null to use the order of the arrays.
+     * @return Nodes the links go to, grouped by the node they start from.
+     */
+    private static int[] csr(int[] from, int[] to, int[] offsets, Integer @Nullable [] order) {
+        final int nodeCount = offsets.length - 1;
+        for (int i = 0; i < from.length; i++) {
+            if (from[i] >= 0 && to[i] >= 0) {
+                offsets[from[i] + 1]++;
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        final int[] links = new int[offsets[nodeCount]];
+        final int[] next = Arrays.copyOf(offsets, nodeCount);
+        for (int j = 0; j < from.length; j++) {
+            final int i = order == null ? j : order[j];
+            if (from[i] >= 0 && to[i] >= 0) {
+                links[next[from[i]]++] = to[i];
+            }
+        }
+        return links;
+    }
+
+    private static void writeInts(DataOutputStream outputStream, int[] values) throws IOException {
+        for (int value : values) {
+            outputStream.writeInt(value);
+        }
+    }
+
+    /**
+     * Build an index from the command line.
+     *
+     * @param args Index file to write, followed by the dump files.
+     * @throws IOException If there are any errors reading the dumps or writing the index.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            LOG.error(Messages.getString("CategoryIndexBuilder.Usage"));
+            return;
+        }
+        final var builder = new CategoryIndexBuilder();
+        for (int i = 1; i < args.length; i++) {
+            LOG.info(Messages.getString("CategoryIndexBuilder.Info.Reading"), args[i]);
+            final var dumpPath = Path.of(args[i]);
+            try (InputStream fileInputStream = Files.newInputStream(dumpPath);
+                 InputStream inputStream = args[i].endsWith(".gz")
+                         ? new GZIPInputStream(fileInputStream, 1 << 16) : fileInputStream) {
+                builder.readDump(inputStream);
+            }
+        }
+        LOG.info(Messages.getString("CategoryIndexBuilder.Info.Writing"), args[0]);
+        builder.write(Path.of(args[0]));
+    }
+
+}
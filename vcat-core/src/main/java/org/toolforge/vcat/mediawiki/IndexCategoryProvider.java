@@ -0,0 +1,158 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.jspecify.annotations.Nullable;
+import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * {@link CategoryProvider} which looks up categories in a prebuilt {@link CategoryIndex} for each wiki it has one for,
+ * without any network access. Requests for other wikis are passed on to another category provider.
+ * <p>
+ * The index reflects the state of the wiki at the time of the dumps it was built from.
+ */
+public class IndexCategoryProvider implements CategoryProvider {
+
+    @Serial
+    private static final long serialVersionUID = -2261844931906153475L;
+
+    /**
+     * File extension of index files.
+     */
+    public static final String FILE_EXTENSION = ".vcix";
+
+    /**
+     * Index for each wiki, by the name of the wiki.
+     */
+    private final Map<String, CategoryIndex> indexes;
+
+    private final MetadataProvider metadataProvider;
+
+    private final CategoryProvider categoryProvider;
+
+    /**
+     * @param indexes          Index for each wiki, by the name of the wiki (see {@link Wiki#getName()}).
+     * @param metadataProvider Metadata provider, needed to translate between full titles and namespace numbers.
+     * @param categoryProvider Category provider for wikis without an index.
+     */
+    public IndexCategoryProvider(Map<String, CategoryIndex> indexes, MetadataProvider metadataProvider,
+                                 CategoryProvider categoryProvider) {
+        this.indexes = Map.copyOf(indexes);
+        this.metadataProvider = metadataProvider;
+        this.categoryProvider = categoryProvider;
+    }
+
+    /**
+     * Open all index files in a directory. The name of each file, without the extension {@value #FILE_EXTENSION}, is
+     * the name of the wiki.
+     *
+     * @param directory Directory with index files.
+     * @return Index for each wiki, by the name of the wiki.
+     * @throws IOException If the directory or any index file cannot be read.
+     */
+    public static Map<String, CategoryIndex> openDirectory(Path directory) throws IOException {
+        final Map<String, CategoryIndex> indexes = new HashMap<>();
+        try (var stream = Files.newDirectoryStream(directory, '*' + FILE_EXTENSION)) {
+            for (Path path : stream) {
+                final String fileName = path.getFileName().toString();
+                indexes.put(fileName.substring(0, fileName.length() - FILE_EXTENSION.length()),
+                        CategoryIndex.open(path));
+            }
+        }
+        return indexes;
+    }
+
+    @Nullable
+    private CategoryIndex index(Wiki wiki) {
+        return indexes.get(wiki.getName());
+    }
+
+    private static int find(CategoryIndex index, Metadata metadata, String fullTitle) {
+        return index.find(metadata.namespaceFromTitle(fullTitle),
+                metadata.titleWithoutNamespace(fullTitle).replace(' ', '_'));
+    }
+
+    private static String fullTitle(CategoryIndex index, Metadata metadata, int node) throws ApiException {
+        return metadata.fullTitle(index.getTitle(node).replace('_', ' '), index.getNamespace(node));
+    }
+
+    @Override
+    public Map<String, Collection<String>> requestCategories(Wiki wiki, List<String> fullTitles, boolean showhidden)
+            throws ApiException {
+        final CategoryIndex index = index(wiki);
+        if (index == null) {
+            return categoryProvider.requestCategories(wiki, fullTitles, showhidden);
+        }
+        final Metadata metadata = metadataProvider.requestMetadata(wiki);
+        final Map<String, Collection<String>> categoryMap = new HashMap<>();
+        for (String fullTitle : fullTitles) {
+            final int node = find(index, metadata, fullTitle);
+            if (node < 0) {
+                continue;
+            }
+            final List<String> categories = new ArrayList<>();
+            for (int category : index.getCategories(node)) {
+                if (showhidden || !index.isHiddenCategory(category)) {
+                    categories.add(fullTitle(index, metadata, category));
+                }
+            }
+            if (!categories.isEmpty()) {
+                categoryMap.put(fullTitle, categories);
+            }
+        }
+        return categoryMap;
+    }
+
+    @Override
+    public List<String> requestCategorymembers(Wiki wiki, String fullTitle) throws ApiException {
+        final CategoryIndex index = index(wiki);
+        if (index == null) {
+            return categoryProvider.requestCategorymembers(wiki, fullTitle);
+        }
+        final Metadata metadata = metadataProvider.requestMetadata(wiki);
+        final int node = find(index, metadata, fullTitle);
+        if (node < 0) {
+            return new ArrayList<>();
+        }
+        final int[] subcategories = index.getSubcategories(node);
+        final List<String> categorymembers = new ArrayList<>(subcategories.length);
+        for (int subcategory : subcategories) {
+            categorymembers.add(fullTitle(index, metadata, subcategory));
+        }
+        return categorymembers;
+    }
+
+    @Override
+    public List<String> requestCategorymembers(Wiki wiki, String fullTitle, int minTitles) throws ApiException {
+        // Getting all members from the index is no more expensive than getting some
+        if (index(wiki) == null) {
+            return categoryProvider.requestCategorymembers(wiki, fullTitle, minTitles);
+        }
+        return requestCategorymembers(wiki, fullTitle);
+    }
+
+    @Override
+    public Map<String, List<String>> requestCategorymembers(Wiki wiki, List<String> fullTitles)
+            throws ApiException {
+        if (index(wiki) == null) {
+            return categoryProvider.requestCategorymembers(wiki, fullTitles);
+        }
+        return CategoryProvider.super.requestCategorymembers(wiki, fullTitles);
+    }
+
+    @Override
+    public Map<String, List<String>> requestCategorymembers(Wiki wiki, List<String> fullTitles, int minTitles)
+            throws ApiException {
+        if (index(wiki) == null) {
+            return categoryProvider.requestCategorymembers(wiki, fullTitles, minTitles);
+        }
+        return CategoryProvider.super.requestCategorymembers(wiki, fullTitles);
+    }
+
+}
@@ -0,0 +1,258 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.helpers.MessageFormatter;
+import org.toolforge.vcat.Messages;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reader for the SQL dumps of MediaWiki tables as published on <a href="https://dumps.wikimedia.org/">
+ * dumps.wikimedia.org</a>, as written by <code>mysqldump</code>. Column names are taken from the
+ * <code>CREATE TABLE</code> statement, and the rows from the <code>INSERT</code> statements are passed on one by one.
+ * Values are kept as bytes, as some columns (such as sort keys) are binary.
+ */
+class SqlDumpReader {
+
+    private static final byte[] CREATE_TABLE = "CREATE TABLE ".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] INSERT_INTO = "INSERT INTO ".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] VALUES = " VALUES ".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Row from an <code>INSERT</code> statement.
+     */
+    static class Row {
+
+        private final String table;
+
+        private final List<String> columns;
+
+        private final List<byte @Nullable []> values;
+
+        private Row(String table, List<String> columns, List<byte @Nullable []> values) {
+            this.table = table;
+            this.columns = columns;
+            this.values = values;
+        }
+
+        String getTable() {
+            return table;
+        }
+
+        private int index(String column) throws IOException {
+            final int index = columns.indexOf(column);
+            if (index < 0 || index >= values.size()) {
+                throw new IOException(MessageFormatter
+                        .format(Messages.getString("SqlDumpReader.Exception.Column"), column).getMessage());
+            }
+            return index;
+        }
+
+        boolean hasColumn(String column) {
+            return columns.contains(column);
+        }
+
+        byte @Nullable [] getBytes(String column) throws IOException {
+            return values.get(index(column));
+        }
+
+        @Nullable
+        String getString(String column) throws IOException {
+            final byte[] value = getBytes(column);
+            return value == null ? null : new String(value, StandardCharsets.UTF_8);
+        }
+
+        long getLong(String column) throws IOException {
+            final String value = getString(column);
+            if (value == null) {
+                throw new IOException(MessageFormatter
+                        .format(Messages.getString("SqlDumpReader.Exception.Column"), column).getMessage());
+            }
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IOException(MessageFormatter
+                        .format(Messages.getString("SqlDumpReader.Exception.Column"), column).getMessage(), e);
+            }
+        }
+
+    }
+
+    /**
+     * Action for each row, which may throw an {@link IOException}.
+     */
+    @FunctionalInterface
+    interface RowConsumer {
+
+        void accept(Row row) throws IOException;
+
+    }
+
+    private final InputStream inputStream;
+
+    private final List<String> columns = new ArrayList<>();
+
+    private boolean inCreateTable;
+
+    /**
+     * @param inputStream Stream with the uncompressed dump.
+     */
+    SqlDumpReader(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * Read the whole dump, passing each row to the supplied action.
+     *
+     * @param rowConsumer Action for each row.
+     * @throws IOException If there are any errors reading or parsing the dump, or thrown by the action.
+     */
+    void read(RowConsumer rowConsumer) throws IOException {
+        // INSERT statements are on one line each, usually about 1 MB long
+        final var line = new ByteArrayOutputStream(1 << 20);
+        final byte[] buffer = new byte[1 << 16];
+        int length;
+        while ((length = inputStream.read(buffer)) != -1) {
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    line.write(buffer, lineStart, i - lineStart);
+                    processLine(line.toByteArray(), rowConsumer);
+                    line.reset();
+                    lineStart = i + 1;
+                }
+            }
+            line.write(buffer, lineStart, length - lineStart);
+        }
+        if (line.size() > 0) {
+            processLine(line.toByteArray(), rowConsumer);
+        }
+    }
+
+    private static boolean startsWith(byte[] line, byte[] prefix) {
+        return line.length >= prefix.length && Arrays.equals(line, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private void processLine(byte[] line, RowConsumer rowConsumer) throws IOException {
+        if (startsWith(line, CREATE_TABLE)) {
+            columns.clear();
+            inCreateTable = true;
+        } else if (inCreateTable) {
+            // Column definitions look like "  `name` type ...", the definition ends with ")"
+            if (line.length > 0 && line[0] == ')') {
+                inCreateTable = false;
+            } else {
+                final String definition = new String(line, StandardCharsets.UTF_8).trim();
+                if (definition.startsWith("`")) {
+                    columns.add(definition.substring(1, definition.indexOf('`', 1)));
+                }
+            }
+        } else if (startsWith(line, INSERT_INTO)) {
+            final int valuesIndex = indexOf(line, VALUES);
+            if (valuesIndex < 0) {
+                throw new IOException(Messages.getString("SqlDumpReader.Exception.Syntax"));
+            }
+            // Table name is quoted like "INSERT INTO `name` VALUES"
+            final String table = new String(line, INSERT_INTO.length, valuesIndex - INSERT_INTO.length,
+                    StandardCharsets.UTF_8).replace("`", "");
+            parseValues(line, valuesIndex + VALUES.length, table, rowConsumer);
+        }
+    }
+
+    private static int indexOf(byte[] line, byte[] search) {
+        for (int i = 0; i <= line.length - search.length; i++) {
+            if (Arrays.equals(line, i, i + search.length, search, 0, search.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse the tuples <code>(value,value,...),(value,...),...;</code> starting at the supplied position.
+     */
+    private void parseValues(byte[] line, int start, String table, RowConsumer rowConsumer) throws IOException {
+        final List<String> rowColumns = List.copyOf(columns);
+        final var value = new ByteArrayOutputStream();
+        int i = start;
+        while (i < line.length && line[i] == '(') {
+            i++;
+            final List<byte @Nullable []> values = new ArrayList<>(rowColumns.size());
+            while (true) {
+                if (i >= line.length) {
+                    throw new IOException(Messages.getString("SqlDumpReader.Exception.Syntax"));
+                }
+                if (line[i] == '\'') {
+                    // Quoted string with backslash escapes
+                    i++;
+                    value.reset();
+                    while (i < line.length && line[i] != '\'') {
+                        if (line[i] == '\\' && i + 1 < line.length) {
+                            i++;
+                            value.write(unescape(line[i]));
+                        } else {
+                            value.write(line[i]);
+                        }
+                        i++;
+                    }
+                    values.add(value.toByteArray());
+                    i++;
+                } else {
+                    // Number or NULL
+                    final int valueStart = i;
+                    while (i < line.length && line[i] != ',' && line[i] != ')') {
+                        i++;
+                    }
+                    final byte[] unquoted = Arrays.copyOfRange(line, valueStart, i);
+                    values.add("NULL".equals(new String(unquoted, StandardCharsets.US_ASCII)) ? null : unquoted);
+                }
+                if (i >= line.length) {
+                    throw new IOException(Messages.getString("SqlDumpReader.Exception.Syntax"));
+                }
+                if (line[i] == ')') {
+                    i++;
+                    break;
+                }
+                // Skip the comma between values
+                i++;
+            }
+            rowConsumer.accept(new Row(table, rowColumns, values));
+            // Skip the comma between tuples
+            if (i < line.length && line[i] == ',') {
+                i++;
+            }
+        }
+    }
+
+    private static int unescape(byte escaped) {
+        return switch (escaped) {
+            case '0' -> 0;
+            case 'b' -> '\b';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'Z' -> 26;
+            default -> escaped;
+        };
+    }
+
+    /**
+     * Convenience method to read a dump from a stream.
+     *
+     * @param inputStream Stream with the uncompressed dump.
+     * @param rowConsumer Action for each row.
+     * @throws IOException If there are any errors reading or parsing the dump, or thrown by the action.
+     */
+    static void read(InputStream inputStream, RowConsumer rowConsumer) throws IOException {
+        new SqlDumpReader(inputStream).read(rowConsumer);
+    }
+
+}
@@ -0,0 +1,161 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Lazy cursor over the pages of a MediaWiki API query which may have to be continued. A page is only requested when it
+ * is asked for. If prefetching is enabled, the page following it is requested as soon as its continue parameters are
+ * known, so it can be retrieved while the current one is processed.
+ */
+public class TitleListCursor {
+
+    /**
+     * Function to request a page, given the parameters to continue the query (or <code>null</code> for the first page).
+     */
+    private final Function<@Nullable Map<String, String>, CompletableFuture<TitleListResult>> pageRequest;
+
+    /**
+     * Whether to request the following page before it is asked for.
+     */
+    private final boolean prefetch;
+
+    /**
+     * Future for the page returned last, or <code>null</code> if no page has been asked for yet.
+     */
+    @Nullable
+    private CompletableFuture<@Nullable TitleListResult> lastPage;
+
+    /**
+     * Future for the prefetched page following the last one, if any.
+     */
+    @Nullable
+    private CompletableFuture<@Nullable TitleListResult> nextPage;
+
+    /**
+     * @param pageRequest Function to request a page, given the parameters to continue the query (or <code>null</code>
+     *                    for the first page).
+     * @param prefetch    Whether to request the following page before it is asked for. This should be disabled if the
+     *                    consumer will often stop early.
+     */
+    public TitleListCursor(Function<@Nullable Map<String, String>, CompletableFuture<TitleListResult>> pageRequest,
+                           boolean prefetch) {
+        this.pageRequest = pageRequest;
+        this.prefetch = prefetch;
+    }
+
+    private CompletableFuture<@Nullable TitleListResult> requestPage(@Nullable Map<String, String> continueMap) {
+        try {
+            return pageRequest.apply(continueMap);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<@Nullable TitleListResult> requestFollowingPage(@Nullable TitleListResult result) {
+        if (result == null || result.getContinueMap() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return requestPage(result.getContinueMap());
+    }
+
+    /**
+     * Get the next page asynchronously.
+     *
+     * @return Future for the next page, which is completed with <code>null</code> if there are no more pages, or
+     * exceptionally with an {@link ApiException} if there are any errors.
+     */
+    public synchronized CompletableFuture<@Nullable TitleListResult> nextAsync() {
+        final CompletableFuture<@Nullable TitleListResult> page;
+        if (nextPage != null) {
+            page = nextPage;
+        } else if (lastPage == null) {
+            page = requestPage(null);
+        } else {
+            page = lastPage.thenCompose(this::requestFollowingPage);
+        }
+        lastPage = page;
+        // Prefetch the following page as soon as the continue parameters are known
+        nextPage = prefetch ? page.thenCompose(this::requestFollowingPage) : null;
+        return page;
+    }
+
+    /**
+     * Get the next page, waiting for it if necessary.
+     *
+     * @return The next page, or <code>null</code> if there are no more pages.
+     * @throws ApiException If there are any errors.
+     */
+    @Nullable
+    public TitleListResult next() throws ApiException {
+        return ApiFutures.await(nextAsync());
+    }
+
+    /**
+     * Process all pages one after the other, until there are no more pages or the action asks to stop. Pages which are
+     * already available are processed in a loop, so this does not need a deeper stack for more pages.
+     *
+     * @param action Action for each page, returning <code>false</code> to stop.
+     * @return Future which is completed after the last page has been processed.
+     */
+    public CompletableFuture<Void> forEachAsync(Predicate<TitleListResult> action) {
+        final var future = new CompletableFuture<Void>();
+        forEachLoop(action, future);
+        return future;
+    }
+
+    private void forEachLoop(Predicate<TitleListResult> action, CompletableFuture<Void> future) {
+        while (true) {
+            final var page = nextAsync();
+            if (!page.isDone()) {
+                // Continue the loop when the page has arrived
+                page.whenComplete((result, e) -> {
+                    if (process(action, future, result, e)) {
+                        forEachLoop(action, future);
+                    }
+                });
+                return;
+            }
+            TitleListResult result = null;
+            Throwable e = null;
+            try {
+                result = page.join();
+            } catch (RuntimeException ee) {
+                e = ee;
+            }
+            if (!process(action, future, result, e)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Whether to continue with the next page.
+     */
+    private static boolean process(Predicate<TitleListResult> action, CompletableFuture<Void> future,
+                                   @Nullable TitleListResult result, @Nullable Throwable e) {
+        if (e != null) {
+            future.completeExceptionally(ApiFutures.unwrap(e));
+            return false;
+        }
+        if (result == null) {
+            future.complete(null);
+            return false;
+        }
+        try {
+            if (action.test(result)) {
+                return true;
+            }
+        } catch (RuntimeException ee) {
+            future.completeExceptionally(ee);
+            return false;
+        }
+        future.complete(null);
+        return false;
+    }
+
+}
@@ -0,0 +1,197 @@
+package org.toolforge.vcat.mediawiki;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParserFactory;
+import org.jspecify.annotations.Nullable;
+
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Event-based parser for MediaWiki API responses to queries using a property module (such as
+ * <code>prop=categories</code>) or a list module (such as <code>list=categorymembers</code>). Only the titles and the
+ * continue parameters are extracted in a single pass, without building a tree of the whole response.
+ */
+class TitleListParser {
+
+    private static final JsonParserFactory PARSER_FACTORY = Json.createParserFactory(null);
+
+    private static final String CONTINUE = "continue";
+
+    private static final String HIDDEN = "hidden";
+
+    private static final String PAGES = "pages";
+
+    private static final String QUERY = "query";
+
+    private static final String QUERY_CONTINUE = "query-continue";
+
+    private static final String TITLE = "title";
+
+    /**
+     * Name of the property or list module.
+     */
+    private final String name;
+
+    /**
+     * Keys of all objects and arrays enclosing the current position. Array elements and the root object have an empty
+     * key.
+     */
+    private final List<String> path = new ArrayList<>();
+
+    private final Map<String, List<String>> pages = new LinkedHashMap<>();
+
+    private final List<String> list = new ArrayList<>();
+
+    private final Set<String> hidden = new HashSet<>();
+
+    @Nullable
+    private Map<String, String> continueMap;
+
+    @Nullable
+    private Map<String, String> queryContinueMap;
+
+    @Nullable
+    private String pageTitle;
+
+    @Nullable
+    private List<String> pageTitles;
+
+    /**
+     * Title of the current entry returned by the property or list module.
+     */
+    @Nullable
+    private String entryTitle;
+
+    /**
+     * Whether the current entry returned by the property or list module is marked as hidden.
+     */
+    private boolean entryHidden;
+
+    private TitleListParser(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Parse a response from a stream.
+     *
+     * @param inputStream Stream containing the JSON response.
+     * @param name        Name of the property or list module.
+     * @return The extracted titles and continue parameters.
+     * @throws jakarta.json.JsonException If the response cannot be parsed.
+     */
+    static TitleListResult parse(InputStream inputStream, String name) {
+        try (var parser = PARSER_FACTORY.createParser(inputStream)) {
+            return new TitleListParser(name).parse(parser);
+        }
+    }
+
+    /**
+     * Parse a response which has already been read as a JSON object, or a result previously converted using
+     * {@link TitleListResult#toJsonObject(String)}.
+     *
+     * @param jsonObject JSON response.
+     * @param name       Name of the property or list module.
+     * @return The extracted titles and continue parameters.
+     * @throws jakarta.json.JsonException If the response cannot be parsed.
+     */
+    static TitleListResult parse(JsonObject jsonObject, String name) {
+        try (var parser = PARSER_FACTORY.createParser(jsonObject)) {
+            return new TitleListParser(name).parse(parser);
+        }
+    }
+
+    private TitleListResult parse(JsonParser parser) {
+        String key = null;
+        while (parser.hasNext()) {
+            switch (parser.next()) {
+                case KEY_NAME -> key = parser.getString();
+                case START_OBJECT, START_ARRAY -> {
+                    path.add(key == null ? "" : key);
+                    key = null;
+                    startStructure();
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    endStructure();
+                    path.removeLast();
+                }
+                case VALUE_STRING, VALUE_NUMBER -> {
+                    if (key != null) {
+                        value(key, parser.getString());
+                    }
+                    key = null;
+                }
+                default -> key = null;
+            }
+        }
+        // New continue (default starting with MW 1.26) takes precedence over old "raw" continue (default until MW 1.25)
+        return new TitleListResult(pages, list, hidden, continueMap != null ? continueMap : queryContinueMap);
+    }
+
+    private boolean pathIs(String... keys) {
+        if (path.size() != keys.length + 1) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            // Null matches any key
+            if (keys[i] != null && !keys[i].equals(path.get(i + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isEntry() {
+        return pathIs(QUERY, PAGES, null, name, null) || pathIs(QUERY, name, null);
+    }
+
+    private void startStructure() {
+        if (isEntry()) {
+            entryTitle = null;
+            entryHidden = false;
+        } else if (pathIs(CONTINUE)) {
+            continueMap = new HashMap<>();
+        } else if (pathIs(QUERY_CONTINUE, name)) {
+            queryContinueMap = new HashMap<>();
+        } else if (pathIs(QUERY, PAGES, null)) {
+            pageTitle = null;
+            pageTitles = null;
+        } else if (pathIs(QUERY, PAGES, null, name)) {
+            pageTitles = new ArrayList<>();
+        }
+    }
+
+    private void endStructure() {
+        if (isEntry()) {
+            if (entryHidden && entryTitle != null) {
+                hidden.add(entryTitle);
+            }
+        } else if (pathIs(QUERY, PAGES, null) && pageTitle != null && pageTitles != null) {
+            pages.computeIfAbsent(pageTitle, k -> new ArrayList<>(pageTitles.size())).addAll(pageTitles);
+        }
+    }
+
+    private void value(String key, String value) {
+        if (continueMap != null && pathIs(CONTINUE)) {
+            continueMap.put(key, value);
+        } else if (queryContinueMap != null && pathIs(QUERY_CONTINUE, name)) {
+            queryContinueMap.put(key, value);
+        } else if (TITLE.equals(key)) {
+            if (pathIs(QUERY, PAGES, null)) {
+                pageTitle = value;
+            } else if (pageTitles != null && pathIs(QUERY, PAGES, null, name, null)) {
+                pageTitles.add(value);
+                entryTitle = value;
+            } else if (pathIs(QUERY, name, null)) {
+                list.add(value);
+                entryTitle = value;
+            }
+        } else if (HIDDEN.equals(key) && isEntry()) {
+            // Present (with an empty value) only if the entry is hidden
+            entryHidden = true;
+        }
+    }
+
+}
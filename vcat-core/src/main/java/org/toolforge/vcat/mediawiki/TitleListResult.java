@@ -0,0 +1,103 @@
+package org.toolforge.vcat.mediawiki;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import lombok.Getter;
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The titles extracted from one response of a MediaWiki API query using a property module (such as
+ * <code>prop=categories</code>) or a list module (such as <code>list=categorymembers</code>), plus the parameters to
+ * continue the query, if there are any.
+ */
+@Getter
+public class TitleListResult {
+
+    /**
+     * Map of page titles to the titles returned by the property module for this page. Only contains pages for which the
+     * property module returned anything.
+     */
+    private final Map<String, List<String>> pages;
+
+    /**
+     * Titles returned by the list module.
+     */
+    private final List<String> list;
+
+    /**
+     * Titles returned by the property or list module which are marked as hidden (for example categories requested with
+     * <code>clprop=hidden</code>).
+     */
+    private final Set<String> hidden;
+
+    /**
+     * Parameters to continue the query, or <code>null</code> if there are no more results.
+     */
+    @Nullable
+    private final Map<String, String> continueMap;
+
+    public TitleListResult(Map<String, List<String>> pages, List<String> list,
+                           @Nullable Map<String, String> continueMap) {
+        this(pages, list, Set.of(), continueMap);
+    }
+
+    public TitleListResult(Map<String, List<String>> pages, List<String> list, Set<String> hidden,
+                           @Nullable Map<String, String> continueMap) {
+        this.pages = pages;
+        this.list = list;
+        this.hidden = hidden;
+        this.continueMap = continueMap;
+    }
+
+    /**
+     * Convert the result to a compact JSON object for caching. It has the same structure as a MediaWiki API response,
+     * but only contains the titles and continue parameters, so it can be parsed with {@link TitleListParser} just like
+     * a full response.
+     *
+     * @param name Name of the property or list module.
+     * @return JSON object containing the result.
+     */
+    public JsonObject toJsonObject(String name) {
+        final JsonObjectBuilder queryBuilder = Json.createObjectBuilder();
+        if (!pages.isEmpty()) {
+            final JsonObjectBuilder pagesBuilder = Json.createObjectBuilder();
+            int pageKey = 0;
+            for (var page : pages.entrySet()) {
+                pagesBuilder.add(Integer.toString(pageKey++), Json.createObjectBuilder()
+                        .add("title", page.getKey())
+                        .add(name, titlesToJsonArray(page.getValue())));
+            }
+            queryBuilder.add("pages", pagesBuilder);
+        }
+        if (!list.isEmpty()) {
+            queryBuilder.add(name, titlesToJsonArray(list));
+        }
+        final JsonObjectBuilder builder = Json.createObjectBuilder()
+                .add("query", queryBuilder);
+        if (continueMap != null) {
+            final JsonObjectBuilder continueBuilder = Json.createObjectBuilder();
+            continueMap.forEach(continueBuilder::add);
+            builder.add("continue", continueBuilder);
+        }
+        return builder.build();
+    }
+
+    private JsonArrayBuilder titlesToJsonArray(List<String> titles) {
+        final JsonArrayBuilder arrayBuilder = Json.createArrayBuilder();
+        for (String title : titles) {
+            final JsonObjectBuilder titleBuilder = Json.createObjectBuilder().add("title", title);
+            if (hidden.contains(title)) {
+                titleBuilder.add("hidden", "");
+            }
+            arrayBuilder.add(titleBuilder);
+        }
+        return arrayBuilder;
+    }
+
+}
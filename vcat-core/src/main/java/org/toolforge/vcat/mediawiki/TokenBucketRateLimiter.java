@@ -0,0 +1,193 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.toolforge.vcat.mediawiki.interfaces.RateLimiter;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link RateLimiter} which limits both the number of concurrent requests and, using a token bucket, the number of
+ * requests per second. Waiting callers are queued in the order they called {@link #acquire()}.
+ */
+public class TokenBucketRateLimiter implements RateLimiter {
+
+    private record Waiter(CompletableFuture<Permit> future, long enqueuedNanos) {
+    }
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Maximum number of concurrent requests.
+     */
+    private final int maxConcurrentRequests;
+
+    /**
+     * Maximum number of requests per second (zero or less means no limit).
+     */
+    private final double requestsPerSecond;
+
+    /**
+     * Maximum number of tokens in the bucket, i.e. how many requests may be sent in a burst.
+     */
+    private final double maxTokens;
+
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+
+    private double tokens;
+
+    private long lastRefillNanos;
+
+    private long backOffUntilNanos;
+
+    private int runningRequests;
+
+    private boolean dispatchScheduled;
+
+    private long permitsGranted;
+
+    private long totalQueueWaitNanos;
+
+    /**
+     * @param maxConcurrentRequests Maximum number of concurrent requests (zero or less means no limit).
+     * @param requestsPerSecond     Maximum number of requests per second (zero or less means no limit).
+     */
+    public TokenBucketRateLimiter(int maxConcurrentRequests, double requestsPerSecond) {
+        this.maxConcurrentRequests = maxConcurrentRequests < 1 ? Integer.MAX_VALUE : maxConcurrentRequests;
+        this.requestsPerSecond = requestsPerSecond;
+        maxTokens = Math.max(1, requestsPerSecond);
+        tokens = maxTokens;
+        lastRefillNanos = System.nanoTime();
+        backOffUntilNanos = lastRefillNanos;
+    }
+
+    @Override
+    public CompletableFuture<Permit> acquire() {
+        final var future = new CompletableFuture<Permit>();
+        synchronized (this) {
+            queue.add(new Waiter(future, System.nanoTime()));
+        }
+        dispatch();
+        return future;
+    }
+
+    @Override
+    public void backOff(Duration delay) {
+        synchronized (this) {
+            backOffUntilNanos = Math.max(backOffUntilNanos, System.nanoTime() + delay.toNanos());
+        }
+        // Make sure waiting callers are dispatched when the time has passed
+        dispatch();
+    }
+
+    /**
+     * Hand out permits to as many waiting callers as possible. If callers are left waiting only because of the rate
+     * limit or a back-off, another dispatch is scheduled for the time the next permit will be available.
+     */
+    private void dispatch() {
+        final List<Waiter> granted = new ArrayList<>();
+        long delayNanos = 0;
+        synchronized (this) {
+            final long now = System.nanoTime();
+            refill(now);
+            while (!queue.isEmpty() && runningRequests < maxConcurrentRequests) {
+                if (now < backOffUntilNanos) {
+                    delayNanos = backOffUntilNanos - now;
+                    break;
+                }
+                if (requestsPerSecond > 0 && tokens < 1) {
+                    delayNanos = (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / requestsPerSecond);
+                    break;
+                }
+                final var waiter = queue.poll();
+                if (waiter.future().isDone()) {
+                    // Cancelled by the caller
+                    continue;
+                }
+                if (requestsPerSecond > 0) {
+                    tokens -= 1;
+                }
+                runningRequests++;
+                permitsGranted++;
+                totalQueueWaitNanos += now - waiter.enqueuedNanos();
+                granted.add(waiter);
+            }
+            if (delayNanos > 0 && !dispatchScheduled) {
+                dispatchScheduled = true;
+            } else {
+                delayNanos = 0;
+            }
+        }
+        if (delayNanos > 0) {
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+                synchronized (this) {
+                    dispatchScheduled = false;
+                }
+                dispatch();
+            });
+        }
+        // Complete futures outside the lock, as this runs the callers' code
+        for (var waiter : granted) {
+            final var permit = new TokenBucketPermit();
+            if (!waiter.future().complete(permit)) {
+                permit.release();
+            }
+        }
+    }
+
+    private void refill(long now) {
+        if (requestsPerSecond > 0) {
+            tokens = Math.min(maxTokens, tokens + (now - lastRefillNanos) * requestsPerSecond / NANOS_PER_SECOND);
+        }
+        lastRefillNanos = now;
+    }
+
+    private void release() {
+        synchronized (this) {
+            runningRequests--;
+        }
+        dispatch();
+    }
+
+    @Override
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    @Override
+    public synchronized Duration getTotalQueueWait() {
+        return Duration.ofNanos(totalQueueWaitNanos);
+    }
+
+    @Override
+    public synchronized long getPermitsGranted() {
+        return permitsGranted;
+    }
+
+    /**
+     * @return Number of requests currently running.
+     */
+    public synchronized int getRunningRequests() {
+        return runningRequests;
+    }
+
+    private class TokenBucketPermit implements Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void release() {
+            // Releasing more than once must not free more than one slot
+            if (released.compareAndSet(false, true)) {
+                TokenBucketRateLimiter.this.release();
+            }
+        }
+
+    }
+
+}
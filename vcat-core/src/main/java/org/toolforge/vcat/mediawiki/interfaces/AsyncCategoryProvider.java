@@ -0,0 +1,131 @@
+package org.toolforge.vcat.mediawiki.interfaces;
+
+import org.toolforge.vcat.mediawiki.ApiException;
+import org.toolforge.vcat.mediawiki.ApiFutures;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A {@link CategoryProvider} which can also be used asynchronously. The returned futures are completed exceptionally
+ * with an {@link ApiException} if there are any errors. The synchronous methods wait for the asynchronous ones.
+ */
+public interface AsyncCategoryProvider extends CategoryProvider {
+
+    /**
+     * Get categories for the supplied collection of pages, asynchronously.
+     *
+     * @param wiki       Wiki to get categories from.
+     * @param fullTitles Full titles (including namespace) of pages.
+     * @param showhidden Whether categories marked as hidden in the wiki (using <code>__HIDDENCAT__</code>) should be included.
+     * @return Future for a map of strings with the full titles (with namespace) of categories the page with the
+     * supplied full title is in.
+     * @see CategoryProvider#requestCategories(Wiki, List, boolean)
+     */
+    CompletableFuture<Map<String, Collection<String>>> requestCategoriesAsync(Wiki wiki, List<String> fullTitles,
+                                                                              boolean showhidden);
+
+    /**
+     * Get category members for the supplied category, asynchronously.
+     *
+     * @param wiki      Wiki to get category members from.
+     * @param fullTitle Full page title of the category.
+     * @return Future for a list of titles of the pages belonging to the category.
+     * @see CategoryProvider#requestCategorymembers(Wiki, String)
+     */
+    CompletableFuture<List<String>> requestCategorymembersAsync(Wiki wiki, String fullTitle);
+
+    /**
+     * Get category members for the supplied category, asynchronously, but stop retrieving them once there are at least
+     * the supplied number of titles. By default, all members are always returned.
+     *
+     * @param wiki      Wiki to get category members from.
+     * @param fullTitle Full page title of the category.
+     * @param minTitles Number of titles after which retrieving more members may be stopped.
+     * @return Future for a list of titles of the pages belonging to the category, possibly not all of them.
+     * @see CategoryProvider#requestCategorymembers(Wiki, String, int)
+     */
+    default CompletableFuture<List<String>> requestCategorymembersAsync(Wiki wiki, String fullTitle, int minTitles) {
+        return requestCategorymembersAsync(wiki, fullTitle);
+    }
+
+    /**
+     * Get category members for the supplied collection of categories, asynchronously. MediaWiki can only list the
+     * members of one category per request, so by default the requests for all categories are started at once instead
+     * of one after the other.
+     *
+     * @param wiki       Wiki to get category members from.
+     * @param fullTitles Full page titles of the categories.
+     * @return Future for a map of the full page titles of the categories to lists of titles of the pages belonging to
+     * them, in the same order as the supplied titles.
+     * @see CategoryProvider#requestCategorymembers(Wiki, List)
+     */
+    default CompletableFuture<Map<String, List<String>>> requestCategorymembersAsync(Wiki wiki,
+                                                                                   List<String> fullTitles) {
+        return requestCategorymembersAsync(fullTitles, fullTitle -> requestCategorymembersAsync(wiki, fullTitle));
+    }
+
+    /**
+     * Get category members for the supplied collection of categories, asynchronously, but stop retrieving them for
+     * each category once there are at least the supplied number of titles.
+     *
+     * @param wiki       Wiki to get category members from.
+     * @param fullTitles Full page titles of the categories.
+     * @param minTitles  Number of titles after which retrieving more members of a category may be stopped.
+     * @return Future for a map of the full page titles of the categories to lists of titles of the pages belonging to
+     * them, possibly not all of them, in the same order as the supplied titles.
+     * @see CategoryProvider#requestCategorymembers(Wiki, List, int)
+     */
+    default CompletableFuture<Map<String, List<String>>> requestCategorymembersAsync(Wiki wiki,
+                                                                                   List<String> fullTitles,
+                                                                                   int minTitles) {
+        return requestCategorymembersAsync(fullTitles,
+                fullTitle -> requestCategorymembersAsync(wiki, fullTitle, minTitles));
+    }
+
+    private static CompletableFuture<Map<String, List<String>>> requestCategorymembersAsync(
+            List<String> fullTitles, Function<String, CompletableFuture<List<String>>> request) {
+        final List<CompletableFuture<List<String>>> futures = fullTitles.stream()
+                .map(request)
+                .toList();
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenApply(v -> {
+            final Map<String, List<String>> categorymembersMap = new LinkedHashMap<>();
+            for (int i = 0; i < fullTitles.size(); i++) {
+                categorymembersMap.put(fullTitles.get(i), futures.get(i).join());
+            }
+            return categorymembersMap;
+        });
+    }
+
+    @Override
+    default Map<String, Collection<String>> requestCategories(Wiki wiki, List<String> fullTitles,
+                                                              boolean showhidden) throws ApiException {
+        return ApiFutures.await(requestCategoriesAsync(wiki, fullTitles, showhidden));
+    }
+
+    @Override
+    default List<String> requestCategorymembers(Wiki wiki, String fullTitle) throws ApiException {
+        return ApiFutures.await(requestCategorymembersAsync(wiki, fullTitle));
+    }
+
+    @Override
+    default List<String> requestCategorymembers(Wiki wiki, String fullTitle, int minTitles) throws ApiException {
+        return ApiFutures.await(requestCategorymembersAsync(wiki, fullTitle, minTitles));
+    }
+
+    @Override
+    default Map<String, List<String>> requestCategorymembers(Wiki wiki, List<String> fullTitles) throws ApiException {
+        return ApiFutures.await(requestCategorymembersAsync(wiki, fullTitles));
+    }
+
+    @Override
+    default Map<String, List<String>> requestCategorymembers(Wiki wiki, List<String> fullTitles, int minTitles)
+            throws ApiException {
+        return ApiFutures.await(requestCategorymembersAsync(wiki, fullTitles, minTitles));
+    }
+
+}
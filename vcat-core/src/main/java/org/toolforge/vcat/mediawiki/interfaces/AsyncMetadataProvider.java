@@ -0,0 +1,22 @@
+package org.toolforge.vcat.mediawiki.interfaces;
+
+import org.toolforge.vcat.mediawiki.ApiException;
+import org.toolforge.vcat.mediawiki.ApiFutures;
+import org.toolforge.vcat.mediawiki.Metadata;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link MetadataProvider} which can also be used asynchronously. The returned future is completed exceptionally
+ * with an {@link ApiException} if there are any errors. The synchronous method waits for the asynchronous one.
+ */
+public interface AsyncMetadataProvider extends MetadataProvider {
+
+    CompletableFuture<Metadata> requestMetadataAsync(Wiki wiki);
+
+    @Override
+    default Metadata requestMetadata(Wiki wiki) throws ApiException {
+        return ApiFutures.await(requestMetadataAsync(wiki));
+    }
+
+}
@@ -4,6 +4,7 @@ import org.toolforge.vcat.mediawiki.ApiException;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,4 +33,60 @@ public interface CategoryProvider extends Serializable {
      */
     List<String> requestCategorymembers(Wiki wiki, String fullTitle) throws ApiException;
 
+    /**
+     * Get category members for the supplied category, but stop retrieving them once there are at least the supplied
+     * number of titles. This is useful if only more than a certain number of titles matters, as it saves requests for
+     * big categories.
+     * <p>
+     * The returned list may contain more than the supplied number of titles. If it has fewer, it contains all members.
+     * By default, all members are always returned.
+     *
+     * @param wiki      Wiki to get category members from.
+     * @param fullTitle Full page title of the category.
+     * @param minTitles Number of titles after which retrieving more members may be stopped.
+     * @return List of titles of the pages belonging to the category, possibly not all of them.
+     * @throws ApiException If there are any errors.
+     */
+    default List<String> requestCategorymembers(Wiki wiki, String fullTitle, int minTitles) throws ApiException {
+        return requestCategorymembers(wiki, fullTitle);
+    }
+
+    /**
+     * Get category members for the supplied collection of categories.
+     *
+     * @param wiki       Wiki to get category members from.
+     * @param fullTitles Full page titles of the categories.
+     * @return Map of the full page titles of the categories to lists of titles of the pages belonging to them, in the
+     * same order as the supplied titles.
+     * @throws ApiException If there are any errors.
+     */
+    default Map<String, List<String>> requestCategorymembers(Wiki wiki, List<String> fullTitles) throws ApiException {
+        final Map<String, List<String>> categorymembersMap = new LinkedHashMap<>();
+        for (String fullTitle : fullTitles) {
+            categorymembersMap.put(fullTitle, requestCategorymembers(wiki, fullTitle));
+        }
+        return categorymembersMap;
+    }
+
+    /**
+     * Get category members for the supplied collection of categories, but stop retrieving them for each category once
+     * there are at least the supplied number of titles.
+     *
+     * @param wiki       Wiki to get category members from.
+     * @param fullTitles Full page titles of the categories.
+     * @param minTitles  Number of titles after which retrieving more members of a category may be stopped.
+     * @return Map of the full page titles of the categories to lists of titles of the pages belonging to them, possibly
+     * not all of them, in the same order as the supplied titles.
+     * @throws ApiException If there are any errors.
+     * @see #requestCategorymembers(Wiki, String, int)
+     */
+    default Map<String, List<String>> requestCategorymembers(Wiki wiki, List<String> fullTitles, int minTitles)
+            throws ApiException {
+        final Map<String, List<String>> categorymembersMap = new LinkedHashMap<>();
+        for (String fullTitle : fullTitles) {
+            categorymembersMap.put(fullTitle, requestCategorymembers(wiki, fullTitle, minTitles));
+        }
+        return categorymembersMap;
+    }
+
 }
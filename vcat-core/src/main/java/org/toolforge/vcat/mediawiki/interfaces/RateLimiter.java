@@ -0,0 +1,50 @@
+package org.toolforge.vcat.mediawiki.interfaces;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Policy to limit the requests sent to one wiki. Callers waiting for their turn are queued without blocking a thread.
+ */
+public interface RateLimiter {
+
+    /**
+     * A permit to send one request, which must be released when the request has completed.
+     */
+    @FunctionalInterface
+    interface Permit {
+
+        void release();
+
+    }
+
+    /**
+     * Request a permit to send a request.
+     *
+     * @return Future which is completed with a permit as soon as the request may be sent.
+     */
+    CompletableFuture<Permit> acquire();
+
+    /**
+     * Do not hand out any permits for the specified time, e.g. because the wiki has asked to retry later.
+     *
+     * @param delay Time to wait before sending any more requests.
+     */
+    void backOff(Duration delay);
+
+    /**
+     * @return Number of callers currently waiting for a permit.
+     */
+    int getQueueLength();
+
+    /**
+     * @return Total time callers have spent waiting for permits.
+     */
+    Duration getTotalQueueWait();
+
+    /**
+     * @return Total number of permits handed out.
+     */
+    long getPermitsGranted();
+
+}
@@ -1,9 +1,11 @@
 package org.toolforge.vcat.renderer;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.toolforge.vcat.Messages;
 import org.toolforge.vcat.VCatException;
 import org.toolforge.vcat.cache.CacheException;
+import org.toolforge.vcat.cache.CachePurger;
 import org.toolforge.vcat.cache.file.GraphFileCache;
 import org.toolforge.vcat.cache.file.RenderedFileCache;
 import org.toolforge.vcat.graphviz.interfaces.Graphviz;
@@ -14,21 +16,47 @@ import org.toolforge.vcat.params.OutputFormat;
 import org.toolforge.vcat.params.VCatParams;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 
+/**
+ * Renderer caching Graphviz files and rendered files.
+ * <p>
+ * Expired files are purged in the background at an interval. Each run finds them in the in-memory index of each cache,
+ * so only the files to delete are accessed. With an interval of zero or less, everything is purged before each render
+ * instead.
+ * <p>
+ * Optionally, the disk space used by each cache is limited, and the coldest files are evicted once it is exceeded. The
+ * maximum age then applies to the time since files were last used.
+ */
 @Slf4j
-public class CachedVCatRenderer extends VCatRenderer {
+public class CachedVCatRenderer extends VCatRenderer implements AutoCloseable {
 
     @Serial
     private static final long serialVersionUID = -7813270634239995061L;
 
+    /**
+     * Default interval for purging in the background (seconds).
+     */
+    public static final int DEFAULT_PURGE_INTERVAL = 60;
+
+    @Getter
     private final GraphFileCache graphCache;
 
     private final int purge;
 
+    private final int purgeInterval;
+
+    /**
+     * Purger of the caches, also for metrics. Not serialized, and started again after deserialization.
+     */
+    @Getter
+    private transient CachePurger purger;
+
+    @Getter
     private final RenderedFileCache renderedCache;
 
     public CachedVCatRenderer(Graphviz graphviz, Path tempDir, CategoryProvider categoryProvider, Path cacheDir) throws VCatException {
@@ -36,6 +64,27 @@ public class CachedVCatRenderer extends VCatRenderer {
     }
 
     public CachedVCatRenderer(Graphviz graphviz, Path tempDir, CategoryProvider categoryProvider, Path cacheDir, int purge) throws VCatException {
+        this(graphviz, tempDir, categoryProvider, cacheDir, purge, DEFAULT_PURGE_INTERVAL);
+    }
+
+    public CachedVCatRenderer(Graphviz graphviz, Path tempDir, CategoryProvider categoryProvider, Path cacheDir,
+                              int purge, int purgeInterval) throws VCatException {
+        this(graphviz, tempDir, categoryProvider, cacheDir, purge, purgeInterval, 0);
+    }
+
+    /**
+     * @param graphviz         Graphviz renderer.
+     * @param tempDir          Directory for temporary files.
+     * @param categoryProvider Category provider.
+     * @param cacheDir         Directory for the caches.
+     * @param purge            Maximum age of cached files (seconds).
+     * @param purgeInterval    Interval for purging in the background (seconds), or zero or less to purge before each
+     *                         render.
+     * @param maxBytes         Maximum disk space used by each of the caches (bytes), or 0 if not limited.
+     * @throws VCatException If the caches could not be set up.
+     */
+    public CachedVCatRenderer(Graphviz graphviz, Path tempDir, CategoryProvider categoryProvider, Path cacheDir,
+                              int purge, int purgeInterval, long maxBytes) throws VCatException {
         super(graphviz, tempDir, categoryProvider);
         this.purge = purge;
 
@@ -44,91 +93,95 @@ public class CachedVCatRenderer extends VCatRenderer {
 
         try {
             Files.createDirectories(graphCacheDir);
-            graphCache = new GraphFileCache(graphCacheDir, purge);
+            graphCache = new GraphFileCache(graphCacheDir, purge, maxBytes);
             Files.createDirectories(renderedFileCacheDir);
-            renderedCache = new RenderedFileCache(renderedFileCacheDir, purge);
+            renderedCache = new RenderedFileCache(renderedFileCacheDir, purge, maxBytes);
         } catch (CacheException | IOException e) {
             throw new VCatException("Error while setting up caches", e);
         }
 
-        purge();
+        this.purgeInterval = purgeInterval;
+        initPurger();
+        if (!purger.isScheduled()) {
+            purge();
+        }
+    }
+
+    private void initPurger() {
+        purger = new CachePurger("vcat-renderer-purge", purgeInterval, this::purgeCaches);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initPurger();
     }
 
     @Override
     protected Path createGraphFile(AbstractAllParams all) throws VCatException {
         final VCatParams vCatParams = all.getVCat();
-        if (!graphCache.containsKey(vCatParams)) {
-            final Path otherFile = super.createGraphFile(all);
-            try {
-                graphCache.putFile(vCatParams, otherFile, true);
-            } catch (CacheException e) {
-                throw new VCatException(e);
-            }
+        final Path cachedFile = graphCache.getCacheFileIfPresent(vCatParams);
+        if (cachedFile != null) {
+            return cachedFile;
+        }
+        final Path otherFile = super.createGraphFile(all);
+        try {
+            return graphCache.putFile(vCatParams, otherFile, true);
+        } catch (CacheException e) {
+            throw new VCatException(e);
         }
-        return graphCache.getCacheFile(vCatParams);
     }
 
     @Override
     protected Path createImagemapHtmlFile(AbstractAllParams all, OutputFormat imageFormat)
             throws VCatException {
         final CombinedParams combinedParams = all.getCombined();
-        if (!renderedCache.containsKey(combinedParams)) {
-            final Path otherFile = super.createImagemapHtmlFile(all, imageFormat);
-            try {
-                renderedCache.putFile(combinedParams, otherFile, true);
-            } catch (CacheException e) {
-                throw new VCatException(e);
-            }
+        final Path cachedFile = renderedCache.getCacheFileIfPresent(combinedParams);
+        if (cachedFile != null) {
+            return cachedFile;
+        }
+        final Path otherFile = super.createImagemapHtmlFile(all, imageFormat);
+        try {
+            return renderedCache.putFile(combinedParams, otherFile, true);
+        } catch (CacheException e) {
+            throw new VCatException(e);
         }
-        return renderedCache.getCacheFile(combinedParams);
     }
 
     @Override
     protected Path createRenderedFileFromGraphFile(AbstractAllParams all, Path graphFile)
             throws VCatException {
         final CombinedParams combinedParams = all.getCombined();
-        if (!renderedCache.containsKey(combinedParams)) {
-            final Path otherFile = super.createRenderedFileFromGraphFile(all, graphFile);
-            try {
-                renderedCache.putFile(combinedParams, otherFile, true);
-            } catch (CacheException e) {
-                throw new VCatException(e);
-            }
+        final Path cachedFile = renderedCache.getCacheFileIfPresent(combinedParams);
+        if (cachedFile != null) {
+            return cachedFile;
+        }
+        final Path otherFile = super.createRenderedFileFromGraphFile(all, graphFile);
+        try {
+            return renderedCache.putFile(combinedParams, otherFile, true);
+        } catch (CacheException e) {
+            throw new VCatException(e);
         }
-        return renderedCache.getCacheFile(combinedParams);
     }
 
     private void purge() throws VCatException {
-        VCatException e = null;
         try {
-            graphCache.purge();
-        } catch (CacheException ee) {
-            e = new VCatException("Error purging caches", ee);
-        }
-        try {
-            renderedCache.purge();
-        } catch (CacheException ee) {
-            if (e == null) {
-                e = new VCatException("Error purging caches", ee);
-            } else {
-                e.addSuppressed(ee);
-            }
-        }
-        try {
-            purgeOutputDir();
-        } catch (CacheException ee) {
-            if (e == null) {
-                e = new VCatException("Error purging output directory", ee);
-            } else {
-                e.addSuppressed(ee);
-            }
-        }
-        if (e != null) {
-            throw e;
+            purger.purge();
+        } catch (CacheException e) {
+            throw new VCatException("Error purging caches", e);
         }
     }
 
-    private void purgeOutputDir() throws CacheException {
+    /**
+     * Purge the expired files of each cache and of the output directory.
+     *
+     * @return Number of files purged.
+     */
+    private int purgeCaches() throws CacheException {
+        return graphCache.purgeExpired() + renderedCache.purgeExpired() + purgeOutputDir();
+    }
+
+    private int purgeOutputDir() throws CacheException {
         final long lastModifiedThreshold = System.currentTimeMillis() - (1000L * purge);
         final List<Path> filesToPurge;
         try (var pathStream = Files.list(outputDir)) {
@@ -151,13 +204,24 @@ public class CachedVCatRenderer extends VCatRenderer {
         if (purgedFiles > 0) {
             LOG.info(Messages.getString("CachedVCatRenderer.Info.Purged"), purgedFiles);
         }
+        return purgedFiles;
     }
 
     @Override
     public RenderedFileInfo render(AbstractAllParams all) throws VCatException {
-        // Purge caches
-        purge();
+        if (!purger.isScheduled()) {
+            // Purge caches
+            purge();
+        }
         return super.render(all);
     }
 
+    /**
+     * Stop purging in the background.
+     */
+    @Override
+    public void close() {
+        purger.close();
+    }
+
 }
@@ -10,7 +10,7 @@ import java.io.Serial;
 import java.util.concurrent.Semaphore;
 
 @Slf4j
-public class QueuedVCatRenderer implements VCatRenderer {
+public class QueuedVCatRenderer implements VCatRenderer, AutoCloseable {
 
     @Serial
     private static final long serialVersionUID = 5848442969269137328L;
@@ -70,4 +70,14 @@ public class QueuedVCatRenderer implements VCatRenderer {
 
     }
 
+    /**
+     * Close the renderer used for actual rendering, if it needs to be closed.
+     */
+    @Override
+    public void close() throws Exception {
+        if (otherRenderer instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
 }
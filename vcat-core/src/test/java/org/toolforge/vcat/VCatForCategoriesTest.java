@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import org.toolforge.vcat.junit.CanGenerateExpected;
 import org.toolforge.vcat.junit.TestMode;
 import org.toolforge.vcat.junit.TestUtils;
+import org.toolforge.vcat.test.TestCategoryCache;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -15,6 +16,9 @@ import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class VCatForCategoriesTest implements CanGenerateExpected {
 
     private Path tempDirectory;
@@ -86,4 +90,26 @@ public class VCatForCategoriesTest implements CanGenerateExpected {
         )));
     }
 
+    @Test
+    void renderToFileWithCategoryCache() throws Exception {
+        final var categoryCache = new TestCategoryCache();
+        final var requestParams = TestUtils.requestParamMap(Map.of(
+                "wiki", List.of("de.wikipedia.org"),
+                "category", List.of("Deutschland"),
+                "format", List.of("gv"),
+                "links", List.of("wiki"),
+                "depth", List.of("4")
+        ));
+
+        TestUtils.genericRenderToFileTest(TestMode.Test, getClass(), "renderToFileDepth", requestParams, tempDirectory,
+                categoryCache);
+        final long misses = categoryCache.getMisses();
+        assertTrue(categoryCache.size() > 0);
+
+        // The second render is answered from the cache alone
+        TestUtils.genericRenderToFileTest(TestMode.Test, getClass(), "renderToFileDepth", requestParams, tempDirectory,
+                categoryCache);
+        assertEquals(misses, categoryCache.getMisses());
+    }
+
 }
\ No newline at end of file
@@ -6,17 +6,90 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.toolforge.vcat.junit.CanGenerateExpected;
+import org.toolforge.vcat.junit.TestApiClient;
 import org.toolforge.vcat.junit.TestMode;
 import org.toolforge.vcat.junit.TestUtils;
+import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+import org.toolforge.vcat.params.AllParams;
+import org.toolforge.vcat.test.TestCategoryCache;
 
 import java.io.IOException;
+import java.io.Serial;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class VCatForSubcategoriesTest implements CanGenerateExpected {
 
+    /**
+     * Category provider counting the titles it returns. The root category has three subcategories, which have three
+     * subcategories each, which have 1000 subcategories each. The last subcategory of "C1/1" is "C2".
+     */
+    private static class CountingCategoryProvider implements CategoryProvider {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private static final String PREFIX = "Kategorie:";
+
+        private final Map<String, List<String>> categorymembersMap = new LinkedHashMap<>();
+
+        private int returnedTitles;
+
+        private final List<String> categoriesRequested = new ArrayList<>();
+
+        CountingCategoryProvider() {
+            categorymembersMap.put(PREFIX + "Root", titles("C", 3));
+            for (int i = 1; i <= 3; i++) {
+                categorymembersMap.put(PREFIX + "C" + i, titles("C" + i + '/', 3));
+                for (int j = 1; j <= 3; j++) {
+                    categorymembersMap.put(PREFIX + "C" + i + '/' + j, titles("C" + i + '/' + j + '/', 1000));
+                }
+            }
+            final var lastCategorymembers = new ArrayList<>(categorymembersMap.get(PREFIX + "C1/1"));
+            lastCategorymembers.set(999, PREFIX + "C2");
+            categorymembersMap.put(PREFIX + "C1/1", lastCategorymembers);
+        }
+
+        private static List<String> titles(String titlePrefix, int count) {
+            return IntStream.rangeClosed(1, count).mapToObj(i -> PREFIX + titlePrefix + i).toList();
+        }
+
+        @Override
+        public Map<String, Collection<String>> requestCategories(Wiki wiki, List<String> fullTitles,
+                                                                 boolean showhidden) {
+            final Map<String, Collection<String>> categoryMap = new HashMap<>();
+            categoriesRequested.addAll(fullTitles);
+            for (String fullTitle : fullTitles) {
+                categorymembersMap.forEach((categoryFullTitle, categoryFullTitles) -> {
+                    if (categoryFullTitles.contains(fullTitle)) {
+                        categoryMap.computeIfAbsent(fullTitle, k -> new ArrayList<>()).add(categoryFullTitle);
+                        returnedTitles++;
+                    }
+                });
+            }
+            return categoryMap;
+        }
+
+        @Override
+        public List<String> requestCategorymembers(Wiki wiki, String fullTitle) {
+            return requestCategorymembers(wiki, fullTitle, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public List<String> requestCategorymembers(Wiki wiki, String fullTitle, int minTitles) {
+            final List<String> categoryFullTitles = categorymembersMap.getOrDefault(fullTitle, List.of());
+            final List<String> result = categoryFullTitles.subList(0, Math.min(categoryFullTitles.size(), minTitles));
+            returnedTitles += result.size();
+            return result;
+        }
+
+    }
+
     private Path tempDirectory;
 
     @BeforeEach
@@ -88,4 +161,53 @@ public class VCatForSubcategoriesTest implements CanGenerateExpected {
         )));
     }
 
-}
\ No newline at end of file
+    @Test
+    void renderToFileWithCategoryCache() throws Exception {
+        final var categoryCache = new TestCategoryCache();
+        final var requestParams = TestUtils.requestParamMap(Map.of(
+                "wiki", List.of("de.wikipedia.org"),
+                "category", List.of("Overath"),
+                "format", List.of("gv"),
+                "links", List.of("wiki"),
+                "depth", List.of("2"),
+                "rel", List.of("subcategory")
+        ));
+
+        TestUtils.genericRenderToFileTest(TestMode.Test, getClass(), "renderToFileDepth", requestParams, tempDirectory,
+                categoryCache);
+        final long misses = categoryCache.getMisses();
+        assertTrue(categoryCache.size() > 0);
+
+        // The second render is answered from the cache alone
+        TestUtils.genericRenderToFileTest(TestMode.Test, getClass(), "renderToFileDepth", requestParams, tempDirectory,
+                categoryCache);
+        assertEquals(misses, categoryCache.getMisses());
+    }
+
+    @Test
+    void renderToFileBeyondDepthWithinLimit() throws Exception {
+        final var categoryProvider = new CountingCategoryProvider();
+        final var params = new AllParams(TestUtils.requestParamMap(Map.of(
+                "wiki", List.of("de.wikipedia.org"),
+                "category", List.of("Root"),
+                "format", List.of("gv"),
+                "limit", List.of("25"),
+                "rel", List.of("subcategory")
+        )), "", new TestApiClient());
+        final Path outputFile = tempDirectory.resolve("renderToFileBeyondDepthWithinLimit.gv");
+
+        new VCatForSubcategories(params, categoryProvider).renderToFile(outputFile);
+
+        // The level beyond the limit is not retrieved in full, not even for the graph with the lower depth
+        assertTrue(categoryProvider.returnedTitles < 1000);
+        final String graphviz = Files.readString(outputFile);
+        assertTrue(graphviz.contains("\"C1/1\" -> \"C2\""));
+        assertTrue(graphviz.contains("\"C1/2\" -> \"C1/2_more\""));
+        assertFalse(graphviz.contains("C1/2/1"));
+        // Only nodes standing for categories are looked up
+        assertFalse(categoryProvider.categoriesRequested.isEmpty());
+        assertTrue(categoryProvider.categoriesRequested.stream()
+                .allMatch(categoryProvider.categorymembersMap::containsKey));
+    }
+
+}
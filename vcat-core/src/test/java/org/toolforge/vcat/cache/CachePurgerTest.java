@@ -0,0 +1,74 @@
+package org.toolforge.vcat.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachePurgerTest {
+
+    @Test
+    void testPurge() throws CacheException {
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        try (CachePurger underTest = new CachePurger("test", 0, () -> {
+            runs.incrementAndGet();
+            return 3;
+        })) {
+
+            assertFalse(underTest.isScheduled());
+            assertEquals(0, runs.get());
+
+            underTest.purge();
+            underTest.purge();
+
+            assertEquals(2, runs.get());
+            assertEquals(2, underTest.getCount());
+            assertEquals(6, underTest.getRemoved());
+            assertTrue(underTest.getTotalTime(TimeUnit.NANOSECONDS) > 0);
+
+        }
+
+    }
+
+    @Test
+    void testPurgeException() {
+
+        try (CachePurger underTest = new CachePurger("test", 0, () -> {
+            throw new CacheException("test");
+        })) {
+
+            assertThrows(CacheException.class, underTest::purge);
+            assertEquals(1, underTest.getCount());
+            assertEquals(0, underTest.getRemoved());
+
+        }
+
+    }
+
+    @Test
+    void testScheduled() throws InterruptedException {
+
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        try (CachePurger underTest = new CachePurger("test", 1, () -> {
+            latch.countDown();
+            if (latch.getCount() == 1) {
+                // Later runs still take place
+                throw new CacheException("test");
+            }
+            return 1;
+        })) {
+
+            assertTrue(underTest.isScheduled());
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        }
+
+    }
+
+}
@@ -28,6 +28,14 @@ class AbstractFileCacheTest {
             super(cacheDirectory, "AbstractFileCacheTest-FileCacheImpl", "", maxAgeInSeconds);
         }
 
+        protected FileCacheImpl(Path cacheDirectory, int maxAgeInSeconds, boolean sharded) throws CacheException {
+            super(cacheDirectory, "AbstractFileCacheTest-FileCacheImpl", "", maxAgeInSeconds, sharded);
+        }
+
+        protected FileCacheImpl(Path cacheDirectory, int maxAgeInSeconds, long maxBytes) throws CacheException {
+            super(cacheDirectory, "AbstractFileCacheTest-FileCacheImpl", "", maxAgeInSeconds, true, maxBytes);
+        }
+
     }
 
     private Path tempDirectory;
@@ -103,6 +111,104 @@ class AbstractFileCacheTest {
 
     }
 
+    @Test
+    void testMaxBytes() throws CacheException, IOException {
+
+        byte[] testBytes = new byte[100];
+        underTest = new FileCacheImpl(tempDirectory, 10, 1000);
+
+        // Used twice, so kept longer than files used once
+        for (int i = 0; i < 3; i++) {
+            underTest.put("hot" + i, testBytes);
+            assertTrue(underTest.containsKey("hot" + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            underTest.put("cold" + i, testBytes);
+            assertTrue(underTest.getUsedBytes() <= 1000);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(underTest.containsKey("hot" + i));
+        }
+        assertFalse(underTest.containsKey("cold0"));
+        assertTrue(underTest.containsKey("cold9"));
+        assertTrue(underTest.getEvictedFiles() > 0);
+
+        // Files are found again at startup, and evicted if the limit is lower
+        underTest = new FileCacheImpl(tempDirectory, 10, 500);
+        assertTrue(underTest.getUsedBytes() <= 500);
+        try (var files = Files.find(tempDirectory, 2, (path, attributes) -> attributes.isRegularFile())) {
+            assertEquals(underTest.getUsedBytes(), files.count() * testBytes.length);
+        }
+
+    }
+
+    @Test
+    void testIndex() throws CacheException, IOException {
+
+        byte[] testBytes = "test".getBytes(StandardCharsets.US_ASCII);
+
+        underTest.put("test1", testBytes);
+        underTest.put("test2", testBytes);
+        final Path temporaryFile = underTest.getCacheFile("test3").resolveSibling(
+                underTest.getCacheFile("test3").getFileName() + ".123" + AbstractFileCache.TEMPORARY_SUFFIX);
+        Files.write(temporaryFile, testBytes);
+
+        // Files are found at startup, and left over temporary files deleted
+        underTest = new FileCacheImpl(tempDirectory, 10);
+        assertEquals(2, underTest.size());
+        assertEquals(2L * testBytes.length, underTest.getUsedBytes());
+        assertFalse(Files.exists(temporaryFile));
+        assertEquals(underTest.getCacheFile("test1"), underTest.getCacheFileIfPresent("test1"));
+        assertNull(underTest.getCacheFileIfPresent("test3"));
+
+        // Lookups use the index only, so a file removed by something else is found until it is read
+        Files.delete(underTest.getCacheFile("test2"));
+        assertTrue(underTest.containsKey("test2"));
+        assertNull(underTest.get("test2"));
+        assertFalse(underTest.containsKey("test2"));
+        assertEquals(testBytes.length, underTest.getUsedBytes());
+
+    }
+
+    @Test
+    void testPurgeExpired() throws CacheException, InterruptedException {
+
+        byte[] testBytes = "test".getBytes(StandardCharsets.US_ASCII);
+        underTest = new FileCacheImpl(tempDirectory, 1, true);
+
+        for (int i = 0; i < 10; i++) {
+            underTest.put("test" + i, testBytes);
+        }
+        TimeUnit.MILLISECONDS.sleep(1500);
+
+        assertEquals(10, underTest.purgeExpired());
+        for (int i = 0; i < 10; i++) {
+            assertFalse(underTest.containsKey("test" + i));
+        }
+
+    }
+
+    @Test
+    void testPurgeExpiredDeleteFailed() throws CacheException, IOException, InterruptedException {
+
+        byte[] testBytes = "test".getBytes(StandardCharsets.US_ASCII);
+        underTest.maxAgeInSeconds = 1;
+
+        underTest.put("test", testBytes);
+        // A non-empty directory in place of the file cannot be deleted
+        final Path cacheFile = underTest.getCacheFile("test");
+        Files.delete(cacheFile);
+        Files.createDirectories(cacheFile.resolve("other"));
+        TimeUnit.MILLISECONDS.sleep(1500);
+
+        // The entry is kept, so the disk space it uses is still counted
+        assertEquals(0, underTest.purgeExpired());
+        assertTrue(underTest.containsKey("test"));
+        assertEquals(testBytes.length, underTest.getUsedBytes());
+
+    }
+
     @Test
     void testContainsKey() throws CacheException {
 
@@ -114,6 +220,24 @@ class AbstractFileCacheTest {
 
     }
 
+    @Test
+    void testSharded() throws CacheException {
+
+        byte[] testBytes = "test".getBytes(StandardCharsets.US_ASCII);
+        underTest = new FileCacheImpl(tempDirectory, 10, true);
+
+        underTest.put("test", testBytes);
+        final Path cacheFile = underTest.getCacheFile("test");
+
+        assertEquals(tempDirectory, cacheFile.getParent().getParent());
+        assertTrue(Files.exists(cacheFile));
+        assertArrayEquals(testBytes, underTest.get("test"));
+
+        underTest.clear();
+        assertFalse(Files.exists(cacheFile));
+
+    }
+
     @Test
     void testGetAsInputStream() throws CacheException, IOException {
 
@@ -137,6 +261,27 @@ class AbstractFileCacheTest {
 
     }
 
+    @Test
+    void testGetAsInputStreamWhileReplaced() throws CacheException, IOException {
+
+        byte[] oldBytes = "old".getBytes(StandardCharsets.US_ASCII);
+        byte[] newBytes = "new".getBytes(StandardCharsets.US_ASCII);
+
+        underTest.put("test", oldBytes);
+
+        try (InputStream input = underTest.getAsInputStream("test")) {
+            underTest.put("test", newBytes);
+            assertArrayEquals(oldBytes, input.readAllBytes());
+        }
+        assertArrayEquals(newBytes, underTest.get("test"));
+
+        // No temporary files are left over
+        try (var files = Files.list(tempDirectory)) {
+            assertEquals(1, files.count());
+        }
+
+    }
+
     @Test
     void testPutAndGet() throws CacheException {
 
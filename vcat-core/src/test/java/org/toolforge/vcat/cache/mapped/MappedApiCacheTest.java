@@ -0,0 +1,153 @@
+package org.toolforge.vcat.cache.mapped;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import org.apache.commons.io.file.PathUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.cache.CacheException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedApiCacheTest {
+
+    private Path tempDirectory;
+
+    /**
+     * Cache with a clock which only moves when told to.
+     */
+    private static class TestMappedApiCache extends MappedApiCache {
+
+        private long millis = 1_000_000;
+
+        private TestMappedApiCache(Path directory, int segmentCount, int segmentSize) throws CacheException {
+            super(directory, segmentCount, segmentSize, 10);
+        }
+
+        private void advance(Duration duration) {
+            millis += duration.toMillis();
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return millis;
+        }
+
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDirectory = Files.createTempDirectory("MappedApiCacheTest");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        PathUtils.deleteDirectory(tempDirectory);
+    }
+
+    private static JsonObject jsonObject(int value) {
+        return Json.createObjectBuilder().add("test", value).add("text", "äöü").build();
+    }
+
+    @Test
+    void putAndGetJSONObject() throws CacheException, IOException {
+        try (var underTest = new MappedApiCache(tempDirectory, 2, 4096, 10)) {
+            underTest.put("a", jsonObject(1));
+            underTest.put("b", jsonObject(2));
+            underTest.put("a", jsonObject(3));
+
+            assertEquals(jsonObject(3), underTest.getJSONObject("a"));
+            assertEquals(jsonObject(2), underTest.getJSONObject("b"));
+            assertNull(underTest.getJSONObject("c"));
+            assertTrue(underTest.containsKey("b"));
+            assertFalse(underTest.containsKey("c"));
+            assertEquals(2, underTest.size());
+        }
+        try (var files = Files.list(tempDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void putManyGrowsIndex() throws CacheException {
+        try (var underTest = new MappedApiCache(tempDirectory, 4, 16 * 1024 * 1024, 10)) {
+            for (int i = 0; i < 100_000; i++) {
+                underTest.put("key" + i, jsonObject(i));
+            }
+
+            assertEquals(100_000, underTest.size());
+            assertEquals(jsonObject(0), underTest.getJSONObject("key0"));
+            assertEquals(jsonObject(99_999), underTest.getJSONObject("key99999"));
+        }
+    }
+
+    @Test
+    void putReclaimsOldestSegment() throws CacheException {
+        try (var underTest = new MappedApiCache(tempDirectory, 3, 1024, 10)) {
+            int i = 0;
+            while (underTest.getReclaimedSegments() == 0) {
+                underTest.put("key" + i, jsonObject(i));
+                i++;
+            }
+
+            // The first segment has been written again
+            assertNull(underTest.getJSONObject("key0"));
+            assertEquals(jsonObject(i - 1), underTest.getJSONObject("key" + (i - 1)));
+            assertTrue(underTest.getUsedBytes() <= 3 * 1024);
+        }
+    }
+
+    @Test
+    void putTooLarge() throws CacheException {
+        try (var underTest = new MappedApiCache(tempDirectory, 2, 64, 10)) {
+            underTest.put("a", Json.createObjectBuilder().add("test", "x".repeat(100)).build());
+
+            assertNull(underTest.getJSONObject("a"));
+            assertEquals(0, underTest.getUsedBytes());
+        }
+    }
+
+    @Test
+    void purge() throws CacheException {
+        try (var underTest = new TestMappedApiCache(tempDirectory, 2, 1024)) {
+            underTest.put("a", jsonObject(1));
+            underTest.advance(Duration.ofSeconds(5));
+            underTest.put("b", jsonObject(2));
+            underTest.advance(Duration.ofSeconds(5));
+
+            assertNull(underTest.getJSONObject("a"));
+            assertEquals(jsonObject(2), underTest.getJSONObject("b"));
+            // The segment is only reclaimed once all its entries have expired
+            underTest.purge();
+            assertEquals(2, underTest.size());
+            underTest.advance(Duration.ofSeconds(5));
+            underTest.getPurger().purge();
+            assertEquals(0, underTest.size());
+            assertEquals(0, underTest.getUsedBytes());
+            assertEquals(2, underTest.getPurger().getRemoved());
+        }
+    }
+
+    @Test
+    void deleteStaleSegmentFiles() throws CacheException, IOException {
+        final Path staleFile = Files.createTempFile(tempDirectory, "ApiSegment-", ".bin");
+        final Path otherFile = Files.createTempFile(tempDirectory, "Other-", ".bin");
+
+        try (var underTest = new MappedApiCache(tempDirectory, 2, 1024, 10)) {
+            assertFalse(Files.exists(staleFile));
+            assertTrue(Files.exists(otherFile));
+            try (var files = Files.list(tempDirectory)) {
+                assertEquals(3, files.count());
+            }
+            underTest.put("a", jsonObject(1));
+            assertEquals(jsonObject(1), underTest.getJSONObject("a"));
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.toolforge.vcat.cache.store;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import org.apache.commons.io.file.PathUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.cache.CacheException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiStoreCacheTest {
+
+    private Path tempDirectory;
+
+    private ApiStoreCache underTest;
+
+    @BeforeEach
+    void setUp() throws IOException, CacheException {
+        tempDirectory = Files.createTempDirectory("ApiStoreCacheTest");
+        underTest = new ApiStoreCache(tempDirectory.resolve("api"), 10);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        underTest.close();
+        PathUtils.deleteDirectory(tempDirectory);
+    }
+
+    @Test
+    void testPutAndGetJSONObject() throws CacheException, IOException {
+
+        final JsonObject testObject = Json.createObjectBuilder().add("test", "ä").build();
+
+        underTest.put("test", testObject);
+        assertTrue(underTest.containsKey("test"));
+        assertEquals(testObject, underTest.getJSONObject("test"));
+        assertNull(underTest.getJSONObject("other"));
+
+        underTest.close();
+        underTest = new ApiStoreCache(tempDirectory.resolve("api"), 10);
+        assertEquals(testObject, underTest.getJSONObject("test"));
+
+    }
+
+}
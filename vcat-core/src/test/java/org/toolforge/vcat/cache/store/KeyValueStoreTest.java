@@ -0,0 +1,200 @@
+package org.toolforge.vcat.cache.store;
+
+import org.apache.commons.io.file.PathUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.cache.CacheException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyValueStoreTest {
+
+    private Path tempDirectory;
+
+    private Path file;
+
+    /**
+     * Store with a clock which only moves when told to.
+     */
+    private static class TestKeyValueStore extends KeyValueStore {
+
+        private long millis = 1_000_000;
+
+        private TestKeyValueStore(Path file) throws CacheException {
+            super(file);
+        }
+
+        private void advance(Duration duration) {
+            millis += duration.toMillis();
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return millis;
+        }
+
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDirectory = Files.createTempDirectory("KeyValueStoreTest");
+        file = tempDirectory.resolve("store");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        PathUtils.deleteDirectory(tempDirectory);
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void putAndGet() throws CacheException, IOException {
+        try (var underTest = new KeyValueStore(file)) {
+            underTest.put("a", bytes("1"), null);
+            underTest.put("b", bytes("2"), null);
+            underTest.put("a", bytes("3"), null);
+            underTest.put("c", new byte[0], null);
+
+            assertArrayEquals(bytes("3"), underTest.get("a"));
+            assertArrayEquals(bytes("2"), underTest.get("b"));
+            assertArrayEquals(new byte[0], underTest.get("c"));
+            assertNull(underTest.get("d"));
+            underTest.flush();
+            assertArrayEquals(bytes("3"), underTest.get("a"));
+            assertTrue(underTest.containsKey("c"));
+
+            underTest.remove("b");
+            assertNull(underTest.get("b"));
+            assertFalse(underTest.containsKey("b"));
+            assertEquals(2, underTest.size());
+        }
+    }
+
+    @Test
+    void reopen() throws CacheException, IOException {
+        try (var underTest = new KeyValueStore(file)) {
+            underTest.put("a", bytes("1"), null);
+            underTest.put("b", bytes("2"), null);
+            underTest.flush();
+            underTest.remove("b");
+            underTest.put("c", bytes("3"), null);
+        }
+
+        try (var underTest = new KeyValueStore(file)) {
+            assertArrayEquals(bytes("1"), underTest.get("a"));
+            assertNull(underTest.get("b"));
+            assertArrayEquals(bytes("3"), underTest.get("c"));
+            assertEquals(2, underTest.size());
+        }
+    }
+
+    @Test
+    void reopenTruncated() throws CacheException, IOException {
+        try (var underTest = new KeyValueStore(file)) {
+            underTest.put("a", bytes("1"), null);
+            underTest.flush();
+            underTest.put("b", bytes("2"), null);
+        }
+        // Cut the last record short, as a crash while writing would
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        try (var underTest = new KeyValueStore(file)) {
+            assertArrayEquals(bytes("1"), underTest.get("a"));
+            assertNull(underTest.get("b"));
+            underTest.put("b", bytes("4"), null);
+        }
+        try (var underTest = new KeyValueStore(file)) {
+            assertArrayEquals(bytes("4"), underTest.get("b"));
+        }
+    }
+
+    @Test
+    void openInvalidFile() throws IOException {
+        Files.writeString(file, "no store");
+        assertThrows(CacheException.class, () -> new KeyValueStore(file));
+    }
+
+    @Test
+    void openLocked() throws CacheException, IOException {
+        try (var ignored = new KeyValueStore(file)) {
+            assertThrows(CacheException.class, () -> new KeyValueStore(file));
+        }
+    }
+
+    @Test
+    void expire() throws CacheException, IOException {
+        try (var underTest = new TestKeyValueStore(file)) {
+            underTest.put("a", bytes("1"), Duration.ofSeconds(10));
+            underTest.put("b", bytes("2"), Duration.ofSeconds(20));
+            underTest.put("c", bytes("3"), null);
+            underTest.advance(Duration.ofSeconds(10));
+
+            assertNull(underTest.get("a"));
+            assertFalse(underTest.containsKey("a"));
+            assertArrayEquals(bytes("2"), underTest.get("b"));
+
+            underTest.purge();
+            assertEquals(2, underTest.size());
+            underTest.advance(Duration.ofDays(1000));
+            assertNull(underTest.get("b"));
+            assertArrayEquals(bytes("3"), underTest.get("c"));
+        }
+    }
+
+    @Test
+    void compact() throws CacheException, IOException {
+        final byte[] value = new byte[10_000];
+        try (var underTest = new KeyValueStore(file)) {
+            for (int i = 0; i < 200; i++) {
+                underTest.put("a", value, null);
+                underTest.put("b" + i, bytes(Integer.toString(i)), null);
+                underTest.flush();
+            }
+            // Compacted once the old values took up more than the current ones
+            assertTrue(underTest.getFileSize() < 150 * value.length);
+            assertEquals(underTest.getFileSize(), Files.size(file));
+
+            underTest.compact();
+            assertTrue(underTest.getFileSize() < 2 * value.length);
+            assertArrayEquals(value, underTest.get("a"));
+            assertArrayEquals(bytes("42"), underTest.get("b42"));
+        }
+
+        try (var underTest = new KeyValueStore(file)) {
+            assertEquals(201, underTest.size());
+            assertArrayEquals(bytes("199"), underTest.get("b199"));
+        }
+    }
+
+    @Test
+    void clear() throws CacheException, IOException {
+        try (var underTest = new KeyValueStore(file)) {
+            underTest.put("a", bytes("1"), null);
+            underTest.flush();
+            underTest.put("b", bytes("2"), null);
+            underTest.clear();
+
+            assertNull(underTest.get("a"));
+            assertNull(underTest.get("b"));
+            assertEquals(0, underTest.size());
+        }
+        try (var underTest = new KeyValueStore(file)) {
+            assertEquals(0, underTest.size());
+        }
+    }
+
+}
@@ -7,9 +7,11 @@ import org.toolforge.vcat.cache.CacheException;
 import org.toolforge.vcat.cache.file.ApiFileCache;
 import org.toolforge.vcat.mediawiki.ApiException;
 import org.toolforge.vcat.mediawiki.CachedApiClient;
+import org.toolforge.vcat.mediawiki.TitleListResult;
 
 import java.io.Serial;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class TestApiClient extends CachedApiClient {
 
@@ -25,11 +27,21 @@ public class TestApiClient extends CachedApiClient {
     }
 
     @Override
-    protected JsonObject uncachedRequest(String apiUrl, Map<String, String> params) throws ApiException {
+    protected CompletableFuture<JsonObject> uncachedRequestAsync(String apiUrl, Map<String, String> params) {
         if (callRealApi) {
-            return super.uncachedRequest(apiUrl, params);
+            return super.uncachedRequestAsync(apiUrl, params);
         } else {
-            throw new ApiException("TestApiClient will not send real HTTP requests");
+            return CompletableFuture.failedFuture(new ApiException("TestApiClient will not send real HTTP requests"));
+        }
+    }
+
+    @Override
+    protected CompletableFuture<TitleListResult> uncachedRequestTitlesAsync(String apiUrl, Map<String, String> params,
+                                                                            String name) {
+        if (callRealApi) {
+            return super.uncachedRequestTitlesAsync(apiUrl, params, name);
+        } else {
+            return CompletableFuture.failedFuture(new ApiException("TestApiClient will not send real HTTP requests"));
         }
     }
 
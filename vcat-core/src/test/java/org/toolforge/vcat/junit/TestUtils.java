@@ -4,6 +4,9 @@ import jakarta.ws.rs.core.MultivaluedHashMap;
 import jakarta.ws.rs.core.MultivaluedMap;
 import lombok.experimental.UtilityClass;
 import org.apache.commons.io.FileUtils;
+import org.jspecify.annotations.Nullable;
+import org.toolforge.vcat.cache.interfaces.CategoryCache;
+import org.toolforge.vcat.mediawiki.CachedCategoryProvider;
 import org.toolforge.vcat.params.AllParams;
 import org.toolforge.vcat.params.VCatFactory;
 
@@ -53,6 +56,12 @@ public class TestUtils {
     public static void genericRenderToFileTest(
             TestMode mode, Class<?> testClass, String testName, MultivaluedMap<String, String> requestParams,
             Path tempDirectory) throws Exception {
+        genericRenderToFileTest(mode, testClass, testName, requestParams, tempDirectory, null);
+    }
+
+    public static void genericRenderToFileTest(
+            TestMode mode, Class<?> testClass, String testName, MultivaluedMap<String, String> requestParams,
+            Path tempDirectory, @Nullable CategoryCache categoryCache) throws Exception {
 
         final var testApiClient = new TestApiClient();
 
@@ -66,7 +75,8 @@ public class TestUtils {
 
         AllParams params = new AllParams(requestParams, "", testApiClient);
 
-        final var underTest = new VCatFactory(testApiClient).createInstance(params);
+        final var underTest = new VCatFactory(categoryCache == null ? testApiClient
+                : new CachedCategoryProvider(testApiClient, categoryCache)).createInstance(params);
 
         underTest.renderToFile(actualFile);
 
@@ -0,0 +1,217 @@
+package org.toolforge.vcat.mediawiki;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serial;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiClientTest {
+
+    private static final String BODY = "{\"query\":{\"categorymembers\":[{\"title\":\"Category:Test\"}]}}";
+
+    private static final List<String> TITLES = IntStream.range(0, 600)
+            .mapToObj(i -> "Category:" + i)
+            .toList();
+
+    /**
+     * Client which does not send any HTTP requests, but records the number of titles in each request.
+     */
+    private static class UnderTest extends ApiClient {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> rights;
+
+        private final List<Integer> titlesCounts = new ArrayList<>();
+
+        private final List<Map<String, String>> categoriesParams = new ArrayList<>();
+
+        private int userinfoRequests;
+
+        private int categorymembersRequests;
+
+        UnderTest(ApiClientSettings settings, String... rights) {
+            super(settings);
+            this.rights = List.of(rights);
+        }
+
+        @Override
+        protected CompletableFuture<JsonObject> requestAsync(String apiUrl, Map<String, String> params) {
+            userinfoRequests++;
+            return CompletableFuture.completedFuture(Json.createObjectBuilder()
+                    .add("query", Json.createObjectBuilder()
+                            .add("userinfo", Json.createObjectBuilder()
+                                    .add("rights", Json.createArrayBuilder(rights))))
+                    .build());
+        }
+
+        @Override
+        protected CompletableFuture<TitleListResult> requestTitlesAsync(String apiUrl, Map<String, String> params,
+                                                                        String name) {
+            if (params.containsKey("cmtitle")) {
+                // Five pages with two category members each
+                final int page = Integer.parseInt(params.getOrDefault("cmcontinue", "0"));
+                categorymembersRequests++;
+                return CompletableFuture.completedFuture(new TitleListResult(Map.of(),
+                        List.of("Category:" + page + "a", "Category:" + page + "b"),
+                        page < 4 ? Map.of("cmcontinue", Integer.toString(page + 1)) : null));
+            }
+            final String[] titles = params.get("titles").split("\\|");
+            titlesCounts.add(titles.length);
+            categoriesParams.add(params);
+            // The first page is in a visible and a hidden category, the second one only in the hidden category
+            return CompletableFuture.completedFuture(new TitleListResult(
+                    Map.of(titles[0], List.of("Category:Visible", "Category:Hidden"),
+                            titles[1], List.of("Category:Hidden")),
+                    List.of(), Set.of("Category:Hidden"), null));
+        }
+
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        try (inputStream) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void decodeBodyIdentity() throws IOException {
+        final byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+        assertEquals(BODY, read(ApiClient.decodeBody(body, null)));
+        assertEquals(BODY, read(ApiClient.decodeBody(body, "identity")));
+    }
+
+    @Test
+    void decodeBodyGzip() throws IOException {
+        final var outputStream = new ByteArrayOutputStream();
+        try (var gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(BODY, read(ApiClient.decodeBody(outputStream.toByteArray(), "gzip")));
+    }
+
+    @Test
+    void decodeBodyDeflate() throws IOException {
+        final var outputStream = new ByteArrayOutputStream();
+        try (var deflaterOutputStream = new DeflaterOutputStream(outputStream)) {
+            deflaterOutputStream.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(BODY, read(ApiClient.decodeBody(outputStream.toByteArray(), "deflate")));
+    }
+
+    @Test
+    void decodeBodyRawDeflate() throws IOException {
+        final var outputStream = new ByteArrayOutputStream();
+        try (var deflaterOutputStream = new DeflaterOutputStream(outputStream, new Deflater(Deflater.DEFAULT_COMPRESSION, true))) {
+            deflaterOutputStream.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(BODY, read(ApiClient.decodeBody(outputStream.toByteArray(), "Deflate")));
+    }
+
+    @Test
+    void decodeBodyInvalidGzip() {
+        final byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> ApiClient.decodeBody(body, "gzip"));
+    }
+
+    @Test
+    void requestCategoriesDefaultTitlesMax() throws Exception {
+        final var underTest = new UnderTest(new ApiClientSettings(), "apihighlimits");
+        underTest.requestCategories(new SimpleWikimediaWiki("test.wikipedia.org"), TITLES, false);
+        assertEquals(12, underTest.titlesCounts.size());
+        assertEquals(50, underTest.titlesCounts.getFirst());
+        assertEquals(0, underTest.userinfoRequests);
+    }
+
+    @Test
+    void requestCategoriesDetectHighLimits() throws Exception {
+        final var settings = new ApiClientSettings();
+        settings.setDetectHighLimits(true);
+        final var underTest = new UnderTest(settings, "read", "apihighlimits");
+        final var wiki = new SimpleWikimediaWiki("test.wikipedia.org");
+        underTest.requestCategories(wiki, TITLES, false);
+        underTest.requestCategories(wiki, TITLES, false);
+        assertEquals(List.of(500, 100, 500, 100), underTest.titlesCounts);
+        // Rights are only requested once per wiki
+        assertEquals(1, underTest.userinfoRequests);
+    }
+
+    @Test
+    void requestCategoriesDetectNoHighLimits() throws Exception {
+        final var settings = new ApiClientSettings();
+        settings.setDetectHighLimits(true);
+        final var underTest = new UnderTest(settings, "read");
+        underTest.requestCategories(new SimpleWikimediaWiki("test.wikipedia.org"), TITLES, false);
+        assertEquals(12, underTest.titlesCounts.size());
+    }
+
+    @Test
+    void requestCategoriesConfiguredTitlesMax() throws Exception {
+        final var settings = new ApiClientSettings();
+        settings.setTitlesMax(200);
+        final var underTest = new UnderTest(settings);
+        underTest.requestCategories(new SimpleWikimediaWiki("test.wikipedia.org"), TITLES, false);
+        assertEquals(List.of(200, 200, 200), underTest.titlesCounts);
+    }
+
+    @Test
+    void requestCategoriesFilterHiddenCategories() throws Exception {
+        final var settings = new ApiClientSettings();
+        settings.setFilterHiddenCategories(true);
+        final var underTest = new UnderTest(settings);
+        final var wiki = new SimpleWikimediaWiki("test.wikipedia.org");
+        final List<String> titles = List.of("Category:0", "Category:1");
+
+        assertEquals(Map.of("Category:0", List.of("Category:Visible")),
+                underTest.requestCategories(wiki, titles, false));
+        assertEquals(Map.of("Category:0", List.of("Category:Visible", "Category:Hidden"),
+                "Category:1", List.of("Category:Hidden")), underTest.requestCategories(wiki, titles, true));
+        // Both requests are the same
+        assertEquals(underTest.categoriesParams.get(0), underTest.categoriesParams.get(1));
+        assertEquals("hidden", underTest.categoriesParams.getFirst().get("clprop"));
+    }
+
+    @Test
+    void requestCategoriesShowHidden() throws Exception {
+        final var underTest = new UnderTest(new ApiClientSettings());
+        final var wiki = new SimpleWikimediaWiki("test.wikipedia.org");
+        underTest.requestCategories(wiki, List.of("Category:0", "Category:1"), false);
+        underTest.requestCategories(wiki, List.of("Category:0", "Category:1"), true);
+
+        assertEquals("!hidden", underTest.categoriesParams.get(0).get("clshow"));
+        assertNull(underTest.categoriesParams.get(1).get("clshow"));
+        assertNull(underTest.categoriesParams.get(1).get("clprop"));
+    }
+
+    @Test
+    void requestCategorymembers() throws Exception {
+        final var underTest = new UnderTest(new ApiClientSettings());
+        final var result = underTest.requestCategorymembers(new SimpleWikimediaWiki("test.wikipedia.org"), "Category:A");
+        assertEquals(10, result.size());
+        assertEquals(5, underTest.categorymembersRequests);
+    }
+
+    @Test
+    void requestCategorymembersMinTitles() throws Exception {
+        final var underTest = new UnderTest(new ApiClientSettings());
+        final var result = underTest.requestCategorymembers(new SimpleWikimediaWiki("test.wikipedia.org"), "Category:A",
+                3);
+        assertEquals(List.of("Category:0a", "Category:0b", "Category:1a", "Category:1b"), result);
+        assertEquals(2, underTest.categorymembersRequests);
+    }
+
+}
@@ -0,0 +1,123 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.mediawiki.interfaces.AsyncCategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.Serial;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchingCategoryProviderTest {
+
+    private static final Wiki WIKI = new SimpleWikimediaWiki("test.wikipedia.org");
+
+    private static class RecordingCategoryProvider implements AsyncCategoryProvider {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+
+        private boolean fail;
+
+        @Override
+        public CompletableFuture<Map<String, Collection<String>>> requestCategoriesAsync(Wiki wiki,
+                                                                                         List<String> fullTitles,
+                                                                                         boolean showhidden) {
+            calls.add(fullTitles);
+            if (fail) {
+                return CompletableFuture.failedFuture(new ApiException("test"));
+            }
+            final Map<String, Collection<String>> categoryMap = new HashMap<>();
+            for (String fullTitle : fullTitles) {
+                categoryMap.put(fullTitle, List.of("Category:Parent of " + fullTitle));
+            }
+            return CompletableFuture.completedFuture(categoryMap);
+        }
+
+        @Override
+        public CompletableFuture<List<String>> requestCategorymembersAsync(Wiki wiki, String fullTitle) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+    }
+
+    private RecordingCategoryProvider categoryProvider;
+
+    @BeforeEach
+    void setUp() {
+        categoryProvider = new RecordingCategoryProvider();
+    }
+
+    @Test
+    void requestCategoriesAsyncWindow() throws Exception {
+
+        final var underTest = new BatchingCategoryProvider(categoryProvider, Duration.ofMillis(50), 50);
+
+        final var first = underTest.requestCategoriesAsync(WIKI, List.of("Category:A", "Category:B"), false);
+        final var second = underTest.requestCategoriesAsync(WIKI, List.of("Category:B", "Category:C"), false);
+
+        assertEquals(Set.of("Category:A", "Category:B"), first.get(1, TimeUnit.SECONDS).keySet());
+        assertEquals(Set.of("Category:B", "Category:C"), second.get(1, TimeUnit.SECONDS).keySet());
+        assertEquals(List.of("Category:Parent of Category:C"), second.get().get("Category:C"));
+        assertEquals(1, categoryProvider.calls.size());
+        assertEquals(List.of("Category:A", "Category:B", "Category:C"), categoryProvider.calls.getFirst());
+
+    }
+
+    @Test
+    void requestCategoriesAsyncFull() {
+
+        final var underTest = new BatchingCategoryProvider(categoryProvider, Duration.ofHours(1), 3);
+
+        final var first = underTest.requestCategoriesAsync(WIKI, List.of("Category:A", "Category:B"), false);
+        assertFalse(first.isDone());
+        final var second = underTest.requestCategoriesAsync(WIKI, List.of("Category:C"), false);
+
+        // Sent without waiting for the window, as the batch is full
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertEquals(1, categoryProvider.calls.size());
+
+    }
+
+    @Test
+    void requestCategoriesAsyncSeparateBatches() throws Exception {
+
+        final var underTest = new BatchingCategoryProvider(categoryProvider, Duration.ofMillis(10), 50);
+
+        final var first = underTest.requestCategoriesAsync(WIKI, List.of("Category:A"), false);
+        final var second = underTest.requestCategoriesAsync(WIKI, List.of("Category:A"), true);
+        final var third = underTest.requestCategoriesAsync(new SimpleWikimediaWiki("de.wikipedia.org"),
+                List.of("Category:A"), false);
+
+        first.get(1, TimeUnit.SECONDS);
+        second.get(1, TimeUnit.SECONDS);
+        third.get(1, TimeUnit.SECONDS);
+        assertEquals(3, categoryProvider.calls.size());
+
+    }
+
+    @Test
+    void requestCategoriesAsyncFailure() {
+
+        categoryProvider.fail = true;
+        final var underTest = new BatchingCategoryProvider(categoryProvider, Duration.ofHours(1), 2);
+
+        final var first = underTest.requestCategoriesAsync(WIKI, List.of("Category:A"), false);
+        final var second = underTest.requestCategoriesAsync(WIKI, List.of("Category:B"), false);
+
+        assertInstanceOf(ApiException.class, assertThrows(ExecutionException.class, first::get).getCause());
+        assertInstanceOf(ApiException.class, assertThrows(ExecutionException.class, second::get).getCause());
+
+    }
+
+}
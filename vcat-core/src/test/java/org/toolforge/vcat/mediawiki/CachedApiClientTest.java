@@ -0,0 +1,158 @@
+package org.toolforge.vcat.mediawiki;
+
+import jakarta.json.JsonObject;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.cache.interfaces.ApiCache;
+
+import java.io.Serial;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedApiClientTest {
+
+    private static final String API_URL = "https://test.wikipedia.org/w/api.php";
+
+    private static class MapApiCache implements ApiCache {
+
+        private final Map<String, JsonObject> map = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean containsKey(String key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public @Nullable JsonObject getJSONObject(String key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void purge() {
+            map.clear();
+        }
+
+        @Override
+        public void put(String key, JsonObject jsonObject) {
+            map.put(key, jsonObject);
+        }
+
+    }
+
+    private static class UnderTest extends CachedApiClient {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final List<CompletableFuture<TitleListResult>> requests = new ArrayList<>();
+
+        UnderTest(ApiCache cache) {
+            super(cache);
+        }
+
+        @Override
+        protected CompletableFuture<TitleListResult> uncachedRequestTitlesAsync(String apiUrl,
+                                                                                Map<String, String> params,
+                                                                                String name) {
+            final var future = new CompletableFuture<TitleListResult>();
+            requests.add(future);
+            return future;
+        }
+
+    }
+
+    private UnderTest underTest;
+
+    private static Map<String, String> params(String cmtitle) {
+        return Map.of("list", "categorymembers", "cmtitle", cmtitle);
+    }
+
+    private static TitleListResult result(String... titles) {
+        return new TitleListResult(Collections.emptyMap(), List.of(titles), null);
+    }
+
+    @BeforeEach
+    void setUp() {
+        underTest = new UnderTest(new MapApiCache());
+    }
+
+    @Test
+    void requestTitlesAsyncSameKey() throws Exception {
+
+        final var first = underTest.requestTitlesAsync(API_URL, params("Category:A"), "categorymembers");
+        final var second = underTest.requestTitlesAsync(API_URL, params("Category:A"), "categorymembers");
+
+        assertEquals(1, underTest.requests.size());
+        assertEquals(1, underTest.getCoalescedRequests());
+        assertFalse(second.isDone());
+
+        underTest.requests.getFirst().complete(result("Category:B"));
+
+        assertEquals(List.of("Category:B"), first.get().getList());
+        assertEquals(List.of("Category:B"), second.get().getList());
+
+        // Now the result is in the cache
+        final var third = underTest.requestTitlesAsync(API_URL, params("Category:A"), "categorymembers");
+        assertEquals(List.of("Category:B"), third.get().getList());
+        assertEquals(1, underTest.requests.size());
+        assertEquals(1, underTest.getCacheHits());
+        assertEquals(1, underTest.getCacheMisses());
+
+    }
+
+    @Test
+    void requestTitlesAsyncOtherKey() {
+
+        underTest.requestTitlesAsync(API_URL, params("Category:A"), "categorymembers");
+        underTest.requestTitlesAsync(API_URL, params("Category:B"), "categorymembers");
+
+        assertEquals(2, underTest.requests.size());
+        assertEquals(0, underTest.getCoalescedRequests());
+        assertEquals(2, underTest.getCacheMisses());
+
+    }
+
+    @Test
+    void requestTitlesAsyncParameterOrder() throws Exception {
+
+        final Map<String, String> params = new LinkedHashMap<>();
+        params.put("list", "categorymembers");
+        params.put("cmtitle", "Category:A");
+        final Map<String, String> reversedParams = new LinkedHashMap<>();
+        reversedParams.put("cmtitle", "Category:A");
+        reversedParams.put("list", "categorymembers");
+
+        underTest.requestTitlesAsync(API_URL, params, "categorymembers");
+        underTest.requests.getFirst().complete(result("Category:B"));
+
+        // The order of the parameters does not matter for the cache
+        final var second = underTest.requestTitlesAsync(API_URL, reversedParams, "categorymembers");
+        assertEquals(List.of("Category:B"), second.get().getList());
+        assertEquals(1, underTest.requests.size());
+        assertEquals(1, underTest.getCacheHits());
+
+    }
+
+    @Test
+    void requestTitlesAsyncFailure() {
+
+        final var first = underTest.requestTitlesAsync(API_URL, params("Category:A"), "categorymembers");
+        final var second = underTest.requestTitlesAsync(API_URL, params("Category:A"), "categorymembers");
+
+        underTest.requests.getFirst().completeExceptionally(new ApiException("test"));
+
+        assertInstanceOf(ApiException.class, assertThrows(ExecutionException.class, first::get).getCause());
+        assertInstanceOf(ApiException.class, assertThrows(ExecutionException.class, second::get).getCause());
+
+        // Failed requests are not kept, so the next caller sends a new request
+        underTest.requestTitlesAsync(API_URL, params("Category:A"), "categorymembers");
+        assertEquals(2, underTest.requests.size());
+
+    }
+
+}
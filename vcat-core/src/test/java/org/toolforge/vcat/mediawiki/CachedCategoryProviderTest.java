@@ -0,0 +1,101 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+import org.toolforge.vcat.test.TestCategoryCache;
+import org.toolforge.vcat.test.TestWiki;
+
+import java.io.Serial;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachedCategoryProviderTest {
+
+    private static final Wiki WIKI = new TestWiki();
+
+    /**
+     * Category provider recording the titles requested. Each page is in the category named after its title, and each
+     * category has three subcategories.
+     */
+    private static class RecordingCategoryProvider implements CategoryProvider {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<String>> requestedFullTitles = new ArrayList<>();
+
+        @Override
+        public Map<String, Collection<String>> requestCategories(Wiki wiki, List<String> fullTitles,
+                                                                 boolean showhidden) {
+            requestedFullTitles.add(fullTitles);
+            final Map<String, Collection<String>> categoryMap = new HashMap<>();
+            for (String fullTitle : fullTitles) {
+                if (!fullTitle.startsWith("None")) {
+                    categoryMap.put(fullTitle, showhidden ? List.of("Category:" + fullTitle, "Category:Hidden")
+                            : List.of("Category:" + fullTitle));
+                }
+            }
+            return categoryMap;
+        }
+
+        @Override
+        public List<String> requestCategorymembers(Wiki wiki, String fullTitle) {
+            requestedFullTitles.add(List.of(fullTitle));
+            return List.of(fullTitle + "/1", fullTitle + "/2", fullTitle + "/3");
+        }
+
+        @Override
+        public List<String> requestCategorymembers(Wiki wiki, String fullTitle, int minTitles) {
+            return requestCategorymembers(wiki, fullTitle).subList(0, Math.min(3, minTitles));
+        }
+
+    }
+
+    @Test
+    void requestCategories() throws ApiException {
+        final var provider = new RecordingCategoryProvider();
+        final var underTest = new CachedCategoryProvider(provider, new TestCategoryCache());
+
+        assertEquals(Map.of("A", List.of("Category:A"), "B", List.of("Category:B")),
+                underTest.requestCategories(WIKI, List.of("A", "B", "None"), false));
+        assertEquals(Map.of("B", List.of("Category:B"), "C", List.of("Category:C")),
+                underTest.requestCategories(WIKI, List.of("B", "C", "None"), false));
+        assertEquals(Map.of("B", List.of("Category:B", "Category:Hidden")),
+                underTest.requestCategories(WIKI, List.of("B"), true));
+        assertEquals(Map.of(), underTest.requestCategories(WIKI, List.of("None"), false));
+
+        // Only the titles not in the cache are requested
+        assertEquals(List.of(List.of("A", "B", "None"), List.of("C"), List.of("B")), provider.requestedFullTitles);
+        assertEquals(3, underTest.getCacheHits());
+        assertEquals(5, underTest.getCacheMisses());
+    }
+
+    @Test
+    void requestCategorymembers() throws ApiException {
+        final var provider = new RecordingCategoryProvider();
+        final var underTest = new CachedCategoryProvider(provider, new TestCategoryCache());
+
+        assertEquals(List.of("A/1", "A/2", "A/3"), underTest.requestCategorymembers(WIKI, "A"));
+        final var categorymembersMap = underTest.requestCategorymembers(WIKI, List.of("B", "A"));
+
+        assertEquals(List.of("B", "A"), List.copyOf(categorymembersMap.keySet()));
+        assertEquals(List.of("B/1", "B/2", "B/3"), categorymembersMap.get("B"));
+        assertEquals(List.of(List.of("A"), List.of("B")), provider.requestedFullTitles);
+    }
+
+    @Test
+    void requestCategorymembersMinTitles() throws ApiException {
+        final var provider = new RecordingCategoryProvider();
+        final var underTest = new CachedCategoryProvider(provider, new TestCategoryCache());
+
+        assertEquals(List.of("A/1", "A/2"), underTest.requestCategorymembers(WIKI, "A", 2));
+        assertEquals(List.of("B/1", "B/2", "B/3"), underTest.requestCategorymembers(WIKI, "B", 4));
+        // Lists which may be incomplete are not cached
+        assertEquals(Map.of("A", List.of("A/1", "A/2"), "B", List.of("B/1", "B/2", "B/3")),
+                underTest.requestCategorymembers(WIKI, List.of("A", "B"), 2));
+        assertEquals(List.of(List.of("A"), List.of("B"), List.of("A")), provider.requestedFullTitles);
+    }
+
+}
@@ -0,0 +1,145 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryIndexTest {
+
+    private static final String PAGE_DUMP = """
+            CREATE TABLE `page` (
+              `page_id` int(8) unsigned NOT NULL AUTO_INCREMENT,
+              `page_namespace` int(11) NOT NULL DEFAULT 0,
+              `page_title` varbinary(255) NOT NULL DEFAULT '',
+              `page_is_redirect` tinyint(1) unsigned NOT NULL DEFAULT 0,
+              PRIMARY KEY (`page_id`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=binary;
+            INSERT INTO `page` VALUES (1,14,'Root',0),(2,14,'Sub_A',0),(3,14,'Sub_B',0),(4,14,'Hidden',0),\
+            (5,0,'Article',0),(6,14,'Ä',0);
+            """;
+
+    private static final String LINKTARGET_DUMP = """
+            CREATE TABLE `linktarget` (
+              `lt_id` bigint(20) unsigned NOT NULL AUTO_INCREMENT,
+              `lt_namespace` int(11) NOT NULL,
+              `lt_title` varbinary(255) NOT NULL,
+              PRIMARY KEY (`lt_id`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=binary;
+            INSERT INTO `linktarget` VALUES (1,14,'Root'),(2,14,'Hidden'),(3,14,'Missing'),(4,10,'Template');
+            """;
+
+    private static final String CATEGORYLINKS_DUMP = """
+            CREATE TABLE `categorylinks` (
+              `cl_from` int(8) unsigned NOT NULL DEFAULT 0,
+              `cl_sortkey` varbinary(230) NOT NULL DEFAULT '',
+              `cl_type` enum('page','subcat','file') NOT NULL DEFAULT 'page',
+              `cl_target_id` bigint(20) unsigned NOT NULL,
+              PRIMARY KEY (`cl_from`,`cl_target_id`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=binary;
+            INSERT INTO `categorylinks` VALUES (3,'A','subcat',1),(2,'B','subcat',1),(6,'B','subcat',1),\
+            (5,'ARTICLE','page',1),(5,'ARTICLE','page',2),(5,'ARTICLE','page',3),(99,'X','page',1);
+            """;
+
+    private static final String PAGE_PROPS_DUMP = """
+            CREATE TABLE `page_props` (
+              `pp_page` int(10) unsigned NOT NULL,
+              `pp_propname` varbinary(60) NOT NULL,
+              `pp_value` blob NOT NULL,
+              PRIMARY KEY (`pp_page`,`pp_propname`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=binary;
+            INSERT INTO `page_props` VALUES (4,'hiddencat',''),(1,'wikibase_item','Q1');
+            """;
+
+    private static void readDump(CategoryIndexBuilder builder, String dump) throws IOException {
+        builder.readDump(new ByteArrayInputStream(dump.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Path write(Path directory) throws IOException {
+        final var builder = new CategoryIndexBuilder();
+        // Order of the dumps does not matter
+        readDump(builder, CATEGORYLINKS_DUMP);
+        readDump(builder, PAGE_DUMP);
+        readDump(builder, PAGE_PROPS_DUMP);
+        readDump(builder, LINKTARGET_DUMP);
+        final Path path = directory.resolve("testwiki" + IndexCategoryProvider.FILE_EXTENSION);
+        builder.write(path);
+        return path;
+    }
+
+    static CategoryIndex build(Path directory) throws IOException {
+        return CategoryIndex.open(write(directory));
+    }
+
+    private static List<String> titles(CategoryIndex index, int[] nodes) {
+        final List<String> titles = new ArrayList<>();
+        for (int node : nodes) {
+            titles.add(index.getNamespace(node) + ":" + index.getTitle(node));
+        }
+        return titles;
+    }
+
+    @Test
+    void find(@TempDir Path tempDir) throws IOException {
+        final var underTest = build(tempDir);
+
+        // Six pages and the missing category
+        assertEquals(7, underTest.getNodeCount());
+        final int node = underTest.find(14, "Sub_A");
+        assertEquals(14, underTest.getNamespace(node));
+        assertEquals("Sub_A", underTest.getTitle(node));
+        assertEquals("Ä", underTest.getTitle(underTest.find(14, "Ä")));
+        assertEquals("Article", underTest.getTitle(underTest.find(0, "Article")));
+        assertEquals(-1, underTest.find(0, "Sub_A"));
+        assertEquals(-1, underTest.find(14, "Sub"));
+        assertEquals(-1, underTest.find(10, "Template"));
+    }
+
+    @Test
+    void getCategories(@TempDir Path tempDir) throws IOException {
+        final var underTest = build(tempDir);
+
+        final int article = underTest.find(0, "Article");
+        assertEquals(List.of("14:Hidden", "14:Missing", "14:Root"), titles(underTest, underTest.getCategories(article)));
+        assertTrue(underTest.isHiddenCategory(underTest.find(14, "Hidden")));
+        assertFalse(underTest.isHiddenCategory(underTest.find(14, "Root")));
+        assertEquals(List.of(), titles(underTest, underTest.getCategories(underTest.find(14, "Root"))));
+    }
+
+    @Test
+    void getSubcategories(@TempDir Path tempDir) throws IOException {
+        final var underTest = build(tempDir);
+
+        // Ordered by sort key, then by page ID
+        assertEquals(List.of("14:Sub_B", "14:Sub_A", "14:Ä"),
+                titles(underTest, underTest.getSubcategories(underTest.find(14, "Root"))));
+        assertEquals(List.of(), titles(underTest, underTest.getSubcategories(underTest.find(14, "Sub_A"))));
+    }
+
+    @Test
+    void openInvalid(@TempDir Path tempDir) throws IOException {
+        final Path path = tempDir.resolve("invalid");
+        Files.writeString(path, "not an index, but long enough for the header");
+
+        assertThrows(IOException.class, () -> CategoryIndex.open(path));
+    }
+
+    @Test
+    void openTruncated(@TempDir Path tempDir) throws IOException {
+        final Path path = write(tempDir);
+        final byte[] content = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(content, content.length - 1));
+
+        assertThrows(IOException.class, () -> CategoryIndex.open(path));
+    }
+
+}
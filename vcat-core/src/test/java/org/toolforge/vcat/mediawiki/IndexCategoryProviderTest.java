@@ -0,0 +1,80 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndexCategoryProviderTest {
+
+    private static final Wiki WIKI = new SimpleWikimediaWiki("testwiki");
+
+    private static final Wiki OTHER_WIKI = new SimpleWikimediaWiki("otherwiki");
+
+    private static final MetadataProvider METADATA_PROVIDER = wiki -> new Metadata("/wiki/$1", "https://testwiki",
+            Map.of(Metadata.NS_ARTICLE, "", Metadata.NS_CATEGORY, "Category"),
+            Map.of("", Metadata.NS_ARTICLE, "Category", Metadata.NS_CATEGORY));
+
+    /**
+     * Category provider for wikis without an index, returning the name of the wiki.
+     */
+    private static class OtherCategoryProvider implements CategoryProvider {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Map<String, Collection<String>> requestCategories(Wiki wiki, List<String> fullTitles,
+                                                                 boolean showhidden) {
+            return Map.of(fullTitles.getFirst(), List.of(wiki.getName()));
+        }
+
+        @Override
+        public List<String> requestCategorymembers(Wiki wiki, String fullTitle) {
+            return List.of(wiki.getName());
+        }
+
+    }
+
+    private static IndexCategoryProvider underTest(Path tempDir) throws IOException {
+        CategoryIndexTest.build(tempDir);
+        return new IndexCategoryProvider(IndexCategoryProvider.openDirectory(tempDir), METADATA_PROVIDER,
+                new OtherCategoryProvider());
+    }
+
+    @Test
+    void requestCategories(@TempDir Path tempDir) throws Exception {
+        final var underTest = underTest(tempDir);
+
+        assertEquals(Map.of("Article", List.of("Category:Missing", "Category:Root")),
+                underTest.requestCategories(WIKI, List.of("Article", "Category:Root", "Does not exist"), false));
+        assertEquals(Map.of("Article", List.of("Category:Hidden", "Category:Missing", "Category:Root")),
+                underTest.requestCategories(WIKI, List.of("Article"), true));
+        assertEquals(Map.of("Article", List.of("otherwiki")),
+                underTest.requestCategories(OTHER_WIKI, List.of("Article"), false));
+    }
+
+    @Test
+    void requestCategorymembers(@TempDir Path tempDir) throws Exception {
+        final var underTest = underTest(tempDir);
+
+        assertEquals(List.of("Category:Sub B", "Category:Sub A", "Category:Ä"),
+                underTest.requestCategorymembers(WIKI, "Category:Root"));
+        assertEquals(List.of("Category:Sub B", "Category:Sub A", "Category:Ä"),
+                underTest.requestCategorymembers(WIKI, "Category:Root", 1));
+        assertEquals(List.of(), underTest.requestCategorymembers(WIKI, "Category:Does not exist"));
+        assertEquals(Map.of("Category:Root", List.of("otherwiki")),
+                underTest.requestCategorymembers(OTHER_WIKI, List.of("Category:Root")));
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlDumpReaderTest {
+
+    private static final String DUMP = """
+            -- MySQL dump
+            DROP TABLE IF EXISTS `categorylinks`;
+            CREATE TABLE `categorylinks` (
+              `cl_from` int(8) unsigned NOT NULL DEFAULT 0,
+              `cl_sortkey` varbinary(230) NOT NULL DEFAULT '',
+              `cl_type` enum('page','subcat','file') NOT NULL DEFAULT 'page',
+              `cl_target_id` bigint(20) unsigned NOT NULL,
+              PRIMARY KEY (`cl_from`,`cl_target_id`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=binary;
+            INSERT INTO `categorylinks` VALUES (1,'A\\'B','page',10),(2,'C,(D)\\\\','subcat',NULL);
+            INSERT INTO `categorylinks` VALUES (3,'','page',12);
+            """;
+
+    private static List<SqlDumpReader.Row> read(String dump) throws IOException {
+        final List<SqlDumpReader.Row> rows = new ArrayList<>();
+        SqlDumpReader.read(new ByteArrayInputStream(dump.getBytes(StandardCharsets.UTF_8)), rows::add);
+        return rows;
+    }
+
+    @Test
+    void read() throws IOException {
+        final var rows = read(DUMP);
+
+        assertEquals(3, rows.size());
+        assertEquals("categorylinks", rows.getFirst().getTable());
+        assertEquals(1, rows.get(0).getLong("cl_from"));
+        assertEquals("A'B", rows.get(0).getString("cl_sortkey"));
+        assertEquals("page", rows.get(0).getString("cl_type"));
+        assertEquals(10, rows.get(0).getLong("cl_target_id"));
+        assertEquals("C,(D)\\", rows.get(1).getString("cl_sortkey"));
+        assertEquals("subcat", rows.get(1).getString("cl_type"));
+        assertNull(rows.get(1).getString("cl_target_id"));
+        assertEquals("", rows.get(2).getString("cl_sortkey"));
+    }
+
+    @Test
+    void readBinary() throws IOException {
+        final byte[] dump = "CREATE TABLE `t` (\n  `v` varbinary(10)\n);\nINSERT INTO `t` VALUES ('ÿ\\0');\n"
+                .getBytes(StandardCharsets.ISO_8859_1);
+        final List<SqlDumpReader.Row> rows = new ArrayList<>();
+        SqlDumpReader.read(new ByteArrayInputStream(dump), rows::add);
+
+        assertArrayEquals(new byte[]{(byte) 0xff, 0}, rows.getFirst().getBytes("v"));
+    }
+
+    @Test
+    void readUnknownColumn() throws IOException {
+        final var row = read(DUMP).getFirst();
+
+        assertFalse(row.hasColumn("cl_to"));
+        assertThrows(IOException.class, () -> row.getString("cl_to"));
+    }
+
+    @Test
+    void readSyntaxError() {
+        assertThrows(IOException.class, () -> read("INSERT INTO `t` VALUES (1,'a'"));
+    }
+
+}
@@ -0,0 +1,132 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TitleListCursorTest {
+
+    /**
+     * Pages with one title each, numbered from 0 to the specified number of pages minus one.
+     */
+    private static class Pages {
+
+        private final int count;
+
+        private final List<Integer> requested = new ArrayList<>();
+
+        Pages(int count) {
+            this.count = count;
+        }
+
+        CompletableFuture<TitleListResult> request(@Nullable Map<String, String> continueMap) {
+            final int page = continueMap == null ? 0 : Integer.parseInt(continueMap.get("continue"));
+            requested.add(page);
+            return CompletableFuture.completedFuture(new TitleListResult(Map.of(), List.of("Page " + page),
+                    page < count - 1 ? Map.of("continue", Integer.toString(page + 1)) : null));
+        }
+
+    }
+
+    @Test
+    void nextLazy() throws Exception {
+
+        final var pages = new Pages(3);
+        final var underTest = new TitleListCursor(pages::request, false);
+
+        assertTrue(pages.requested.isEmpty());
+        assertEquals(List.of("Page 0"), underTest.next().getList());
+        assertEquals(List.of(0), pages.requested);
+        assertEquals(List.of("Page 1"), underTest.next().getList());
+        assertEquals(List.of("Page 2"), underTest.next().getList());
+        assertNull(underTest.next());
+        assertNull(underTest.next());
+        assertEquals(List.of(0, 1, 2), pages.requested);
+
+    }
+
+    @Test
+    void nextPrefetch() throws Exception {
+
+        final var pages = new Pages(3);
+        final var underTest = new TitleListCursor(pages::request, true);
+
+        assertEquals(List.of("Page 0"), underTest.next().getList());
+        // The following page has already been requested
+        assertEquals(List.of(0, 1), pages.requested);
+        assertEquals(List.of("Page 1"), underTest.next().getList());
+        assertEquals(List.of(0, 1, 2), pages.requested);
+
+    }
+
+    @Test
+    void forEachAsyncStop() throws Exception {
+
+        final var pages = new Pages(10);
+        final var underTest = new TitleListCursor(pages::request, false);
+        final List<String> titles = new ArrayList<>();
+
+        underTest.forEachAsync(result -> {
+            titles.addAll(result.getList());
+            return titles.size() < 2;
+        }).get();
+
+        assertEquals(List.of("Page 0", "Page 1"), titles);
+        assertEquals(List.of(0, 1), pages.requested);
+
+    }
+
+    @Test
+    void forEachAsyncManyPages() throws Exception {
+
+        final var underTest = new TitleListCursor(new Pages(100000)::request, true);
+        final List<String> titles = new ArrayList<>();
+
+        // Would overflow the stack if pages were processed recursively
+        underTest.forEachAsync(result -> titles.addAll(result.getList())).get();
+
+        assertEquals(100000, titles.size());
+
+    }
+
+    @Test
+    void forEachAsyncDelayed() throws Exception {
+
+        final List<CompletableFuture<TitleListResult>> requests = new ArrayList<>();
+        final var underTest = new TitleListCursor(continueMap -> {
+            final var future = new CompletableFuture<TitleListResult>();
+            requests.add(future);
+            return future;
+        }, false);
+        final List<String> titles = new ArrayList<>();
+
+        final var future = underTest.forEachAsync(result -> titles.addAll(result.getList()));
+        requests.get(0).complete(new TitleListResult(Map.of(), List.of("Page 0"), Map.of("continue", "1")));
+        assertFalse(future.isDone());
+        requests.get(1).complete(new TitleListResult(Map.of(), List.of("Page 1"), null));
+
+        future.get();
+        assertEquals(List.of("Page 0", "Page 1"), titles);
+
+    }
+
+    @Test
+    void forEachAsyncFailure() {
+
+        final var underTest = new TitleListCursor(
+                continueMap -> CompletableFuture.failedFuture(new ApiException("test")), true);
+
+        final var future = underTest.forEachAsync(result -> true);
+
+        assertInstanceOf(ApiException.class, assertThrows(ExecutionException.class, future::get).getCause());
+
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.toolforge.vcat.mediawiki;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TitleListParserTest {
+
+    private static final String CATEGORIES_RESPONSE = """
+            {
+              "continue": {"clcontinue": "123|Abc", "continue": "||"},
+              "query": {
+                "normalized": [{"from": "Category:A_b", "to": "Category:A b"}],
+                "pages": {
+                  "123": {
+                    "pageid": 123,
+                    "ns": 14,
+                    "title": "Category:A b",
+                    "categories": [
+                      {"ns": 14, "title": "Category:Parent 1"},
+                      {"ns": 14, "hidden": "", "title": "Category:Parent 2"}
+                    ]
+                  },
+                  "456": {
+                    "categories": [{"ns": 14, "title": "Category:Parent 3", "hidden": ""}],
+                    "title": "Category:Title last"
+                  },
+                  "-1": {"ns": 14, "title": "Category:Missing", "missing": ""}
+                }
+              }
+            }
+            """;
+
+    private static final String CATEGORYMEMBERS_RESPONSE = """
+            {
+              "batchcomplete": "",
+              "query-continue": {"categorymembers": {"cmcontinue": "subcat|ABC|123"}},
+              "query": {
+                "categorymembers": [
+                  {"pageid": 1, "ns": 14, "title": "Category:Child 1"},
+                  {"pageid": 2, "ns": 14, "title": "Category:Child 2"}
+                ]
+              }
+            }
+            """;
+
+    private static TitleListResult parseString(String json, String name) {
+        return TitleListParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), name);
+    }
+
+    private static JsonObject readObject(String json) {
+        try (var reader = Json.createReader(new StringReader(json))) {
+            return reader.readObject();
+        }
+    }
+
+    @Test
+    void parseCategories() {
+        final var result = parseString(CATEGORIES_RESPONSE, "categories");
+
+        assertEquals(Map.of(
+                "Category:A b", List.of("Category:Parent 1", "Category:Parent 2"),
+                "Category:Title last", List.of("Category:Parent 3")
+        ), result.getPages());
+        assertEquals(Set.of("Category:Parent 2", "Category:Parent 3"), result.getHidden());
+        assertTrue(result.getList().isEmpty());
+        assertEquals(Map.of("clcontinue", "123|Abc", "continue", "||"), result.getContinueMap());
+    }
+
+    @Test
+    void parseCategorymembers() {
+        final var result = parseString(CATEGORYMEMBERS_RESPONSE, "categorymembers");
+
+        assertTrue(result.getPages().isEmpty());
+        assertEquals(List.of("Category:Child 1", "Category:Child 2"), result.getList());
+        assertEquals(Map.of("cmcontinue", "subcat|ABC|123"), result.getContinueMap());
+    }
+
+    @Test
+    void parseWithoutContinue() {
+        final var result = parseString("{\"batchcomplete\": \"\", \"query\": {\"categorymembers\": []}}",
+                "categorymembers");
+
+        assertTrue(result.getList().isEmpty());
+        assertNull(result.getContinueMap());
+    }
+
+    @Test
+    void parseJsonObject() {
+        final var result = TitleListParser.parse(readObject(CATEGORIES_RESPONSE), "categories");
+
+        assertEquals(2, result.getPages().size());
+        assertNotNull(result.getContinueMap());
+    }
+
+    @Test
+    void toJsonObjectRoundTrip() {
+        for (var test : Map.of("categories", CATEGORIES_RESPONSE, "categorymembers", CATEGORYMEMBERS_RESPONSE)
+                .entrySet()) {
+            final var name = test.getKey();
+            final var result = parseString(test.getValue(), name);
+
+            final var roundTrip = TitleListParser.parse(result.toJsonObject(name), name);
+
+            assertEquals(result.getPages(), roundTrip.getPages());
+            assertEquals(result.getList(), roundTrip.getList());
+            assertEquals(result.getHidden(), roundTrip.getHidden());
+            assertEquals(result.getContinueMap(), roundTrip.getContinueMap());
+        }
+    }
+
+}
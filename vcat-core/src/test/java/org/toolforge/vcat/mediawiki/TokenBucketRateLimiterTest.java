@@ -0,0 +1,121 @@
+package org.toolforge.vcat.mediawiki;
+
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.mediawiki.interfaces.RateLimiter.Permit;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+
+    @Test
+    void acquireWaitsForRelease() throws Exception {
+
+        final var underTest = new TokenBucketRateLimiter(1, 0);
+
+        final var first = underTest.acquire();
+        final var second = underTest.acquire();
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(1, underTest.getQueueLength());
+
+        first.get().release();
+
+        assertTrue(second.isDone());
+        assertEquals(0, underTest.getQueueLength());
+        assertEquals(2, underTest.getPermitsGranted());
+
+    }
+
+    @Test
+    void acquireConcurrent() {
+
+        final var underTest = new TokenBucketRateLimiter(2, 0);
+
+        assertTrue(underTest.acquire().isDone());
+        assertTrue(underTest.acquire().isDone());
+        assertFalse(underTest.acquire().isDone());
+        assertEquals(2, underTest.getRunningRequests());
+
+    }
+
+    @Test
+    void acquireUnlimited() {
+
+        final var underTest = new TokenBucketRateLimiter(0, 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(underTest.acquire().isDone());
+        }
+
+    }
+
+    @Test
+    void releaseTwice() throws Exception {
+
+        final var underTest = new TokenBucketRateLimiter(1, 0);
+
+        final Permit permit = underTest.acquire().get();
+        underTest.acquire();
+        underTest.acquire();
+
+        permit.release();
+        permit.release();
+
+        assertEquals(1, underTest.getRunningRequests());
+        assertEquals(1, underTest.getQueueLength());
+
+    }
+
+    @Test
+    void acquireRequestsPerSecond() throws Exception {
+
+        final var underTest = new TokenBucketRateLimiter(0, 20);
+
+        // The bucket is full at the start, so a burst of 20 requests is allowed
+        for (int i = 0; i < 20; i++) {
+            assertTrue(underTest.acquire().isDone());
+        }
+        final var next = underTest.acquire();
+        assertFalse(next.isDone());
+
+        next.get(1, TimeUnit.SECONDS);
+        assertTrue(underTest.getTotalQueueWait().toNanos() > 0);
+
+    }
+
+    @Test
+    void backOff() throws Exception {
+
+        final var underTest = new TokenBucketRateLimiter(1, 0);
+
+        underTest.backOff(Duration.ofMillis(100));
+        final var future = underTest.acquire();
+        assertFalse(future.isDone());
+
+        future.get(1, TimeUnit.SECONDS);
+        assertTrue(underTest.getTotalQueueWait().toMillis() >= 90);
+
+    }
+
+    @Test
+    void acquireCancelled() throws Exception {
+
+        final var underTest = new TokenBucketRateLimiter(1, 0);
+
+        final Permit permit = underTest.acquire().get();
+        final var cancelled = underTest.acquire();
+        final var third = underTest.acquire();
+        cancelled.cancel(false);
+
+        permit.release();
+
+        assertTrue(third.isDone());
+        assertEquals(1, underTest.getRunningRequests());
+
+    }
+
+}
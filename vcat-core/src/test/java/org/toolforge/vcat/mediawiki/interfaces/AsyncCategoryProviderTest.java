@@ -0,0 +1,78 @@
+package org.toolforge.vcat.mediawiki.interfaces;
+
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.mediawiki.ApiException;
+import org.toolforge.vcat.mediawiki.ApiFutures;
+import org.toolforge.vcat.mediawiki.SimpleWikimediaWiki;
+
+import java.io.Serial;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncCategoryProviderTest {
+
+    private static final Wiki WIKI = new SimpleWikimediaWiki("test.wikipedia.org");
+
+    /**
+     * Category provider whose requests for category members only complete when told to.
+     */
+    private static class ManualCategoryProvider implements AsyncCategoryProvider {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, CompletableFuture<List<String>>> requests = new LinkedHashMap<>();
+
+        @Override
+        public CompletableFuture<Map<String, Collection<String>>> requestCategoriesAsync(Wiki wiki,
+                                                                                         List<String> fullTitles,
+                                                                                         boolean showhidden) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+
+        @Override
+        public CompletableFuture<List<String>> requestCategorymembersAsync(Wiki wiki, String fullTitle) {
+            final var future = new CompletableFuture<List<String>>();
+            requests.put(fullTitle, future);
+            return future;
+        }
+
+    }
+
+    @Test
+    void requestCategorymembersAsyncMultiple() throws Exception {
+
+        final var underTest = new ManualCategoryProvider();
+
+        final var future = underTest.requestCategorymembersAsync(WIKI, List.of("Category:B", "Category:A"));
+
+        // All requests are started at once
+        assertEquals(List.of("Category:B", "Category:A"), List.copyOf(underTest.requests.keySet()));
+        assertFalse(future.isDone());
+
+        underTest.requests.get("Category:A").complete(List.of("Category:A1"));
+        underTest.requests.get("Category:B").complete(List.of("Category:B1", "Category:B2"));
+
+        final var result = future.get();
+        assertEquals(List.of("Category:B", "Category:A"), List.copyOf(result.keySet()));
+        assertEquals(List.of("Category:B1", "Category:B2"), result.get("Category:B"));
+        assertEquals(List.of("Category:A1"), result.get("Category:A"));
+
+    }
+
+    @Test
+    void requestCategorymembersAsyncMultipleFailure() {
+
+        final var underTest = new ManualCategoryProvider();
+
+        final var future = underTest.requestCategorymembersAsync(WIKI, List.of("Category:A", "Category:B"));
+        underTest.requests.get("Category:A").complete(List.of());
+        underTest.requests.get("Category:B").completeExceptionally(new ApiException("test"));
+
+        assertThrows(ApiException.class, () -> ApiFutures.await(future));
+
+    }
+
+}
@@ -0,0 +1,46 @@
+package org.toolforge.vcat.test;
+
+import org.jspecify.annotations.Nullable;
+import org.toolforge.vcat.cache.CategoryCacheKey;
+import org.toolforge.vcat.cache.interfaces.CategoryCache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Category cache keeping all entries in a map, counting lookups which did not find an entry.
+ */
+public class TestCategoryCache implements CategoryCache {
+
+    private final Map<CategoryCacheKey, String[]> map = new HashMap<>();
+
+    private int misses;
+
+    @Override
+    public String @Nullable [] getFullTitles(CategoryCacheKey key) {
+        final String[] fullTitles = map.get(key);
+        if (fullTitles == null) {
+            misses++;
+        }
+        return fullTitles;
+    }
+
+    @Override
+    public void purge() {
+        // Entries do not expire
+    }
+
+    @Override
+    public void put(CategoryCacheKey key, String[] fullTitles) {
+        map.put(key, fullTitles);
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.toolforge.vcat.toolforge.webapp;
+
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Opens connections to the database of a wiki. As each wiki has its own database, and the databases are spread over
+ * several servers, this is responsible for routing to the right one.
+ */
+@FunctionalInterface
+public interface ReplicaConnectionProvider extends Serializable {
+
+    /**
+     * @param wiki Wiki to connect to the database of.
+     * @return New connection to the database of the wiki, which must be closed by the caller.
+     * @throws SQLException If the connection cannot be established.
+     */
+    Connection getConnection(Wiki wiki) throws SQLException;
+
+}
@@ -0,0 +1,200 @@
+package org.toolforge.vcat.toolforge.webapp;
+
+import org.apache.commons.collections4.ListUtils;
+import org.slf4j.helpers.MessageFormatter;
+import org.toolforge.vcat.mediawiki.ApiException;
+import org.toolforge.vcat.mediawiki.Metadata;
+import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.Serial;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * {@link CategoryProvider} which reads categories directly from the <code>page</code> and <code>categorylinks</code>
+ * tables of the Wikimedia Toolforge wiki replicas, instead of using the MediaWiki API. Category links are read using
+ * the <code>linktarget</code> table, and hidden categories are recognized by the <code>hiddencat</code> page property.
+ * <p>
+ * Unlike the API, the database can return the members of many categories in one query.
+ */
+public class ToolforgeReplicaCategoryProvider implements CategoryProvider {
+
+    @Serial
+    private static final long serialVersionUID = 7301542638259113744L;
+
+    /**
+     * Maximum number of titles in one query.
+     */
+    static final int TITLES_MAX = 500;
+
+    private static final String HIDDEN_CATEGORY_CONDITION = " AND NOT EXISTS (SELECT 1 FROM page AS cat"
+            + " JOIN page_props ON pp_page=cat.page_id AND pp_propname='hiddencat'"
+            + " WHERE cat.page_namespace=14 AND cat.page_title=lt_title)";
+
+    private static final String CATEGORIES_QUERY = """
+            SELECT page_title, lt_title FROM page JOIN categorylinks ON cl_from=page_id\
+             JOIN linktarget ON lt_id=cl_target_id WHERE page_namespace=? AND page_title IN ({})""";
+
+    private static final String CATEGORIES_QUERY_ORDER = " ORDER BY page_title, lt_title";
+
+    private static final String CATEGORYMEMBERS_QUERY = """
+            SELECT lt_title, page_namespace, page_title FROM linktarget JOIN categorylinks ON cl_target_id=lt_id\
+             JOIN page ON page_id=cl_from WHERE lt_namespace=14 AND lt_title IN ({}) AND cl_type='subcat'\
+             ORDER BY lt_title, cl_sortkey, cl_from""";
+
+    private static final String CATEGORYMEMBERS_LIMIT_QUERY = """
+            SELECT lt_title, page_namespace, page_title FROM linktarget JOIN categorylinks ON cl_target_id=lt_id\
+             JOIN page ON page_id=cl_from WHERE lt_namespace=14 AND lt_title=? AND cl_type='subcat'\
+             ORDER BY cl_sortkey, cl_from LIMIT ?""";
+
+    private final ReplicaConnectionProvider connectionProvider;
+
+    private final MetadataProvider metadataProvider;
+
+    /**
+     * @param connectionProvider Provider for connections to the database of each wiki.
+     * @param metadataProvider   Metadata provider, needed to translate between full titles and namespace numbers.
+     */
+    public ToolforgeReplicaCategoryProvider(ReplicaConnectionProvider connectionProvider,
+                                            MetadataProvider metadataProvider) {
+        this.connectionProvider = connectionProvider;
+        this.metadataProvider = metadataProvider;
+    }
+
+    /**
+     * @return Title as stored in the database, with underscores instead of spaces.
+     */
+    private static String dbTitle(String title) {
+        return title.replace(' ', '_');
+    }
+
+    /**
+     * @return Title as used by the API, with spaces instead of underscores.
+     */
+    private static String apiTitle(String dbTitle) {
+        return dbTitle.replace('_', ' ');
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private ApiException queryException(Wiki wiki, SQLException e) {
+        return new ApiException(MessageFormatter
+                .format(Messages.getString("ToolforgeReplicaCategoryProvider.Exception.Query"), wiki.getName())
+                .getMessage(), e);
+    }
+
+    @Override
+    public Map<String, Collection<String>> requestCategories(Wiki wiki, List<String> fullTitles, boolean showhidden)
+            throws ApiException {
+        final Metadata metadata = metadataProvider.requestMetadata(wiki);
+
+        // Titles have to be queried by namespace; map them back to the full titles which were asked for
+        final Map<Integer, Map<String, String>> fullTitlesByNamespace = new HashMap<>();
+        for (String fullTitle : fullTitles) {
+            final int namespace = metadata.namespaceFromTitle(fullTitle);
+            fullTitlesByNamespace.computeIfAbsent(namespace, k -> new HashMap<>())
+                    .put(dbTitle(metadata.titleWithoutNamespace(fullTitle)), fullTitle);
+        }
+
+        final Map<String, Collection<String>> categoryMap = new HashMap<>();
+        try (Connection connection = connectionProvider.getConnection(wiki)) {
+            for (var entry : fullTitlesByNamespace.entrySet()) {
+                final Map<String, String> fullTitleMap = entry.getValue();
+                for (List<String> dbTitles : ListUtils.partition(new ArrayList<>(fullTitleMap.keySet()), TITLES_MAX)) {
+                    final String sql = MessageFormatter.format(CATEGORIES_QUERY, placeholders(dbTitles.size()))
+                            .getMessage() + (showhidden ? "" : HIDDEN_CATEGORY_CONDITION) + CATEGORIES_QUERY_ORDER;
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        statement.setInt(1, entry.getKey());
+                        for (int i = 0; i < dbTitles.size(); i++) {
+                            statement.setString(i + 2, dbTitles.get(i));
+                        }
+                        try (ResultSet rs = statement.executeQuery()) {
+                            while (rs.next()) {
+                                categoryMap.computeIfAbsent(fullTitleMap.get(rs.getString("page_title")),
+                                                k -> new ArrayList<>())
+                                        .add(metadata.fullTitle(apiTitle(rs.getString("lt_title")),
+                                                Metadata.NS_CATEGORY));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw queryException(wiki, e);
+        }
+        return categoryMap;
+    }
+
+    @Override
+    public List<String> requestCategorymembers(Wiki wiki, String fullTitle) throws ApiException {
+        return requestCategorymembers(wiki, List.of(fullTitle)).get(fullTitle);
+    }
+
+    @Override
+    public List<String> requestCategorymembers(Wiki wiki, String fullTitle, int minTitles) throws ApiException {
+        if (minTitles == Integer.MAX_VALUE) {
+            return requestCategorymembers(wiki, fullTitle);
+        }
+        final Metadata metadata = metadataProvider.requestMetadata(wiki);
+        final List<String> categorymembers = new ArrayList<>();
+        try (Connection connection = connectionProvider.getConnection(wiki);
+             PreparedStatement statement = connection.prepareStatement(CATEGORYMEMBERS_LIMIT_QUERY)) {
+            statement.setString(1, dbTitle(metadata.titleWithoutNamespace(fullTitle)));
+            statement.setInt(2, minTitles);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    categorymembers.add(metadata.fullTitle(apiTitle(rs.getString("page_title")),
+                            rs.getInt("page_namespace")));
+                }
+            }
+        } catch (SQLException e) {
+            throw queryException(wiki, e);
+        }
+        return categorymembers;
+    }
+
+    @Override
+    public Map<String, List<String>> requestCategorymembers(Wiki wiki, List<String> fullTitles)
+            throws ApiException {
+        final Metadata metadata = metadataProvider.requestMetadata(wiki);
+
+        final Map<String, List<String>> categorymembersMap = new LinkedHashMap<>();
+        final Map<String, List<String>> categorymembersByDbTitle = new HashMap<>();
+        for (String fullTitle : fullTitles) {
+            final List<String> categorymembers = new ArrayList<>();
+            categorymembersMap.put(fullTitle, categorymembers);
+            categorymembersByDbTitle.put(dbTitle(metadata.titleWithoutNamespace(fullTitle)), categorymembers);
+        }
+
+        try (Connection connection = connectionProvider.getConnection(wiki)) {
+            for (List<String> dbTitles : ListUtils.partition(new ArrayList<>(categorymembersByDbTitle.keySet()),
+                    TITLES_MAX)) {
+                final String sql = MessageFormatter.format(CATEGORYMEMBERS_QUERY, placeholders(dbTitles.size()))
+                        .getMessage();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < dbTitles.size(); i++) {
+                        statement.setString(i + 1, dbTitles.get(i));
+                    }
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            categorymembersByDbTitle.get(rs.getString("lt_title"))
+                                    .add(metadata.fullTitle(apiTitle(rs.getString("page_title")),
+                                            rs.getInt("page_namespace")));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw queryException(wiki, e);
+        }
+        return categorymembersMap;
+    }
+
+}
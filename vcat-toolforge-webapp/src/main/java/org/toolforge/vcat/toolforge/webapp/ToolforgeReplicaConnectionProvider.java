@@ -0,0 +1,201 @@
+package org.toolforge.vcat.toolforge.webapp;
+
+import io.agroal.api.AgroalDataSource;
+import io.agroal.api.AgroalDataSourceListener;
+import io.agroal.api.configuration.supplier.AgroalDataSourceConfigurationSupplier;
+import io.agroal.api.security.NamePrincipal;
+import io.agroal.api.security.SimplePassword;
+import org.slf4j.helpers.MessageFormatter;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Connects to the Wikimedia Toolforge wiki replicas. Each wiki's database is reached using a DNS alias named after the
+ * database (e.g. <code>dewiki.web.db.svc.wikimedia.cloud</code>), which always points to the server holding it.
+ * <p>
+ * Connections are pooled per wiki. As Toolforge limits the number of connections per tool across all replicas, the
+ * number of connections in use is limited across all wikis, and idle connections to other wikis are closed when a new
+ * connection is needed and the limit has been reached. Idle connections are also closed after a while.
+ *
+ * @see <a href="https://wikitech.wikimedia.org/wiki/Help:Toolforge/Database">Toolforge database documentation</a>
+ */
+public class ToolforgeReplicaConnectionProvider implements ReplicaConnectionProvider, AutoCloseable {
+
+    @Serial
+    private static final long serialVersionUID = -3584771187016354930L;
+
+    /**
+     * Default JDBC URL for the wiki replicas.
+     */
+    public static final String DEFAULT_URL = "jdbc:mariadb://{dbname}.web.db.svc.wikimedia.cloud:3306/{dbname}_p";
+
+    /**
+     * Placeholder in the URL which is replaced by the database name of the wiki.
+     */
+    public static final String DBNAME_PLACEHOLDER = "{dbname}";
+
+    /**
+     * Database names as used by Wikimedia; anything else is not put into a URL.
+     */
+    private static final Pattern DBNAME_PATTERN = Pattern.compile("[a-z0-9_]+");
+
+    /**
+     * Time after which idle connections are closed.
+     */
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * Maximum time to wait for a connection if all connections are in use.
+     */
+    private static final Duration ACQUISITION_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String url;
+
+    private final String user;
+
+    private final String password;
+
+    private final int poolSize;
+
+    /**
+     * Pools are not serialized, and created again on demand after deserialization.
+     */
+    private transient ConcurrentMap<String, AgroalDataSource> dataSources;
+
+    /**
+     * Permits for the connections in use across all wikis. A permit is taken before a connection is requested from a
+     * pool, and given back when the connection is returned to it.
+     */
+    private transient Semaphore permits;
+
+    /**
+     * @param url      JDBC URL, in which {@value #DBNAME_PLACEHOLDER} is replaced by the database name of the wiki.
+     * @param user     Database user.
+     * @param password Database password.
+     * @param poolSize Maximum number of connections across all wikis.
+     */
+    public ToolforgeReplicaConnectionProvider(String url, String user, String password, int poolSize) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.poolSize = poolSize;
+        initTransientFields();
+    }
+
+    private void initTransientFields() {
+        dataSources = new ConcurrentHashMap<>();
+        permits = new Semaphore(poolSize, true);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initTransientFields();
+    }
+
+    private AgroalDataSource createDataSource(String dbname) throws SQLException {
+        return AgroalDataSource.from(new AgroalDataSourceConfigurationSupplier()
+                // For the number of open connections
+                .metricsEnabled()
+                .connectionPoolConfiguration(pool -> pool
+                        .initialSize(0)
+                        .minSize(0)
+                        .maxSize(poolSize)
+                        .reapTimeout(IDLE_TIMEOUT)
+                        .acquisitionTimeout(ACQUISITION_TIMEOUT)
+                        .connectionFactoryConfiguration(factory -> factory
+                                .jdbcUrl(url.replace(DBNAME_PLACEHOLDER, dbname))
+                                .principal(new NamePrincipal(user))
+                                .credential(new SimplePassword(password)))),
+                new AgroalDataSourceListener() {
+                    @Override
+                    public void onConnectionReturn(Connection connection) {
+                        permits.release();
+                    }
+                });
+    }
+
+    /**
+     * @return Number of connections open across all wikis, in use or idle.
+     */
+    private long openConnections() {
+        return dataSources.values().stream()
+                .mapToLong(dataSource -> dataSource.getMetrics().activeCount()
+                        + dataSource.getMetrics().availableCount())
+                .sum();
+    }
+
+    /**
+     * Close the idle connections to all wikis but one, if a new connection to it would exceed the limit.
+     */
+    private void closeIdleConnections(AgroalDataSource keepDataSource) {
+        if (keepDataSource.getMetrics().availableCount() == 0 && openConnections() >= poolSize) {
+            dataSources.values().stream()
+                    .filter(dataSource -> dataSource != keepDataSource)
+                    .forEach(dataSource -> dataSource.flush(AgroalDataSource.FlushMode.IDLE));
+        }
+    }
+
+    @Override
+    public Connection getConnection(Wiki wiki) throws SQLException {
+        // For ToolforgeWiki, the name is the database name
+        final String dbname = wiki.getName();
+        if (!DBNAME_PATTERN.matcher(dbname).matches()) {
+            throw new SQLException(MessageFormatter
+                    .format(Messages.getString("ToolforgeReplicaConnectionProvider.Exception.InvalidDbname"), dbname)
+                    .getMessage());
+        }
+        AgroalDataSource dataSource = dataSources.get(dbname);
+        if (dataSource == null) {
+            synchronized (dataSources) {
+                dataSource = dataSources.get(dbname);
+                if (dataSource == null) {
+                    dataSource = createDataSource(dbname);
+                    dataSources.put(dbname, dataSource);
+                }
+            }
+        }
+        try {
+            if (!permits.tryAcquire(ACQUISITION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLException(MessageFormatter
+                        .format(Messages.getString("ToolforgeReplicaConnectionProvider.Exception.Timeout"),
+                                ACQUISITION_TIMEOUT.toSeconds())
+                        .getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+        try {
+            closeIdleConnections(dataSource);
+            // The permit is given back when the connection is returned to the pool
+            return dataSource.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Close all connection pools.
+     */
+    @Override
+    public void close() {
+        synchronized (dataSources) {
+            dataSources.values().forEach(AgroalDataSource::close);
+            dataSources.clear();
+        }
+    }
+
+}
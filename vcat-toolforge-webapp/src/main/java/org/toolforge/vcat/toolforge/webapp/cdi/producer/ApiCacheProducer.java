@@ -1,22 +1,88 @@
 package org.toolforge.vcat.toolforge.webapp.cdi.producer;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.toolforge.vcat.cache.CacheException;
+import org.toolforge.vcat.cache.file.ApiFileCache;
 import org.toolforge.vcat.cache.interfaces.ApiCache;
+import org.toolforge.vcat.cache.mapped.MappedApiCache;
+import org.toolforge.vcat.cache.store.ApiStoreCache;
 import org.toolforge.vcat.caffeine.ApiCaffeineCache;
+import org.toolforge.vcat.caffeine.TieredApiCache;
 import org.toolforge.vcat.toolforge.webapp.cdi.ConfigProperties;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@Slf4j
 @ApplicationScoped
 public class ApiCacheProducer {
 
+    /**
+     * Size of each memory-mapped segment of the API cache (megabytes).
+     */
+    private static final int SEGMENT_SIZE_MB = 64;
+
     @Inject
     ConfigProperties config;
 
+    @Inject
+    MeterRegistry registry;
+
+    private ApiCache secondLevelApiCache(Path cacheApiDir) throws CacheException {
+        if (config.getCacheApiStore()) {
+            return new ApiStoreCache(cacheApiDir.resolve("api.store"), config.getCacheApiPurge());
+        }
+        return new ApiFileCache(cacheApiDir, config.getCacheApiPurge());
+    }
+
+    /**
+     * Shared by all API clients, as the persistent second level and the memory-mapped segments can only be opened once.
+     */
     @Produces
-    ApiCache produceApiCache() {
+    @Singleton
+    ApiCache produceApiCache() throws CacheException, IOException {
+        if (config.getCacheApiOffheap() > 0) {
+            // Memory-mapped segments outside the heap, in a fixed directory so files left over by a killed process are
+            // deleted after a restart
+            final Path segmentDir = Files.createDirectories(
+                    Paths.get(System.getProperty("java.io.tmpdir"), "vcat-api-segments"));
+            final int segmentCount = Math.max(2, (config.getCacheApiOffheap() + SEGMENT_SIZE_MB - 1) / SEGMENT_SIZE_MB);
+            final var apiCache = new MappedApiCache(segmentDir, segmentCount, SEGMENT_SIZE_MB * 1024 * 1024,
+                    config.getCachePurge(), config.getCachePurgeInterval());
+            CachePurgerMetrics.bind(registry, "api", apiCache.getPurger());
+            return apiCache;
+        }
         // Use Caffeine for API and metadata caches
-        return new ApiCaffeineCache(config.getCacheSize(), config.getCachePurge());
+        if (config.getCacheApiDir().isPresent()) {
+            // With files or a store file as persistent second level
+            final Path cacheApiDir = Files.createDirectories(Paths.get(config.getCacheApiDir().get()));
+            final var apiCache = new TieredApiCache(config.getCacheSize(), config.getCacheMemory() * 1024L * 1024L,
+                    config.getCachePurge(), secondLevelApiCache(cacheApiDir));
+            CaffeineCacheMetrics.bind(registry, "api", apiCache);
+            return apiCache;
+        }
+        final var apiCache = new ApiCaffeineCache(config.getCacheSize(), config.getCacheMemory() * 1024L * 1024L,
+                config.getCachePurge());
+        CaffeineCacheMetrics.bind(registry, "api", apiCache);
+        return apiCache;
+    }
+
+    void closeApiCache(@Disposes ApiCache apiCache) {
+        if (apiCache instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                LOG.warn("Error closing API cache", e);
+            }
+        }
     }
 
 }
@@ -0,0 +1,29 @@
+package org.toolforge.vcat.toolforge.webapp.cdi.producer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.experimental.UtilityClass;
+import org.toolforge.vcat.cache.CachePurger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics for purging caches in the background, so the time spent on it can be watched as the caches grow.
+ */
+@UtilityClass
+class CachePurgerMetrics {
+
+    void bind(MeterRegistry registry, String name, CachePurger purger) {
+        FunctionTimer.builder("vcat.cache.purge", purger, CachePurger::getCount,
+                        p -> p.getTotalTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                .tag("cache", name)
+                .description("Runs purging the cache")
+                .register(registry);
+        FunctionCounter.builder("vcat.cache.purge.removed", purger, CachePurger::getRemoved)
+                .tag("cache", name)
+                .description("Number of entries removed by purging")
+                .register(registry);
+    }
+
+}
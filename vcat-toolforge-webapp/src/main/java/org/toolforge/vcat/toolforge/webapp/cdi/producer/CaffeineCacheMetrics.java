@@ -0,0 +1,54 @@
+package org.toolforge.vcat.toolforge.webapp.cdi.producer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.experimental.UtilityClass;
+import org.toolforge.vcat.caffeine.AbstractCaffeineCache;
+
+/**
+ * Metrics for the Caffeine caches, so the memory they use can be compared with their budget.
+ */
+@UtilityClass
+class CaffeineCacheMetrics {
+
+    void bind(MeterRegistry registry, String name, AbstractCaffeineCache<?, ?> cache) {
+        Gauge.builder("vcat.cache.size", cache, AbstractCaffeineCache::getSize)
+                .tag("cache", name)
+                .description("Approximate number of entries")
+                .register(registry);
+        if (cache.isWeighted()) {
+            Gauge.builder("vcat.cache.weight", cache, AbstractCaffeineCache::getWeight)
+                    .tag("cache", name)
+                    .description("Estimated memory used by all entries")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("vcat.cache.weight.max", cache, AbstractCaffeineCache::getMaximum)
+                    .tag("cache", name)
+                    .description("Maximum memory used by all entries")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("vcat.cache.evictions.weight", cache, AbstractCaffeineCache::getEvictionWeight)
+                    .tag("cache", name)
+                    .description("Estimated memory used by all evicted entries")
+                    .baseUnit("bytes")
+                    .register(registry);
+        } else {
+            Gauge.builder("vcat.cache.size.max", cache, AbstractCaffeineCache::getMaximum)
+                    .tag("cache", name)
+                    .description("Maximum number of entries")
+                    .register(registry);
+        }
+        FunctionCounter.builder("vcat.cache.evictions", cache, AbstractCaffeineCache::getEvictionCount)
+                .tag("cache", name)
+                .description("Number of entries evicted because the cache was full or they had expired")
+                .register(registry);
+        FunctionCounter.builder("vcat.cache.hits", cache, AbstractCaffeineCache::getHitCount)
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("vcat.cache.misses", cache, AbstractCaffeineCache::getMissCount)
+                .tag("cache", name)
+                .register(registry);
+    }
+
+}
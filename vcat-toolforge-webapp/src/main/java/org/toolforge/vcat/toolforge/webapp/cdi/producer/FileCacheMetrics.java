@@ -0,0 +1,35 @@
+package org.toolforge.vcat.toolforge.webapp.cdi.producer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.experimental.UtilityClass;
+import org.toolforge.vcat.cache.file.AbstractFileCache;
+
+/**
+ * Metrics for the file caches limited by disk space, so the space they use can be compared with their budget.
+ */
+@UtilityClass
+class FileCacheMetrics {
+
+    void bind(MeterRegistry registry, String name, AbstractFileCache<?> cache) {
+        if (cache.getMaxBytes() <= 0) {
+            return;
+        }
+        Gauge.builder("vcat.cache.disk", cache, AbstractFileCache::getUsedBytes)
+                .tag("cache", name)
+                .description("Disk space used by all files")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("vcat.cache.disk.max", cache, AbstractFileCache::getMaxBytes)
+                .tag("cache", name)
+                .description("Maximum disk space used by all files")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("vcat.cache.disk.evictions", cache, AbstractFileCache::getEvictedFiles)
+                .tag("cache", name)
+                .description("Number of files evicted because the disk space was exceeded")
+                .register(registry);
+    }
+
+}
@@ -1,27 +1,81 @@
 package org.toolforge.vcat.toolforge.webapp.cdi.producer;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.Startup;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.toolforge.vcat.VCatException;
 import org.toolforge.vcat.caffeine.MetadataCaffeineCache;
+import org.toolforge.vcat.caffeine.RefreshingMetadataProvider;
 import org.toolforge.vcat.mediawiki.ApiClient;
 import org.toolforge.vcat.mediawiki.CachedMetadataProvider;
 import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+import org.toolforge.vcat.toolforge.webapp.ToolforgeWikiProvider;
 import org.toolforge.vcat.toolforge.webapp.cdi.ConfigProperties;
 import org.toolforge.vcat.toolforge.webapp.cdi.qualifier.ApiClientQualifier;
 import org.toolforge.vcat.toolforge.webapp.cdi.qualifier.MetadataProviderQualifier;
 
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
 @ApplicationScoped
 public class MetadataProviderProducer {
 
     @Inject
     ConfigProperties config;
 
+    @Inject
+    MeterRegistry registry;
+
+    /**
+     * Shared by all users, and created at startup so metadata can be preloaded.
+     */
     @Produces
+    @ApplicationScoped
+    @Startup
     @MetadataProviderQualifier
-    public MetadataProvider produceMetadataProvider(@ApiClientQualifier ApiClient apiClient) {
-        final var metadataCache = new MetadataCaffeineCache(config.getCacheSize(), config.getCachePurgeMetadata());
-        return new CachedMetadataProvider(apiClient, metadataCache);
+    public MetadataProvider produceMetadataProvider(@ApiClientQualifier ApiClient apiClient,
+                                                    ToolforgeWikiProvider toolforgeWikiProvider) {
+        if (config.getCacheRefreshMetadata() <= 0) {
+            final var metadataCache = new MetadataCaffeineCache(config.getCacheSize(),
+                    config.getCacheMemory() * 1024L * 1024L, config.getCachePurgeMetadata());
+            CaffeineCacheMetrics.bind(registry, "metadata", metadataCache);
+            final var cachedMetadataProvider = new CachedMetadataProvider(apiClient, metadataCache,
+                    config.getCachePurgeInterval());
+            CachePurgerMetrics.bind(registry, "metadata", cachedMetadataProvider.getPurger());
+            return cachedMetadataProvider;
+        }
+        final var metadataProvider = new RefreshingMetadataProvider(apiClient, config.getCacheSize(),
+                config.getCacheRefreshMetadata(), config.getCachePurgeMetadata());
+        metadataProvider.preload(preloadWikis(toolforgeWikiProvider));
+        return metadataProvider;
+    }
+
+    private List<Wiki> preloadWikis(ToolforgeWikiProvider toolforgeWikiProvider) {
+        final List<Wiki> wikis = new ArrayList<>();
+        for (String dbname : config.getCachePreloadMetadata().orElse(List.of())) {
+            try {
+                wikis.add(toolforgeWikiProvider.fromDbname(dbname));
+            } catch (VCatException e) {
+                LOG.warn("Wiki {} not found for preloading metadata", dbname, e);
+            }
+        }
+        return wikis;
+    }
+
+    void closeMetadataProvider(@Disposes @MetadataProviderQualifier MetadataProvider metadataProvider) {
+        if (metadataProvider instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                LOG.warn("Error closing metadata provider", e);
+            }
+        }
     }
 
 }
@@ -0,0 +1,31 @@
+package org.toolforge.vcat.toolforge.webapp.cdi.producer;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.toolforge.vcat.toolforge.webapp.ToolforgeReplicaConnectionProvider;
+import org.toolforge.vcat.toolforge.webapp.cdi.ConfigProperties;
+
+@ApplicationScoped
+public class ReplicaConnectionProviderProducer {
+
+    @Inject
+    ConfigProperties config;
+
+    /**
+     * Shared by all renderers, as the number of connections is limited across all of them.
+     */
+    @Produces
+    @Singleton
+    ToolforgeReplicaConnectionProvider produceReplicaConnectionProvider() {
+        return new ToolforgeReplicaConnectionProvider(config.getReplicaUrl(), config.getReplicaUser(),
+                config.getReplicaPassword(), config.getReplicaPoolSize());
+    }
+
+    void closeReplicaConnectionProvider(@Disposes ToolforgeReplicaConnectionProvider replicaConnectionProvider) {
+        replicaConnectionProvider.close();
+    }
+
+}
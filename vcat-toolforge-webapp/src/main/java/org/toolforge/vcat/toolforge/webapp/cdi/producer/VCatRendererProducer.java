@@ -1,28 +1,55 @@
 package org.toolforge.vcat.toolforge.webapp.cdi.producer;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Instance;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
 import org.toolforge.vcat.VCatException;
+import org.toolforge.vcat.caffeine.CategoryCaffeineCache;
 import org.toolforge.vcat.graphviz.interfaces.Graphviz;
 import org.toolforge.vcat.mediawiki.ApiClient;
+import org.toolforge.vcat.mediawiki.BatchingCategoryProvider;
+import org.toolforge.vcat.mediawiki.CachedCategoryProvider;
+import org.toolforge.vcat.mediawiki.IndexCategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
 import org.toolforge.vcat.renderer.CachedVCatRenderer;
 import org.toolforge.vcat.renderer.QueuedVCatRenderer;
 import org.toolforge.vcat.renderer.interfaces.VCatRenderer;
+import org.toolforge.vcat.toolforge.webapp.ToolforgeReplicaCategoryProvider;
+import org.toolforge.vcat.toolforge.webapp.ToolforgeReplicaConnectionProvider;
 import org.toolforge.vcat.toolforge.webapp.cdi.ConfigProperties;
 import org.toolforge.vcat.toolforge.webapp.cdi.qualifier.ApiClientQualifier;
+import org.toolforge.vcat.toolforge.webapp.cdi.qualifier.MetadataProviderQualifier;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 
+@Slf4j
 @ApplicationScoped
 public class VCatRendererProducer {
 
     @Inject
     ConfigProperties config;
 
+    @Inject
+    MeterRegistry registry;
+
+    /**
+     * Only created if the wiki replicas are used.
+     */
+    @Inject
+    Instance<ToolforgeReplicaConnectionProvider> replicaConnectionProvider;
+
     @Produces
-    public VCatRenderer produceVCatRenderer(@ApiClientQualifier ApiClient apiClient, Graphviz graphviz) throws IOException, VCatException {
+    public VCatRenderer produceVCatRenderer(@ApiClientQualifier ApiClient apiClient,
+                                            @MetadataProviderQualifier MetadataProvider metadataProvider,
+                                            Graphviz graphviz) throws IOException, VCatException {
         // For cache of Graphviz files and rendered images, use this directory
         final var cacheDir = Files.createTempDirectory("vcat-cache");
         // Temporary directory for Graphviz files and rendered images
@@ -31,9 +58,51 @@ public class VCatRendererProducer {
         Files.createDirectories(cacheDir);
         Files.createDirectories(tempDir);
 
-        return new QueuedVCatRenderer(
-                new CachedVCatRenderer(graphviz, tempDir, apiClient, cacheDir, config.getCachePurge()),
-                config.getVcatThreads());
+        final var cachedRenderer = new CachedVCatRenderer(graphviz, tempDir,
+                categoryProvider(apiClient, metadataProvider), cacheDir, config.getCachePurge(),
+                config.getCachePurgeInterval(), config.getCacheDisk() * 1024L * 1024L);
+        CachePurgerMetrics.bind(registry, "rendered", cachedRenderer.getPurger());
+        FileCacheMetrics.bind(registry, "graph", cachedRenderer.getGraphCache());
+        FileCacheMetrics.bind(registry, "rendered", cachedRenderer.getRenderedCache());
+        return new QueuedVCatRenderer(cachedRenderer, config.getVcatThreads());
+    }
+
+    private CategoryProvider cachedCategoryProvider(CategoryProvider categoryProvider) {
+        if (config.getCacheGraphSize() <= 0) {
+            return categoryProvider;
+        }
+        final var categoryCache = new CategoryCaffeineCache(0, config.getCacheGraphSize() * 1024L * 1024L,
+                config.getCachePurge());
+        CaffeineCacheMetrics.bind(registry, "category", categoryCache);
+        return new CachedCategoryProvider(categoryProvider, categoryCache);
+    }
+
+    private CategoryProvider categoryProvider(ApiClient apiClient, MetadataProvider metadataProvider)
+            throws IOException {
+        final CategoryProvider categoryProvider;
+        if (config.getReplicaEnabled()) {
+            categoryProvider = new ToolforgeReplicaCategoryProvider(replicaConnectionProvider.get(), metadataProvider);
+        } else if (config.getApiBatchWindow() > 0) {
+            categoryProvider = new BatchingCategoryProvider(apiClient, Duration.ofMillis(config.getApiBatchWindow()),
+                    config.getApiTitlesMax());
+        } else {
+            categoryProvider = apiClient;
+        }
+        if (config.getIndexDir().isPresent()) {
+            return new IndexCategoryProvider(IndexCategoryProvider.openDirectory(Paths.get(config.getIndexDir().get())),
+                    metadataProvider, cachedCategoryProvider(categoryProvider));
+        }
+        return cachedCategoryProvider(categoryProvider);
+    }
+
+    void closeVCatRenderer(@Disposes VCatRenderer vCatRenderer) {
+        if (vCatRenderer instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                LOG.warn("Error closing vCat renderer", e);
+            }
+        }
     }
 
 }
@@ -0,0 +1,72 @@
+package org.toolforge.vcat.toolforge.webapp.test.integration;
+
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.mediawiki.ApiException;
+import org.toolforge.vcat.mediawiki.Metadata;
+import org.toolforge.vcat.mediawiki.SimpleWikimediaWiki;
+import org.toolforge.vcat.mediawiki.interfaces.Wiki;
+import org.toolforge.vcat.toolforge.webapp.ToolforgeReplicaCategoryProvider;
+import org.toolforge.vcat.toolforge.webapp.test.integration.util.VcatToolforgeContainers;
+import org.toolforge.vcat.toolforge.webapp.test.integration.util.VcatToolforgeITBase;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Integration tests for reading categories from the wiki replicas, using the simplified replica tables in MariaDB.
+ */
+class ToolforgeReplicaCategoryProviderIT extends VcatToolforgeITBase {
+
+    private static final Wiki WIKI = new SimpleWikimediaWiki("test.wikipedia.org");
+
+    private final ToolforgeReplicaCategoryProvider underTest = new ToolforgeReplicaCategoryProvider(
+            wiki -> VcatToolforgeContainers.instance().getMariadbConnection(),
+            wiki -> new Metadata("/wiki/$1", "https://test.wikipedia.org",
+                    Map.of(Metadata.NS_ARTICLE, "", Metadata.NS_CATEGORY, "Category"),
+                    Map.of("", Metadata.NS_ARTICLE, "Category", Metadata.NS_CATEGORY)));
+
+    @Test
+    void requestCategories() throws ApiException {
+        final var result = underTest.requestCategories(WIKI, List.of("Article", "Category:Sub A", "Category:Sub A1"),
+                false);
+
+        assertEquals(Map.of(
+                "Article", List.of("Category:Root"),
+                "Category:Sub A", List.of("Category:Root"),
+                "Category:Sub A1", List.of("Category:Sub A")
+        ), result);
+    }
+
+    @Test
+    void requestCategoriesShowhidden() throws ApiException {
+        final var result = underTest.requestCategories(WIKI, List.of("Article", "Category:Sub A", "Category:Sub A1"),
+                true);
+
+        assertEquals(Map.of(
+                "Article", List.of("Category:Hidden", "Category:Root"),
+                "Category:Sub A", List.of("Category:Hidden", "Category:Root"),
+                "Category:Sub A1", List.of("Category:Sub A")
+        ), result);
+    }
+
+    @Test
+    void requestCategorymembers() throws ApiException {
+        assertEquals(List.of("Category:Sub A", "Category:Sub B"),
+                underTest.requestCategorymembers(WIKI, "Category:Root"));
+        assertEquals(List.of("Category:Sub A"), underTest.requestCategorymembers(WIKI, "Category:Root", 1));
+    }
+
+    @Test
+    void requestCategorymembersMultiple() throws ApiException {
+        final var result = underTest.requestCategorymembers(WIKI,
+                List.of("Category:Sub A1", "Category:Root", "Category:Sub A"));
+
+        assertEquals(List.of("Category:Sub A1", "Category:Root", "Category:Sub A"), List.copyOf(result.keySet()));
+        assertEquals(List.of(), result.get("Category:Sub A1"));
+        assertEquals(List.of("Category:Sub A", "Category:Sub B"), result.get("Category:Root"));
+        assertEquals(List.of("Category:Sub A1"), result.get("Category:Sub A"));
+    }
+
+}
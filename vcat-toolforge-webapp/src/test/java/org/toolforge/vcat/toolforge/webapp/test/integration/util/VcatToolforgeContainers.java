@@ -10,6 +10,8 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.Objects;
 
@@ -96,6 +98,11 @@ public class VcatToolforgeContainers {
         }
     }
 
+    public Connection getMariadbConnection() throws SQLException {
+        Objects.requireNonNull(mariadbContainer, "Mariadb container not started");
+        return mariadbContainer.createConnection("");
+    }
+
     public String getUrl(String path) {
         Objects.requireNonNull(vcatToolforgeWebappContainer, "vCat Toolforge webapp container not started");
         return String.format("http://%s:%s/%s",
@@ -10,3 +10,55 @@ create table wiki (
 insert into wiki (dbname, family, is_closed, lang, name, url) values
     ('dewiki', 'wikipedia', 0, 'de', 'Wikipedia', 'https://de.wikipedia.org'),
     ('enwiki', 'wikipedia', 0, 'en', 'Wikipedia', 'https://en.wikipedia.org');
+
+-- simplified wiki replica tables for ToolforgeReplicaCategoryProviderIT
+create table page (
+    page_id int unsigned,
+    page_namespace int,
+    page_title varbinary(255)
+);
+
+create table linktarget (
+    lt_id bigint unsigned,
+    lt_namespace int,
+    lt_title varbinary(255)
+);
+
+create table categorylinks (
+    cl_from int unsigned,
+    cl_target_id bigint unsigned,
+    cl_sortkey varbinary(230),
+    cl_type enum('page','subcat','file')
+);
+
+create table page_props (
+    pp_page int unsigned,
+    pp_propname varbinary(60),
+    pp_value blob
+);
+
+insert into page (page_id, page_namespace, page_title) values
+    (1, 14, 'Root'),
+    (2, 14, 'Sub_A'),
+    (3, 14, 'Sub_B'),
+    (4, 14, 'Hidden'),
+    (5, 14, 'Sub_A1'),
+    (6, 0, 'Article');
+
+insert into linktarget (lt_id, lt_namespace, lt_title) values
+    (1, 14, 'Root'),
+    (2, 14, 'Sub_A'),
+    (3, 14, 'Hidden'),
+    (4, 14, 'Sub_B');
+
+insert into categorylinks (cl_from, cl_target_id, cl_sortkey, cl_type) values
+    (2, 1, 'SUB A', 'subcat'),
+    (3, 1, 'SUB B', 'subcat'),
+    (5, 2, 'SUB A1', 'subcat'),
+    (6, 1, 'ARTICLE', 'page'),
+    (6, 3, 'ARTICLE', 'page'),
+    (2, 3, 'SUB A', 'subcat'),
+    (1, 4, 'ROOT', 'subcat');
+
+insert into page_props (pp_page, pp_propname, pp_value) values
+    (4, 'hiddencat', '');
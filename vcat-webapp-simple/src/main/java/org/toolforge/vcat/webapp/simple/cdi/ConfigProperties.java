@@ -5,10 +5,78 @@ import jakarta.inject.Inject;
 import lombok.Getter;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.util.List;
+import java.util.Optional;
+
 @Getter
 @ApplicationScoped
 public class ConfigProperties {
 
+    /**
+     * Collect titles from concurrent renders for this long before requesting their categories (milliseconds,
+     * 0=disabled).
+     */
+    @Inject
+    @ConfigProperty(name = "api.batch.window", defaultValue = "0")
+    Integer apiBatchWindow;
+
+    /**
+     * Maximum number of concurrent API requests per wiki (0=unlimited).
+     */
+    @Inject
+    @ConfigProperty(name = "api.concurrent", defaultValue = "1")
+    Integer apiConcurrent;
+
+    /**
+     * Always request hidden categories and leave them out on the client if not wanted, so requests with and without
+     * hidden categories share the cache.
+     */
+    @Inject
+    @ConfigProperty(name = "api.hiddencats.filter", defaultValue = "true")
+    Boolean apiHiddencatsFilter;
+
+    /**
+     * Check the user rights for each wiki and request up to 500 titles at once if allowed.
+     */
+    @Inject
+    @ConfigProperty(name = "api.highlimits", defaultValue = "false")
+    Boolean apiHighlimits;
+
+    /**
+     * Value for the maxlag parameter sent with API requests (seconds, 0=not sent).
+     */
+    @Inject
+    @ConfigProperty(name = "api.maxlag", defaultValue = "0")
+    Integer apiMaxlag;
+
+    /**
+     * Maximum number of API requests per second per wiki (0=unlimited).
+     */
+    @Inject
+    @ConfigProperty(name = "api.rate", defaultValue = "0")
+    Double apiRate;
+
+    /**
+     * Maximum number of titles in one API request.
+     */
+    @Inject
+    @ConfigProperty(name = "api.titles.max", defaultValue = "50")
+    Integer apiTitlesMax;
+
+    /**
+     * Timeout for connecting to an API (seconds, 0=no timeout).
+     */
+    @Inject
+    @ConfigProperty(name = "api.timeout.connect", defaultValue = "30")
+    Integer apiTimeoutConnect;
+
+    /**
+     * Timeout for receiving the response to an API request (seconds, 0=no timeout).
+     */
+    @Inject
+    @ConfigProperty(name = "api.timeout.request", defaultValue = "120")
+    Integer apiTimeoutRequest;
+
     /**
      * Cache directory.
      */
@@ -16,6 +84,60 @@ public class ConfigProperties {
     @ConfigProperty(name = "cache.dir", defaultValue = "/tmp/vcat")
     String cacheDir;
 
+    /**
+     * Directory for a persistent second level cache of API responses, kept across restarts (optional).
+     */
+    @Inject
+    @ConfigProperty(name = "cache.api.dir")
+    Optional<String> cacheApiDir;
+
+    /**
+     * Purge the persistent second level cache of API responses after (seconds).
+     */
+    @Inject
+    @ConfigProperty(name = "cache.api.purge", defaultValue = "86400")
+    Integer cacheApiPurge;
+
+    /**
+     * Keep the persistent second level cache of API responses in a single store file, instead of one file per entry.
+     */
+    @Inject
+    @ConfigProperty(name = "cache.api.store", defaultValue = "false")
+    Boolean cacheApiStore;
+
+    /**
+     * Keep API responses outside the Java heap, in memory-mapped files in a subdirectory of cache.dir (megabytes,
+     * 0=disabled).
+     */
+    @Inject
+    @ConfigProperty(name = "cache.api.offheap", defaultValue = "0")
+    Integer cacheApiOffheap;
+
+    /**
+     * Maximum memory used by the category graph shared by all renders, i.e. the parent categories and subcategories
+     * of each page, as estimated from its entries (megabytes, 0=disabled).
+     */
+    @Inject
+    @ConfigProperty(name = "cache.graph.size", defaultValue = "64")
+    Integer cacheGraphSize;
+
+    /**
+     * Maximum memory used by each of the API and metadata caches, as estimated from their entries (megabytes, 0=limit
+     * the number of entries by cache.size instead).
+     */
+    @Inject
+    @ConfigProperty(name = "cache.memory", defaultValue = "0")
+    Integer cacheMemory;
+
+    /**
+     * Maximum disk space used by each of the caches of Graphviz files and rendered files (megabytes, 0=unlimited). If
+     * set, the coldest files are evicted once it is exceeded, and cache.purge applies to the time since files were
+     * last used.
+     */
+    @Inject
+    @ConfigProperty(name = "cache.disk", defaultValue = "0")
+    Integer cacheDisk;
+
     /**
      * Maximum size for cache.
      */
@@ -30,6 +152,14 @@ public class ConfigProperties {
     @ConfigProperty(name = "cache.purge", defaultValue = "600")
     Integer cachePurge;
 
+    /**
+     * Purge expired files and metadata in the background every (seconds, 0=before each request instead). Each run
+     * purges a part of the cache directories.
+     */
+    @Inject
+    @ConfigProperty(name = "cache.purge.interval", defaultValue = "60")
+    Integer cachePurgeInterval;
+
     /**
      * Purge metadata after (seconds).
      */
@@ -37,6 +167,20 @@ public class ConfigProperties {
     @ConfigProperty(name = "cache.purge.metadata", defaultValue = "86400")
     Integer cachePurgeMetadata;
 
+    /**
+     * Host names of wikis whose metadata is loaded at startup, comma-separated (optional).
+     */
+    @Inject
+    @ConfigProperty(name = "cache.preload.metadata")
+    Optional<List<String>> cachePreloadMetadata;
+
+    /**
+     * Reload metadata in the background after (seconds, 0=disabled). Until then, the cached metadata is still used.
+     */
+    @Inject
+    @ConfigProperty(name = "cache.refresh.metadata", defaultValue = "3600")
+    Integer cacheRefreshMetadata;
+
     /**
      * Directory with Graphviz binaries (dot, fdp).
      */
@@ -51,6 +195,14 @@ public class ConfigProperties {
     @ConfigProperty(name = "graphviz.threads", defaultValue = "0")
     Integer graphvizThreads;
 
+    /**
+     * Directory with category index files (named after the wiki, with the extension .vcix) to use instead of the API
+     * for these wikis.
+     */
+    @Inject
+    @ConfigProperty(name = "index.dir")
+    Optional<String> indexDir;
+
     /**
      * Maximum number of concurrent threads running vCat (0=unlimited).
      */
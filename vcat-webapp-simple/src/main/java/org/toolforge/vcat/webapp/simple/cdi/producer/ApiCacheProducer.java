@@ -1,22 +1,76 @@
 package org.toolforge.vcat.webapp.simple.cdi.producer;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.toolforge.vcat.cache.CacheException;
+import org.toolforge.vcat.cache.file.ApiFileCache;
 import org.toolforge.vcat.cache.interfaces.ApiCache;
+import org.toolforge.vcat.cache.mapped.MappedApiCache;
+import org.toolforge.vcat.cache.store.ApiStoreCache;
 import org.toolforge.vcat.caffeine.ApiCaffeineCache;
+import org.toolforge.vcat.caffeine.TieredApiCache;
 import org.toolforge.vcat.webapp.simple.cdi.ConfigProperties;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@Slf4j
 @ApplicationScoped
 public class ApiCacheProducer {
 
+    /**
+     * Size of each memory-mapped segment of the API cache (megabytes).
+     */
+    private static final int SEGMENT_SIZE_MB = 64;
+
     @Inject
     ConfigProperties config;
 
+    private ApiCache secondLevelApiCache(Path cacheApiDir) throws CacheException {
+        if (config.getCacheApiStore()) {
+            return new ApiStoreCache(cacheApiDir.resolve("api.store"), config.getCacheApiPurge());
+        }
+        return new ApiFileCache(cacheApiDir, config.getCacheApiPurge());
+    }
+
+    /**
+     * Shared by all API clients, as the persistent second level and the memory-mapped segments can only be opened once.
+     */
     @Produces
-    ApiCache produceApiCache() {
+    @Singleton
+    ApiCache produceApiCache() throws CacheException, IOException {
+        if (config.getCacheApiOffheap() > 0) {
+            // Memory-mapped segments outside the heap
+            final Path segmentDir = Files.createDirectories(Paths.get(config.getCacheDir(), "api-segments"));
+            final int segmentCount = Math.max(2, (config.getCacheApiOffheap() + SEGMENT_SIZE_MB - 1) / SEGMENT_SIZE_MB);
+            return new MappedApiCache(segmentDir, segmentCount, SEGMENT_SIZE_MB * 1024 * 1024,
+                    config.getCachePurge(), config.getCachePurgeInterval());
+        }
         // Use Caffeine for API and metadata caches
-        return new ApiCaffeineCache(config.getCacheSize(), config.getCachePurge());
+        if (config.getCacheApiDir().isPresent()) {
+            // With files or a store file as persistent second level
+            final Path cacheApiDir = Files.createDirectories(Paths.get(config.getCacheApiDir().get()));
+            return new TieredApiCache(config.getCacheSize(), config.getCacheMemory() * 1024L * 1024L,
+                    config.getCachePurge(), secondLevelApiCache(cacheApiDir));
+        }
+        return new ApiCaffeineCache(config.getCacheSize(), config.getCacheMemory() * 1024L * 1024L,
+                config.getCachePurge());
+    }
+
+    void closeApiCache(@Disposes ApiCache apiCache) {
+        if (apiCache instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                LOG.warn("Error closing API cache", e);
+            }
+        }
     }
 
 }
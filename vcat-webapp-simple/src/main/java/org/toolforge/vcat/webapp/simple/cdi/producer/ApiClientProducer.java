@@ -2,18 +2,40 @@ package org.toolforge.vcat.webapp.simple.cdi.producer;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
 import org.toolforge.vcat.cache.interfaces.ApiCache;
 import org.toolforge.vcat.mediawiki.ApiClient;
+import org.toolforge.vcat.mediawiki.ApiClientSettings;
 import org.toolforge.vcat.mediawiki.CachedApiClient;
+import org.toolforge.vcat.webapp.simple.cdi.ConfigProperties;
 import org.toolforge.vcat.webapp.simple.cdi.qualifier.ApiClientQualifier;
 
 @ApplicationScoped
 public class ApiClientProducer {
 
+    @Inject
+    ConfigProperties config;
+
+    /**
+     * Shared by the metadata provider and the renderer, so they use the same cache and request limits.
+     */
     @Produces
+    @Singleton
     @ApiClientQualifier
     ApiClient produceApiClient(ApiCache apiCache) {
-        return new CachedApiClient(apiCache);
+        final var settings = new ApiClientSettings();
+        settings.setConnectTimeout(config.getApiTimeoutConnect());
+        settings.setRequestTimeout(config.getApiTimeoutRequest());
+        settings.setMaxConcurrentRequests(config.getApiConcurrent());
+        settings.setRequestsPerSecond(config.getApiRate());
+        settings.setTitlesMax(config.getApiTitlesMax());
+        settings.setDetectHighLimits(config.getApiHighlimits());
+        settings.setFilterHiddenCategories(config.getApiHiddencatsFilter());
+        if (config.getApiMaxlag() > 0) {
+            settings.setMaxlag(config.getApiMaxlag());
+        }
+        return new CachedApiClient(apiCache, settings);
     }
 
 }
@@ -1,17 +1,23 @@
 package org.toolforge.vcat.webapp.simple.cdi.producer;
 
+import io.quarkus.runtime.Startup;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import org.toolforge.vcat.caffeine.MetadataCaffeineCache;
+import org.toolforge.vcat.caffeine.RefreshingMetadataProvider;
 import org.toolforge.vcat.mediawiki.ApiClient;
 import org.toolforge.vcat.mediawiki.CachedMetadataProvider;
+import org.toolforge.vcat.mediawiki.SimpleWikimediaWiki;
 import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
 import org.toolforge.vcat.webapp.simple.cdi.ConfigProperties;
 import org.toolforge.vcat.webapp.simple.cdi.qualifier.ApiClientQualifier;
 import org.toolforge.vcat.webapp.simple.cdi.qualifier.MetadataProviderQualifier;
 
+import java.util.List;
+
 @ApplicationScoped
 @Slf4j
 public class MetadataProviderProducer {
@@ -19,11 +25,35 @@ public class MetadataProviderProducer {
     @Inject
     ConfigProperties config;
 
+    /**
+     * Shared by all users, and created at startup so metadata can be preloaded.
+     */
     @Produces
+    @ApplicationScoped
+    @Startup
     @MetadataProviderQualifier
     public MetadataProvider produceMetadataProvider(@ApiClientQualifier ApiClient apiClient) {
-        final var metadataCache = new MetadataCaffeineCache(config.getCacheSize(), config.getCachePurgeMetadata());
-        return new CachedMetadataProvider(apiClient, metadataCache);
+        if (config.getCacheRefreshMetadata() <= 0) {
+            final var metadataCache = new MetadataCaffeineCache(config.getCacheSize(),
+                    config.getCacheMemory() * 1024L * 1024L, config.getCachePurgeMetadata());
+            return new CachedMetadataProvider(apiClient, metadataCache, config.getCachePurgeInterval());
+        }
+        final var metadataProvider = new RefreshingMetadataProvider(apiClient, config.getCacheSize(),
+                config.getCacheRefreshMetadata(), config.getCachePurgeMetadata());
+        metadataProvider.preload(config.getCachePreloadMetadata().orElse(List.of()).stream()
+                .map(SimpleWikimediaWiki::new)
+                .toList());
+        return metadataProvider;
+    }
+
+    void closeMetadataProvider(@Disposes @MetadataProviderQualifier MetadataProvider metadataProvider) {
+        if (metadataProvider instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                LOG.warn("Error closing metadata provider", e);
+            }
+        }
     }
 
 }
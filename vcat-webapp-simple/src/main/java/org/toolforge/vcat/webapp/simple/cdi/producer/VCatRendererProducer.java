@@ -1,21 +1,30 @@
 package org.toolforge.vcat.webapp.simple.cdi.producer;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import org.toolforge.vcat.VCatException;
+import org.toolforge.vcat.caffeine.CategoryCaffeineCache;
 import org.toolforge.vcat.graphviz.interfaces.Graphviz;
 import org.toolforge.vcat.mediawiki.ApiClient;
+import org.toolforge.vcat.mediawiki.BatchingCategoryProvider;
+import org.toolforge.vcat.mediawiki.CachedCategoryProvider;
+import org.toolforge.vcat.mediawiki.IndexCategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.CategoryProvider;
+import org.toolforge.vcat.mediawiki.interfaces.MetadataProvider;
 import org.toolforge.vcat.renderer.CachedVCatRenderer;
 import org.toolforge.vcat.renderer.QueuedVCatRenderer;
 import org.toolforge.vcat.renderer.interfaces.VCatRenderer;
 import org.toolforge.vcat.webapp.simple.cdi.ConfigProperties;
 import org.toolforge.vcat.webapp.simple.cdi.qualifier.ApiClientQualifier;
+import org.toolforge.vcat.webapp.simple.cdi.qualifier.MetadataProviderQualifier;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
 
 @ApplicationScoped
 @Slf4j
@@ -25,14 +34,53 @@ public class VCatRendererProducer {
     ConfigProperties config;
 
     @Produces
-    public VCatRenderer produceVCatRenderer(@ApiClientQualifier ApiClient apiClient, Graphviz graphviz) throws IOException, VCatException {
+    public VCatRenderer produceVCatRenderer(@ApiClientQualifier ApiClient apiClient,
+                                            @MetadataProviderQualifier MetadataProvider metadataProvider,
+                                            Graphviz graphviz) throws IOException, VCatException {
         final var cachePath = Paths.get(config.getCacheDir());
         LOG.info("Using cache directory {}", cachePath);
         final var tempDir = Files.createTempDirectory("vcat-webapp-simple");
         LOG.info("Using temporary directory {}", tempDir);
         return new QueuedVCatRenderer(
-                new CachedVCatRenderer(graphviz, tempDir, apiClient, cachePath, config.getCachePurge()),
+                new CachedVCatRenderer(graphviz, tempDir, categoryProvider(apiClient, metadataProvider),
+                        cachePath, config.getCachePurge(), config.getCachePurgeInterval(),
+                        config.getCacheDisk() * 1024L * 1024L),
                 config.getVcatThreads());
     }
 
+    private CategoryProvider cachedCategoryProvider(CategoryProvider categoryProvider) {
+        if (config.getCacheGraphSize() <= 0) {
+            return categoryProvider;
+        }
+        return new CachedCategoryProvider(categoryProvider, new CategoryCaffeineCache(0,
+                config.getCacheGraphSize() * 1024L * 1024L, config.getCachePurge()));
+    }
+
+    private CategoryProvider categoryProvider(ApiClient apiClient, MetadataProvider metadataProvider)
+            throws IOException {
+        final CategoryProvider apiCategoryProvider;
+        if (config.getApiBatchWindow() > 0) {
+            apiCategoryProvider = new BatchingCategoryProvider(apiClient,
+                    Duration.ofMillis(config.getApiBatchWindow()), config.getApiTitlesMax());
+        } else {
+            apiCategoryProvider = apiClient;
+        }
+        if (config.getIndexDir().isPresent()) {
+            final var indexes = IndexCategoryProvider.openDirectory(Paths.get(config.getIndexDir().get()));
+            LOG.info("Using category indexes for wikis {}", indexes.keySet());
+            return new IndexCategoryProvider(indexes, metadataProvider, cachedCategoryProvider(apiCategoryProvider));
+        }
+        return cachedCategoryProvider(apiCategoryProvider);
+    }
+
+    void closeVCatRenderer(@Disposes VCatRenderer vCatRenderer) {
+        if (vCatRenderer instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                LOG.warn("Error closing vCat renderer", e);
+            }
+        }
+    }
+
 }
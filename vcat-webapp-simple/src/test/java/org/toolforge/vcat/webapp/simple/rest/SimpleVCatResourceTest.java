@@ -0,0 +1,78 @@
+package org.toolforge.vcat.webapp.simple.rest;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.toolforge.vcat.cache.interfaces.ApiCache;
+import org.toolforge.vcat.caffeine.TieredApiCache;
+import org.toolforge.vcat.mediawiki.ApiClient;
+import org.toolforge.vcat.webapp.simple.cdi.qualifier.ApiClientQualifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@QuarkusTest
+@TestProfile(SimpleVCatResourceTest.ApiStoreProfile.class)
+class SimpleVCatResourceTest {
+
+    /**
+     * Keeps API responses in a store file, which can only be opened once.
+     */
+    public static class ApiStoreProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            try {
+                final Path cacheDir = Files.createTempDirectory("SimpleVCatResourceTest");
+                return Map.of(
+                        "cache.dir", cacheDir.toString(),
+                        "cache.api.dir", cacheDir.resolve("api").toString(),
+                        "cache.api.store", "true");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+    @Inject
+    ApiCache apiCache;
+
+    @Inject
+    @ApiClientQualifier
+    ApiClient apiClient;
+
+    @Inject
+    @ApiClientQualifier
+    ApiClient otherApiClient;
+
+    @Test
+    void testRender() {
+
+        // Needs the metadata provider and the renderer, which both use an API client
+        given().when().get("/render")
+                .then()
+                .statusCode(400)
+                .body(containsString("Parameter 'wiki' missing."));
+
+    }
+
+    @Test
+    void testShared() {
+
+        assertInstanceOf(TieredApiCache.class, apiCache);
+        assertSame(apiClient, otherApiClient);
+
+    }
+
+}